@@ -1,6 +1,10 @@
 package com.example.demo.config;
 
+import com.baomidou.mybatisplus.autoconfigure.ConfigurationCustomizer;
+import com.example.demo.handler.DoubleArrayTypeHandler;
 import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
@@ -12,4 +16,21 @@ import org.springframework.context.annotation.Configuration;
 public class MybatisConfig {
     // 移除自定义SqlSessionFactory配置，让MyBatis-Plus自动配置处理
     // 这样可以避免配置冲突导致的Mapper重复扫描问题
-}
\ No newline at end of file
+
+    /**
+     * 向量列写入格式：json（默认）或binary（float32小端，需先把列迁移为VARBINARY/BLOB）
+     * 读取始终自动识别两种格式，迁移期间新旧数据可以共存
+     */
+    @Value("${recommendation.vector.storage-format:json}")
+    private String vectorStorageFormat;
+
+    /**
+     * 注册全局唯一的Double[]类型处理器实例，实体字段与Mapper参数共用
+     */
+    @Bean
+    public ConfigurationCustomizer vectorTypeHandlerCustomizer() {
+        boolean binary = "binary".equalsIgnoreCase(vectorStorageFormat.trim());
+        return configuration -> configuration.getTypeHandlerRegistry()
+                .register(Double[].class, new DoubleArrayTypeHandler(binary));
+    }
+}
@@ -16,6 +16,7 @@ public class RabbitMQConfig {
 
     // 交换机
     public static final String USER_EXCHANGE = "user.exchange";
+    public static final String ROOM_CHANGE_EXCHANGE = "room.change.exchange";
 
     // 路由键
     public static final String REGISTRATION_ROUTING_KEY = "user.registration";
@@ -52,6 +53,24 @@ public class RabbitMQConfig {
                 .with(EMAIL_VERIFICATION_ROUTING_KEY);
     }
 
+    @Bean
+    public FanoutExchange roomChangeExchange() {
+        return new FanoutExchange(ROOM_CHANGE_EXCHANGE);
+    }
+
+    // 每个实例一个匿名队列，房间变更广播到所有实例的内存索引
+    @Bean
+    public Queue roomChangeQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding roomChangeBinding(Queue roomChangeQueue, FanoutExchange roomChangeExchange) {
+        return BindingBuilder
+                .bind(roomChangeQueue)
+                .to(roomChangeExchange);
+    }
+
     @Bean
     public Jackson2JsonMessageConverter messageConverter() {
         return new Jackson2JsonMessageConverter();
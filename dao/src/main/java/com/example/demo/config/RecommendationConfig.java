@@ -19,6 +19,10 @@ import java.util.concurrent.ThreadPoolExecutor;
 @EnableScheduling
 public class RecommendationConfig {
 
+    public static final String RECOMMENDATION_THREAD_PREFIX = "recommendation-";
+
+    public static final String RECALL_THREAD_PREFIX = "recommendation-recall-";
+
     /**
      * 配置推荐系统线程池
      */
@@ -28,7 +32,62 @@ public class RecommendationConfig {
         executor.setCorePoolSize(4);
         executor.setMaxPoolSize(8);
         executor.setQueueCapacity(100);
-        executor.setThreadNamePrefix("recommendation-");
+        executor.setThreadNamePrefix(RECOMMENDATION_THREAD_PREFIX);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 在线召回线程池，只运行单个请求内并发的各路召回
+     * 与批量、预计算等任务隔离，饱和时直接拒绝，被拒绝的召回源按超时处理丢弃，不占用请求线程
+     */
+    @Bean("recallExecutor")
+    public ThreadPoolTaskExecutor recallExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(64);
+        executor.setThreadNamePrefix(RECALL_THREAD_PREFIX);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 离线预计算线程池，单线程执行整轮预计算，不占用定时任务调度线程
+     * 已有一轮在排队时丢弃新的触发，本轮执行中的触发由预计算服务自行跳过
+     */
+    @Bean("precomputeExecutor")
+    public ThreadPoolTaskExecutor precomputeExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("recommendation-precompute-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 当前线程是否属于推荐相关线程池，这些线程上不再向线程池提交并发召回
+     */
+    public static boolean isRecommendationPoolThread() {
+        return Thread.currentThread().getName().startsWith(RECOMMENDATION_THREAD_PREFIX);
+    }
+
+    /**
+     * 房间特征生成线程池，队列满时由提交线程自己执行，限制在途分片数
+     */
+    @Bean("featureBuildExecutor")
+    public ThreadPoolTaskExecutor featureBuildExecutor() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads * 2);
+        executor.setThreadNamePrefix("feature-build-");
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         executor.initialize();
         return executor;
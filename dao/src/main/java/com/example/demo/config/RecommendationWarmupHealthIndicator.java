@@ -0,0 +1,24 @@
+package com.example.demo.config;
+
+import com.example.demo.service.RecommendationWarmupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 推荐引擎预热检查
+ * 加入readiness健康组，预热完成前返回OUT_OF_SERVICE，负载均衡不会把流量转到尚未加载索引的实例
+ */
+@Component
+public class RecommendationWarmupHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private RecommendationWarmupService warmupService;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = warmupService.isWarmingUp() ? Health.outOfService() : Health.up();
+        return builder.withDetails(warmupService.getStatus()).build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo.consumer;
+
+import com.example.demo.dto.RoomChangeMessage;
+import com.example.demo.service.RecommendationIndexService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class RoomChangeConsumer {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomChangeConsumer.class);
+
+    @Autowired
+    private RecommendationIndexService recommendationIndexService;
+
+    /**
+     * 处理房间变更，增量更新本实例的推荐索引
+     * 每个实例各自绑定一个匿名队列，变更会广播到所有实例
+     */
+    @RabbitListener(queues = "#{roomChangeQueue.name}")
+    public void handleRoomChange(RoomChangeMessage message) {
+        log.debug("处理房间变更：{}", message);
+
+        try {
+            if (RoomChangeMessage.DELETED.equals(message.getChangeType())
+                    || RoomChangeMessage.OFFLINE.equals(message.getChangeType())) {
+                recommendationIndexService.removeRoom(message.getRoomId());
+            } else {
+                // 新增、修改以数据库当前状态为准，消息乱序时也能收敛
+                recommendationIndexService.refreshRoom(message.getRoomId());
+            }
+        } catch (Exception e) {
+            log.error("房间变更处理失败：{}", message, e);
+        }
+    }
+}
@@ -71,6 +71,9 @@ public class RoomDao {
     }
 
     public void updateRoom(Room room) {
+        // 更新修改时间，推荐索引按gmt_modify水位追平变更
+        room.setGmtModify(Timestamp.valueOf(DateUtil.date().toString("yyyy-MM-dd HH:mm:ss")));
+
         // 使用update方法而不是updateById，指定更新条件
         QueryWrapper<Room> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("room_id", room.getRoomId());
@@ -82,6 +85,9 @@ public class RoomDao {
     }
 
     public void addRoom(Room room) {
+        if (room.getGmtModify() == null) {
+            room.setGmtModify(Timestamp.valueOf(DateUtil.date().toString("yyyy-MM-dd HH:mm:ss")));
+        }
         roomMapper.insert(room);
     }
 
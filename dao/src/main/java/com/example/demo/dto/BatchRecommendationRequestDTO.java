@@ -0,0 +1,42 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * 批量推荐请求DTO
+ * 用于营销推送等任务一次获取多个用户的个性化推荐
+ */
+public class BatchRecommendationRequestDTO {
+
+    @NotEmpty(message = "用户ID列表不能为空")
+    @Size(max = 1000, message = "单次最多1000个用户")
+    private List<Long> userIds;
+
+    @Min(value = 1, message = "限制数量不能小于1")
+    @Max(value = 100, message = "限制数量不能大于100")
+    private Integer limit = 10;
+
+    public BatchRecommendationRequestDTO() {
+    }
+
+    public List<Long> getUserIds() {
+        return userIds;
+    }
+
+    public void setUserIds(List<Long> userIds) {
+        this.userIds = userIds;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+}
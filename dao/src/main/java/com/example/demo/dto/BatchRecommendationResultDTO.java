@@ -0,0 +1,36 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * 批量推荐中单个用户的推荐结果
+ */
+public class BatchRecommendationResultDTO {
+
+    private Long userId;
+    private List<RoomRecommendationDTO> recommendations;
+
+    public BatchRecommendationResultDTO() {
+    }
+
+    public BatchRecommendationResultDTO(Long userId, List<RoomRecommendationDTO> recommendations) {
+        this.userId = userId;
+        this.recommendations = recommendations;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public List<RoomRecommendationDTO> getRecommendations() {
+        return recommendations;
+    }
+
+    public void setRecommendations(List<RoomRecommendationDTO> recommendations) {
+        this.recommendations = recommendations;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.dto;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带计算元数据的缓存值
+ * 记录计算时间、计算耗时与过期时间，用于过期前的概率提前刷新（XFetch）：
+ * now - delta * beta * ln(rand) >= expiresAt 时提前重算，计算越慢、越接近过期越容易触发。
+ */
+public class CacheEnvelope<T> implements Serializable {
+
+    private T value;
+    private long computedAt;
+    private long computeMillis;
+    private long expiresAt;
+
+    public CacheEnvelope() {
+    }
+
+    public CacheEnvelope(T value, long computedAt, long computeMillis, long expiresAt) {
+        this.value = value;
+        this.computedAt = computedAt;
+        this.computeMillis = computeMillis;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * 是否应在过期前提前刷新
+     * @param beta 提前程度，1.0为标准值，越大越早刷新
+     */
+    public boolean shouldRefreshEarly(double beta, long now) {
+        if (expiresAt <= 0) {
+            return false;
+        }
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble(); // (0, 1]
+        long delta = Math.max(computeMillis, 1L);
+        return now - delta * beta * Math.log(random) >= expiresAt;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public void setValue(T value) {
+        this.value = value;
+    }
+
+    public long getComputedAt() {
+        return computedAt;
+    }
+
+    public void setComputedAt(long computedAt) {
+        this.computedAt = computedAt;
+    }
+
+    public long getComputeMillis() {
+        return computeMillis;
+    }
+
+    public void setComputeMillis(long computeMillis) {
+        this.computeMillis = computeMillis;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * 带调试追踪的推荐结果
+ */
+public class ExplainedRecommendationDTO {
+    private List<RoomRecommendationDTO> recommendations;
+    private RecommendationTrace trace;
+
+    public ExplainedRecommendationDTO() {}
+
+    public ExplainedRecommendationDTO(List<RoomRecommendationDTO> recommendations, RecommendationTrace trace) {
+        this.recommendations = recommendations;
+        this.trace = trace;
+    }
+
+    public List<RoomRecommendationDTO> getRecommendations() { return recommendations; }
+    public void setRecommendations(List<RoomRecommendationDTO> recommendations) { this.recommendations = recommendations; }
+
+    public RecommendationTrace getTrace() { return trace; }
+    public void setTrace(RecommendationTrace trace) { this.trace = trace; }
+}
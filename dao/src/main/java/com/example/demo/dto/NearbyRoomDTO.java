@@ -0,0 +1,32 @@
+package com.example.demo.dto;
+
+/**
+ * 附近房间查询结果
+ */
+public class NearbyRoomDTO {
+    private String roomId;
+    private Double distanceKm;
+    private Double longitude;
+    private Double latitude;
+
+    public NearbyRoomDTO() {}
+
+    public NearbyRoomDTO(String roomId, Double distanceKm, Double longitude, Double latitude) {
+        this.roomId = roomId;
+        this.distanceKm = distanceKm;
+        this.longitude = longitude;
+        this.latitude = latitude;
+    }
+
+    public String getRoomId() { return roomId; }
+    public void setRoomId(String roomId) { this.roomId = roomId; }
+
+    public Double getDistanceKm() { return distanceKm; }
+    public void setDistanceKm(Double distanceKm) { this.distanceKm = distanceKm; }
+
+    public Double getLongitude() { return longitude; }
+    public void setLongitude(Double longitude) { this.longitude = longitude; }
+
+    public Double getLatitude() { return latitude; }
+    public void setLatitude(Double latitude) { this.latitude = latitude; }
+}
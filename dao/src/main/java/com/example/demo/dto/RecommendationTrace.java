@@ -0,0 +1,56 @@
+package com.example.demo.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单次推荐请求的调试追踪（explain=true时返回）
+ * 记录各阶段耗时（毫秒，同名阶段累加）与各路召回的候选数量，按发生顺序排列。
+ * 并发召回时多个线程会同时写入，写方法均加锁。
+ */
+public class RecommendationTrace {
+    private Long userId;
+    private Double totalMillis;
+    private Boolean cacheHit;
+    private Map<String, Double> stageMillis = new LinkedHashMap<>();
+    private Map<String, Integer> candidateCounts = new LinkedHashMap<>();
+    private List<String> droppedSources = new ArrayList<>();
+
+    public RecommendationTrace() {}
+
+    public RecommendationTrace(Long userId) {
+        this.userId = userId;
+    }
+
+    public synchronized void addStage(String stage, long nanos) {
+        stageMillis.merge(stage, nanos / 1_000_000.0, Double::sum);
+    }
+
+    public synchronized void addCandidates(String source, int count) {
+        candidateCounts.merge(source, count, Integer::sum);
+    }
+
+    public synchronized void addDroppedSource(String source) {
+        droppedSources.add(source);
+    }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public Double getTotalMillis() { return totalMillis; }
+    public void setTotalMillis(Double totalMillis) { this.totalMillis = totalMillis; }
+
+    public Boolean getCacheHit() { return cacheHit; }
+    public void setCacheHit(Boolean cacheHit) { this.cacheHit = cacheHit; }
+
+    public Map<String, Double> getStageMillis() { return stageMillis; }
+    public void setStageMillis(Map<String, Double> stageMillis) { this.stageMillis = stageMillis; }
+
+    public Map<String, Integer> getCandidateCounts() { return candidateCounts; }
+    public void setCandidateCounts(Map<String, Integer> candidateCounts) { this.candidateCounts = candidateCounts; }
+
+    public List<String> getDroppedSources() { return droppedSources; }
+    public void setDroppedSources(List<String> droppedSources) { this.droppedSources = droppedSources; }
+}
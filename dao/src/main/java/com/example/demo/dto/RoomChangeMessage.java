@@ -0,0 +1,56 @@
+package com.example.demo.dto;
+
+import java.io.Serializable;
+
+/**
+ * 房间变更消息，广播给所有实例用于增量维护推荐索引
+ */
+public class RoomChangeMessage implements Serializable {
+
+    public static final String ADDED = "ADDED";
+    public static final String UPDATED = "UPDATED";
+    public static final String OFFLINE = "OFFLINE";
+    public static final String DELETED = "DELETED";
+
+    private String roomId;
+    private String changeType;
+    private Long changeTime;
+
+    public RoomChangeMessage() {
+    }
+
+    public RoomChangeMessage(String roomId, String changeType) {
+        this.roomId = roomId;
+        this.changeType = changeType;
+        this.changeTime = System.currentTimeMillis();
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public void setChangeType(String changeType) {
+        this.changeType = changeType;
+    }
+
+    public Long getChangeTime() {
+        return changeTime;
+    }
+
+    public void setChangeTime(Long changeTime) {
+        this.changeTime = changeTime;
+    }
+
+    @Override
+    public String toString() {
+        return "RoomChangeMessage{roomId='" + roomId + "', changeType='" + changeType + "', changeTime=" + changeTime + "}";
+    }
+}
@@ -21,6 +21,11 @@ public class SearchRequestDTO {
     @Max(value = 100, message = "限制数量不能大于100")
     private Integer limit = 20; // 默认值20
 
+    private Boolean useTopK = true; // 是否使用Top-K堆排序，默认开启
+
+    private Double longitude; // 用户当前位置（可选），用于附近房间召回
+    private Double latitude;
+
     /**
      * 默认构造函数
      */
@@ -70,6 +75,30 @@ public class SearchRequestDTO {
         this.limit = limit;
     }
 
+    public Boolean getUseTopK() {
+        return useTopK;
+    }
+
+    public void setUseTopK(Boolean useTopK) {
+        this.useTopK = useTopK;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
     /**
      * 获取处理后的关键词（去除前后空格，转小写）
      */
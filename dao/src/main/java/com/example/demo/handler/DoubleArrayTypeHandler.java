@@ -1,58 +1,105 @@
 package com.example.demo.handler;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.ibatis.type.BaseTypeHandler;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.MappedJdbcTypes;
 import org.apache.ibatis.type.MappedTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
-@MappedTypes(Double[].class)
-@MappedJdbcTypes(JdbcType.VARCHAR)
+/**
+ * Double数组类型处理器
+ * 用于处理MyBatis中Double[]与数据库字段之间的转换，编解码见{@link VectorCodec}。
+ * 读取时按字节内容自动识别JSON文本或二进制格式；写入格式由binary决定，
+ * 开启二进制前需要先把对应列改为VARBINARY/BLOB类型。
+ */
+@MappedTypes({Double[].class})
+@MappedJdbcTypes(value = {JdbcType.VARCHAR, JdbcType.LONGVARCHAR, JdbcType.CLOB,
+        JdbcType.VARBINARY, JdbcType.LONGVARBINARY, JdbcType.BLOB}, includeNullJdbcType = true)
 public class DoubleArrayTypeHandler extends BaseTypeHandler<Double[]> {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Logger logger = LoggerFactory.getLogger(DoubleArrayTypeHandler.class);
 
+    // 默认向量维度，空值或解析失败时返回该维度的零向量
+    private static final int DEFAULT_DIMENSION = 10;
+
+    private final boolean binary;
+
+    public DoubleArrayTypeHandler() {
+        this(false);
+    }
+
+    public DoubleArrayTypeHandler(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * 设置参数时将Double[]编码为JSON字符串或二进制存储到数据库
+     */
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Double[] parameter, JdbcType jdbcType) throws SQLException {
-        try {
-            ps.setString(i, objectMapper.writeValueAsString(parameter));
-        } catch (JsonProcessingException e) {
-            throw new SQLException("Error converting Double[] to JSON", e);
+        if (binary) {
+            ps.setBytes(i, VectorCodec.toBinary(parameter));
+        } else {
+            ps.setString(i, VectorCodec.toJson(parameter));
         }
     }
 
+    /**
+     * 从ResultSet中获取数据并转换为Double[]
+     */
     @Override
     public Double[] getNullableResult(ResultSet rs, String columnName) throws SQLException {
-        String value = rs.getString(columnName);
-        return parseDoubleArray(value);
+        return decode(rs.getBytes(columnName));
     }
 
+    /**
+     * 从ResultSet中根据列索引获取数据并转换为Double[]
+     */
     @Override
     public Double[] getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
-        String value = rs.getString(columnIndex);
-        return parseDoubleArray(value);
+        return decode(rs.getBytes(columnIndex));
     }
 
+    /**
+     * 从CallableStatement中获取数据并转换为Double[]
+     */
     @Override
     public Double[] getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
-        String value = cs.getString(columnIndex);
-        return parseDoubleArray(value);
+        return decode(cs.getBytes(columnIndex));
     }
 
-    private Double[] parseDoubleArray(String value) throws SQLException {
-        if (value == null || value.trim().isEmpty()) {
-            return null;
+    /**
+     * 解析列值为Double数组，空值、空数组或格式错误时返回默认零向量
+     */
+    private Double[] decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return getDefaultDoubleArray();
         }
         try {
-            return objectMapper.readValue(value, Double[].class);
-        } catch (JsonProcessingException e) {
-            throw new SQLException("Error parsing JSON to Double[]", e);
+            Double[] result = VectorCodec.decodeBoxed(data);
+            return result.length > 0 ? result : getDefaultDoubleArray();
+        } catch (IllegalArgumentException e) {
+            logger.warn("解析向量列失败，使用默认向量: {}, 原因: {}",
+                    VectorCodec.isBinary(data) ? "<binary>" : new String(data, StandardCharsets.UTF_8), e.getMessage());
+            return getDefaultDoubleArray();
+        }
+    }
+
+    /**
+     * 获取默认的Double数组（10维零向量）
+     */
+    private Double[] getDefaultDoubleArray() {
+        Double[] defaultArray = new Double[DEFAULT_DIMENSION];
+        for (int i = 0; i < DEFAULT_DIMENSION; i++) {
+            defaultArray[i] = 0.0;
         }
+        return defaultArray;
     }
-}
\ No newline at end of file
+}
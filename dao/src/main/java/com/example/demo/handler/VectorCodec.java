@@ -0,0 +1,430 @@
+package com.example.demo.handler;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 特征向量编解码
+ * 向量在数据库中有两种存储格式：
+ * JSON数值数组（如[0.1,0.2]），以及紧凑二进制格式（1字节格式标记 + 每维4字节小端float32）。
+ * 解析直接写入调用方提供的double[]/float[]，不经过通用JSON库，也不创建装箱对象；
+ * 十进制数在有效数字不超过15位、指数不超过22时精确换算，其余情况交给Double.parseDouble，
+ * 结果与标准解析一致。
+ * 二进制格式以0x01开头，JSON文本不会以该字节开头，读取时据此自动识别，两种格式可以在同一列中共存。
+ */
+public final class VectorCodec {
+
+    public static final byte BINARY_MARKER = 0x01;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // 十进制有效数字不超过该值时，尾数可以用double精确表示
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private VectorCodec() {
+    }
+
+    /**
+     * 统计JSON数组的元素个数，不解析数值；空白或null返回0
+     */
+    public static int jsonLength(CharSequence json) {
+        if (json == null) {
+            return 0;
+        }
+        int start = skipWhitespace(json, 0);
+        if (start >= json.length() || json.charAt(start) != '[') {
+            return 0;
+        }
+        int count = 0;
+        boolean inValue = false;
+        for (int i = start + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == ',') {
+                inValue = false;
+            } else if (c == ']') {
+                break;
+            } else if (!isWhitespace(c) && !inValue) {
+                inValue = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 解析JSON数值数组，写入out[offset, offset + maxLength)，超出部分忽略，null元素按0处理
+     * @return 数组的元素个数（可能大于maxLength）；空白字符串或"null"返回0
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static int parseJson(CharSequence json, double[] out, int offset, int maxLength) {
+        Cursor cursor = new Cursor(json);
+        if (!cursor.openArray()) {
+            return 0;
+        }
+        int count = 0;
+        while (cursor.hasNextElement()) {
+            double value = cursor.nextNumber();
+            if (count < maxLength) {
+                out[offset + count] = value;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 解析JSON数值数组到float数组，语义同{@link #parseJson(CharSequence, double[], int, int)}
+     */
+    public static int parseJson(CharSequence json, float[] out, int offset, int maxLength) {
+        Cursor cursor = new Cursor(json);
+        if (!cursor.openArray()) {
+            return 0;
+        }
+        int count = 0;
+        while (cursor.hasNextElement()) {
+            double value = cursor.nextNumber();
+            if (count < maxLength) {
+                out[offset + count] = (float) value;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 解析为Double数组（用于实体字段），空白或"null"返回长度为0的数组
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static Double[] parseJsonBoxed(CharSequence json) {
+        if (json == null) {
+            return new Double[0];
+        }
+        double[] values = new double[jsonLength(json)];
+        int length = parseJson(json, values, 0, values.length);
+        Double[] result = new Double[Math.min(length, values.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    /**
+     * 编码为JSON数值数组，null元素写为0
+     */
+    public static String toJson(Double[] vector) {
+        StringBuilder sb = new StringBuilder(vector.length * 8 + 2);
+        sb.append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[i] != null ? vector[i] : 0.0);
+        }
+        return sb.append(']').toString();
+    }
+
+    public static String toJson(double[] vector, int offset, int length) {
+        StringBuilder sb = new StringBuilder(length * 8 + 2);
+        sb.append('[');
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[offset + i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * 是否为二进制格式（以格式标记开头）
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == BINARY_MARKER;
+    }
+
+    /**
+     * 二进制格式的向量维度
+     */
+    public static int binaryLength(byte[] data) {
+        return isBinary(data) ? (data.length - 1) / Float.BYTES : 0;
+    }
+
+    /**
+     * 编码为二进制格式，null元素写为0
+     */
+    public static byte[] toBinary(Double[] vector) {
+        byte[] data = new byte[1 + vector.length * Float.BYTES];
+        data[0] = BINARY_MARKER;
+        for (int i = 0; i < vector.length; i++) {
+            writeFloat(data, 1 + i * Float.BYTES, vector[i] != null ? vector[i].floatValue() : 0.0f);
+        }
+        return data;
+    }
+
+    public static byte[] toBinary(double[] vector, int offset, int length) {
+        byte[] data = new byte[1 + length * Float.BYTES];
+        data[0] = BINARY_MARKER;
+        for (int i = 0; i < length; i++) {
+            writeFloat(data, 1 + i * Float.BYTES, (float) vector[offset + i]);
+        }
+        return data;
+    }
+
+    /**
+     * 解码二进制格式，写入out[offset, offset + maxLength)，超出部分忽略
+     * @return 向量维度（可能大于maxLength）
+     */
+    public static int parseBinary(byte[] data, double[] out, int offset, int maxLength) {
+        int length = binaryLength(data);
+        int copy = Math.min(length, maxLength);
+        for (int i = 0; i < copy; i++) {
+            out[offset + i] = readFloat(data, 1 + i * Float.BYTES);
+        }
+        return length;
+    }
+
+    public static int parseBinary(byte[] data, float[] out, int offset, int maxLength) {
+        int length = binaryLength(data);
+        int copy = Math.min(length, maxLength);
+        for (int i = 0; i < copy; i++) {
+            out[offset + i] = readFloat(data, 1 + i * Float.BYTES);
+        }
+        return length;
+    }
+
+    /**
+     * 按字节内容自动识别格式并解析为Double数组；JSON文本按ASCII读取，不经过字符串解码
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static Double[] decodeBoxed(byte[] data) {
+        if (data == null) {
+            return new Double[0];
+        }
+        double[] values;
+        int length;
+        if (isBinary(data)) {
+            values = new double[binaryLength(data)];
+            length = parseBinary(data, values, 0, values.length);
+        } else {
+            AsciiBytes json = new AsciiBytes(data);
+            values = new double[jsonLength(json)];
+            length = parseJson(json, values, 0, values.length);
+        }
+        Double[] result = new Double[Math.min(length, values.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    private static void writeFloat(byte[] data, int position, float value) {
+        int bits = Float.floatToRawIntBits(value);
+        data[position] = (byte) bits;
+        data[position + 1] = (byte) (bits >>> 8);
+        data[position + 2] = (byte) (bits >>> 16);
+        data[position + 3] = (byte) (bits >>> 24);
+    }
+
+    private static float readFloat(byte[] data, int position) {
+        int bits = (data[position] & 0xFF)
+                | (data[position + 1] & 0xFF) << 8
+                | (data[position + 2] & 0xFF) << 16
+                | (data[position + 3] & 0xFF) << 24;
+        return Float.intBitsToFloat(bits);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static int skipWhitespace(CharSequence text, int position) {
+        while (position < text.length() && isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * 单次解析的读取位置
+     */
+    private static final class Cursor {
+        private final CharSequence text;
+        private int position;
+        private boolean first = true;
+
+        private Cursor(CharSequence text) {
+            this.text = text;
+        }
+
+        /**
+         * 读取数组开头，空白或null返回false
+         */
+        private boolean openArray() {
+            position = skipWhitespace(text, 0);
+            if (position == text.length() || matches("null")) {
+                return false;
+            }
+            expect('[');
+            return true;
+        }
+
+        /**
+         * 是否还有下一个元素，数组结束时校验其后只有空白
+         */
+        private boolean hasNextElement() {
+            position = skipWhitespace(text, position);
+            if (position < text.length() && text.charAt(position) == ']') {
+                position = skipWhitespace(text, position + 1);
+                if (position != text.length()) {
+                    throw error("数组结束后存在多余内容");
+                }
+                return false;
+            }
+            if (!first) {
+                expect(',');
+                position = skipWhitespace(text, position);
+            }
+            first = false;
+            return true;
+        }
+
+        private double nextNumber() {
+            if (matches("null")) {
+                position += 4;
+                return 0.0;
+            }
+            int start = position;
+            boolean negative = false;
+            if (position < text.length() && text.charAt(position) == '-') {
+                negative = true;
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int scale = 0;
+            boolean exact = true;
+            int integerStart = position;
+            while (position < text.length() && isDigit(text.charAt(position))) {
+                if (digits < MAX_EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + (text.charAt(position) - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    exact = false;
+                }
+                position++;
+            }
+            if (position == integerStart) {
+                throw error("缺少数字");
+            }
+            if (position < text.length() && text.charAt(position) == '.') {
+                position++;
+                int fractionStart = position;
+                while (position < text.length() && isDigit(text.charAt(position))) {
+                    if (digits < MAX_EXACT_DIGITS) {
+                        mantissa = mantissa * 10 + (text.charAt(position) - '0');
+                        if (mantissa != 0) {
+                            digits++;
+                        }
+                        scale++;
+                    } else {
+                        exact = false;
+                    }
+                    position++;
+                }
+                if (position == fractionStart) {
+                    throw error("小数点后缺少数字");
+                }
+            }
+            if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+                // 带指数的数值很少出现，交给标准解析
+                exact = false;
+                position++;
+                if (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+                    position++;
+                }
+                int exponentStart = position;
+                while (position < text.length() && isDigit(text.charAt(position))) {
+                    position++;
+                }
+                if (position == exponentStart) {
+                    throw error("指数缺少数字");
+                }
+            }
+            if (!exact || scale >= POWERS_OF_TEN.length) {
+                return Double.parseDouble(text.subSequence(start, position).toString());
+            }
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+
+        private boolean matches(String literal) {
+            if (position + literal.length() > text.length()) {
+                return false;
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                if (text.charAt(position + i) != literal.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void expect(char c) {
+            if (position >= text.length() || text.charAt(position) != c) {
+                throw error("期望字符 '" + c + "'");
+            }
+            position++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("向量JSON格式错误（位置 " + position + "）: " + message);
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+    }
+
+    /**
+     * 把ASCII字节数组视为字符序列，用于直接解析数据库返回的字节
+     */
+    private static final class AsciiBytes implements CharSequence {
+        private final byte[] data;
+        private final int offset;
+        private final int length;
+
+        private AsciiBytes(byte[] data) {
+            this(data, 0, data.length);
+        }
+
+        private AsciiBytes(byte[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (data[offset + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiBytes(data, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(data, offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
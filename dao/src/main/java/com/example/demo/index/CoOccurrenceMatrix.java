@@ -0,0 +1,401 @@
+package com.example.demo.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 房间共现矩阵（"看过这个房间的用户还看过"）
+ * 房间ID映射为稳定的序号，与推荐索引的行号无关，索引重建不影响共现数据。
+ * 每个房间一行，保存按邻居序号升序排列的邻居数组与对应的共现次数数组。
+ *
+ * 写入（同一会话内的房间两两计数）串行执行，每次只写时复制受影响的行；
+ * 读取无锁，邻居查询直接拷贝到调用方提供的数组，不产生对象；快照落盘只在取行引用时短暂持锁。
+ * 单行超过maxNeighbours的两倍时立即裁剪，定期的prune把所有行裁剪到maxNeighbours。
+ */
+public final class CoOccurrenceMatrix {
+
+    private static final int MAGIC = 0x52434F4F; // "RCOO"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Row EMPTY_ROW = new Row(new int[0], new int[0]);
+
+    private final int maxNeighbours;
+
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile String[] roomIds = new String[16];
+    private volatile AtomicReferenceArray<Row> rows = new AtomicReferenceArray<>(16);
+    private volatile int size;
+
+    // 自上次落盘后是否有变更
+    private volatile boolean dirty;
+
+    // 串行化快照写入（共用同一个临时文件），与写入共现计数的锁分开
+    private final Object fileLock = new Object();
+
+    public CoOccurrenceMatrix(int maxNeighbours) {
+        this.maxNeighbours = Math.max(1, maxNeighbours);
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 记录room与同一会话内此前出现的其他房间各共现一次（双向计数）
+     */
+    public synchronized void addCoOccurrences(String roomId, List<String> sessionRooms) {
+        if (roomId == null || sessionRooms.isEmpty()) {
+            return;
+        }
+        int ordinal = ordinalFor(roomId);
+        int[] others = new int[sessionRooms.size()];
+        int count = 0;
+        for (String other : sessionRooms) {
+            if (other != null && !other.equals(roomId)) {
+                others[count++] = ordinalFor(other);
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        // 去重，同一会话里重复出现的房间只计一次，合并时邻居保持唯一
+        Arrays.sort(others, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || others[i] != others[unique - 1]) {
+                others[unique++] = others[i];
+            }
+        }
+        others = Arrays.copyOf(others, unique);
+
+        AtomicReferenceArray<Row> current = rows;
+        current.set(ordinal, capped(merge(rowAt(current, ordinal), others)));
+        int[] self = {ordinal};
+        for (int other : others) {
+            current.set(other, capped(merge(rowAt(current, other), self)));
+        }
+        dirty = true;
+    }
+
+    /**
+     * 把每一行裁剪到共现次数最高的maxNeighbours个邻居，返回被移除的邻居数
+     */
+    public synchronized int prune() {
+        AtomicReferenceArray<Row> current = rows;
+        int removed = 0;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            Row row = rowAt(current, ordinal);
+            if (row.neighbours.length > maxNeighbours) {
+                Row pruned = topN(row, maxNeighbours);
+                removed += row.neighbours.length - pruned.neighbours.length;
+                current.set(ordinal, pruned);
+            }
+        }
+        if (removed > 0) {
+            dirty = true;
+        }
+        return removed;
+    }
+
+    private int ordinalFor(String roomId) {
+        Integer existing = ordinals.get(roomId);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal = size;
+        if (ordinal == roomIds.length) {
+            int capacity = ordinal * 2;
+            AtomicReferenceArray<Row> grown = new AtomicReferenceArray<>(capacity);
+            for (int i = 0; i < ordinal; i++) {
+                grown.set(i, rows.get(i));
+            }
+            roomIds = Arrays.copyOf(roomIds, capacity);
+            rows = grown;
+        }
+        roomIds[ordinal] = roomId;
+        rows.set(ordinal, EMPTY_ROW);
+        size = ordinal + 1;
+        ordinals.put(roomId, ordinal);
+        return ordinal;
+    }
+
+    /**
+     * 有序合并：additions中已存在的邻居计数加一，不存在的以计数1插入
+     */
+    private static Row merge(Row row, int[] additions) {
+        int[] neighbours = row.neighbours;
+        int[] counts = row.counts;
+        int[] mergedNeighbours = new int[neighbours.length + additions.length];
+        int[] mergedCounts = new int[mergedNeighbours.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < neighbours.length || j < additions.length) {
+            if (j == additions.length || (i < neighbours.length && neighbours[i] < additions[j])) {
+                mergedNeighbours[k] = neighbours[i];
+                mergedCounts[k++] = counts[i++];
+            } else if (i == neighbours.length || additions[j] < neighbours[i]) {
+                mergedNeighbours[k] = additions[j++];
+                mergedCounts[k++] = 1;
+            } else {
+                mergedNeighbours[k] = neighbours[i];
+                mergedCounts[k++] = counts[i++] + 1;
+                j++;
+            }
+        }
+        return new Row(Arrays.copyOf(mergedNeighbours, k), Arrays.copyOf(mergedCounts, k));
+    }
+
+    private Row capped(Row row) {
+        return row.neighbours.length > maxRowSize() ? topN(row, maxNeighbours) : row;
+    }
+
+    private static Row topN(Row row, int n) {
+        TopKSelector selector = new TopKSelector(n);
+        for (int i = 0; i < row.neighbours.length; i++) {
+            selector.offer(i, row.counts[i]);
+        }
+        int[] kept = selector.drainDescending(null);
+        Arrays.sort(kept);
+        int[] neighbours = new int[kept.length];
+        int[] counts = new int[kept.length];
+        for (int i = 0; i < kept.length; i++) {
+            neighbours[i] = row.neighbours[kept[i]];
+            counts[i] = row.counts[kept[i]];
+        }
+        return new Row(neighbours, counts);
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 房间序号，未出现过的房间返回-1
+     */
+    public int ordinalOf(String roomId) {
+        Integer ordinal = roomId != null ? ordinals.get(roomId) : null;
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public String roomIdOf(int ordinal) {
+        return roomIds[ordinal];
+    }
+
+    /**
+     * 单行邻居数的上限，按此大小分配的缓冲区可以容纳任意一行
+     */
+    public int maxRowSize() {
+        return maxNeighbours * 2;
+    }
+
+    /**
+     * 把一个房间的邻居（序号升序）及共现次数拷贝到调用方数组，返回拷贝的数量
+     * @param ordinalsOut 长度不小于maxRowSize()时可取得完整的一行
+     */
+    public int neighbours(int ordinal, int[] ordinalsOut, int[] countsOut) {
+        if (ordinal < 0 || ordinal >= size) {
+            return 0;
+        }
+        Row row = rowAt(rows, ordinal);
+        int count = Math.min(row.neighbours.length, ordinalsOut.length);
+        System.arraycopy(row.neighbours, 0, ordinalsOut, 0, count);
+        if (countsOut != null) {
+            System.arraycopy(row.counts, 0, countsOut, 0, count);
+        }
+        return count;
+    }
+
+    /**
+     * 两个房间的共现次数
+     */
+    public int count(int ordinal, int neighbour) {
+        if (ordinal < 0 || ordinal >= size) {
+            return 0;
+        }
+        Row row = rowAt(rows, ordinal);
+        int position = Arrays.binarySearch(row.neighbours, neighbour);
+        return position >= 0 ? row.counts[position] : 0;
+    }
+
+    /**
+     * 已记录的房间数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 全部行的邻居条目总数
+     */
+    public long entryCount() {
+        AtomicReferenceArray<Row> current = rows;
+        long entries = 0;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            entries += rowAt(current, ordinal).neighbours.length;
+        }
+        return entries;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    private static Row rowAt(AtomicReferenceArray<Row> rows, int ordinal) {
+        Row row = rows.get(ordinal);
+        return row != null ? row : EMPTY_ROW;
+    }
+
+    // ==================== 快照文件 ====================
+
+    /**
+     * 写入临时文件并fsync后原子替换，文件末尾为CRC32校验和
+     * 只在写锁内取下各行的引用（行本身写时复制、不再修改），序列化和落盘都在锁外进行，
+     * 不阻塞请求线程上的addCoOccurrences
+     */
+    public void write(Path path) throws IOException {
+        synchronized (fileLock) {
+            int count;
+            String[] ids;
+            Row[] snapshot;
+            synchronized (this) {
+                count = size;
+                ids = Arrays.copyOf(roomIds, count);
+                snapshot = new Row[count];
+                for (int ordinal = 0; ordinal < count; ordinal++) {
+                    snapshot[ordinal] = rowAt(rows, ordinal);
+                }
+                dirty = false;
+            }
+            try {
+                writeFile(path, ids, snapshot);
+            } catch (IOException | RuntimeException e) {
+                dirty = true;
+                throw e;
+            }
+        }
+    }
+
+    private void writeFile(Path path, String[] ids, Row[] snapshot) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream file = Channels.newOutputStream(channel);
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc);
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(maxNeighbours);
+            out.writeInt(ids.length);
+            for (String roomId : ids) {
+                byte[] bytes = roomId.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            for (Row row : snapshot) {
+                out.writeInt(row.neighbours.length);
+                for (int i = 0; i < row.neighbours.length; i++) {
+                    out.writeInt(row.neighbours[i]);
+                    out.writeInt(row.counts[i]);
+                }
+            }
+            out.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取快照文件
+     * @param maxNeighbours 当前配置的邻居上限，与文件中的不同时按当前配置裁剪
+     * @throws IOException 文件不存在、格式版本不符或校验失败
+     */
+    public static CoOccurrenceMatrix read(Path path, int maxNeighbours) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+             CheckedInputStream checked = new CheckedInputStream(file, crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是房间共现矩阵快照文件");
+            }
+            int formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("共现矩阵快照格式版本不兼容: " + formatVersion);
+            }
+            in.readInt(); // 写入时的邻居上限
+
+            int size = in.readInt();
+            CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(maxNeighbours);
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                String roomId = new String(bytes, StandardCharsets.UTF_8);
+                if (matrix.ordinalFor(roomId) != ordinal) {
+                    throw new IOException("共现矩阵快照中房间ID重复: " + roomId);
+                }
+            }
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                int length = in.readInt();
+                int[] neighbours = new int[length];
+                int[] counts = new int[length];
+                for (int i = 0; i < length; i++) {
+                    neighbours[i] = in.readInt();
+                    counts[i] = in.readInt();
+                    if (neighbours[i] < 0 || neighbours[i] >= size) {
+                        throw new IOException("共现矩阵快照内容损坏: " + path);
+                    }
+                }
+                matrix.rows.set(ordinal, matrix.capped(new Row(neighbours, counts)));
+            }
+
+            long expected = crc.getValue();
+            long actual;
+            try {
+                actual = new DataInputStream(file).readLong();
+            } catch (EOFException e) {
+                throw new IOException("共现矩阵快照文件不完整: " + path, e);
+            }
+            if (expected != actual) {
+                throw new IOException("共现矩阵快照文件校验失败: " + path);
+            }
+            return matrix;
+        }
+    }
+
+    /**
+     * 一行：邻居序号升序，counts与neighbours一一对应，创建后不再修改
+     */
+    private static final class Row {
+        private final int[] neighbours;
+        private final int[] counts;
+
+        private Row(int[] neighbours, int[] counts) {
+            this.neighbours = neighbours;
+            this.counts = counts;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.example.demo.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * 压缩整数位图（Roaring结构）
+ * 按高16位分桶，每个桶内基数不超过4096时使用有序char数组存储低16位，
+ * 超过后使用1024个long的位图存储。并、交、阈值并运算均按64位字批量进行。
+ * 构建完成后视为只读，由推荐索引快照持有。
+ */
+public final class CompressedBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys = new char[0];
+    private Object[] containers = new Object[0]; // char[]（数组桶）或 long[]（位图桶）
+    private int[] cardinalities = new int[0];
+    private int size;
+
+    public CompressedBitmap() {
+    }
+
+    /**
+     * 由有序去重的整数数组构建位图
+     */
+    public static CompressedBitmap of(int... sortedValues) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : sortedValues) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    // ==================== 单值操作 ====================
+
+    public void add(int value) {
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = findKey(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new char[4], 0);
+        }
+
+        Object container = containers[index];
+        int cardinality = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) == 0) {
+                words[low >>> 6] |= mask;
+                cardinalities[index] = cardinality + 1;
+            }
+            return;
+        }
+
+        char[] values = (char[]) container;
+        int position;
+        if (cardinality == 0 || values[cardinality - 1] < low) {
+            position = cardinality; // 顺序追加的快速路径
+        } else {
+            position = Arrays.binarySearch(values, 0, cardinality, low);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+        }
+
+        if (cardinality == ARRAY_MAX) {
+            long[] words = toWords(values, cardinality);
+            words[low >>> 6] |= 1L << low;
+            containers[index] = words;
+            cardinalities[index] = cardinality + 1;
+            return;
+        }
+        if (cardinality == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            containers[index] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, cardinality - position);
+        values[position] = low;
+        cardinalities[index] = cardinality + 1;
+    }
+
+    public void remove(int value) {
+        int index = findKey((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        int cardinality = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) == 0) {
+                return;
+            }
+            words[low >>> 6] &= ~mask;
+            cardinality--;
+            cardinalities[index] = cardinality;
+            if (cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality];
+                int position = 0;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        values[position++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+                containers[index] = values;
+            }
+        } else {
+            char[] values = (char[]) container;
+            int position = Arrays.binarySearch(values, 0, cardinality, low);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+            cardinalities[index] = cardinality - 1;
+        }
+        if (cardinalities[index] == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            System.arraycopy(cardinalities, index + 1, cardinalities, index, size - index - 1);
+            size--;
+            containers[size] = null;
+        }
+    }
+
+    /**
+     * 写时复制地加入一个元素：返回新位图，只复制受影响的桶，原位图保持不变
+     */
+    public CompressedBitmap withAdded(int value) {
+        CompressedBitmap copy = copyForWrite(value);
+        copy.add(value);
+        return copy;
+    }
+
+    /**
+     * 写时复制地移除一个元素：返回新位图，只复制受影响的桶，原位图保持不变
+     */
+    public CompressedBitmap withRemoved(int value) {
+        CompressedBitmap copy = copyForWrite(value);
+        copy.remove(value);
+        return copy;
+    }
+
+    public boolean contains(int value) {
+        int index = findKey((char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+    }
+
+    public int getCardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += cardinalities[i];
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return getCardinality() == 0;
+    }
+
+    /**
+     * 按升序遍历所有元素
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            int base = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[]) {
+                long[] words = (long[]) container;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        consumer.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int j = 0; j < cardinalities[i]; j++) {
+                    consumer.accept(base | values[j]);
+                }
+            }
+        }
+    }
+
+    public int[] toArray() {
+        int[] result = new int[getCardinality()];
+        int[] position = {0};
+        forEach(value -> result[position[0]++] = value);
+        return result;
+    }
+
+    /**
+     * 估算占用内存（字节）
+     */
+    public long getSizeInBytes() {
+        long bytes = 16L + keys.length * 2L + cardinalities.length * 4L + containers.length * 8L;
+        for (int i = 0; i < size; i++) {
+            Object container = containers[i];
+            bytes += container instanceof long[] ? WORDS * 8L : ((char[]) container).length * 2L;
+        }
+        return bytes;
+    }
+
+    // ==================== 集合运算 ====================
+
+    /**
+     * 多路并集
+     */
+    public static CompressedBitmap or(List<CompressedBitmap> bitmaps) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (Map.Entry<Character, List<Object[]>> entry : groupByKey(bitmaps).entrySet()) {
+            List<Object[]> group = entry.getValue();
+            long[] words = new long[WORDS];
+            for (Object[] part : group) {
+                orInto(words, part[0], (Integer) part[1]);
+            }
+            result.appendWords(entry.getKey(), words);
+        }
+        return result;
+    }
+
+    public static CompressedBitmap or(CompressedBitmap a, CompressedBitmap b) {
+        return or(Arrays.asList(a, b));
+    }
+
+    /**
+     * 交集
+     */
+    public static CompressedBitmap and(CompressedBitmap a, CompressedBitmap b) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                long[] words = copyWords(a.containers[i], a.cardinalities[i]);
+                Object other = b.containers[j];
+                if (other instanceof long[]) {
+                    long[] otherWords = (long[]) other;
+                    for (int w = 0; w < WORDS; w++) {
+                        words[w] &= otherWords[w];
+                    }
+                } else {
+                    long[] otherWords = toWords((char[]) other, b.cardinalities[j]);
+                    for (int w = 0; w < WORDS; w++) {
+                        words[w] &= otherWords[w];
+                    }
+                }
+                result.appendWords(a.keys[i], words);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 阈值并集：返回至少出现在threshold个输入位图中的元素
+     * 使用按位切片的加法计数器，每次处理64个元素
+     */
+    public static CompressedBitmap thresholdUnion(List<CompressedBitmap> bitmaps, int threshold) {
+        if (threshold <= 1) {
+            return or(bitmaps);
+        }
+        CompressedBitmap result = new CompressedBitmap();
+        if (bitmaps.size() < threshold) {
+            return result;
+        }
+
+        int planeCount = 32 - Integer.numberOfLeadingZeros(bitmaps.size());
+        for (Map.Entry<Character, List<Object[]>> entry : groupByKey(bitmaps).entrySet()) {
+            List<Object[]> group = entry.getValue();
+            if (group.size() < threshold) {
+                continue;
+            }
+
+            long[][] planes = new long[planeCount][WORDS];
+            for (Object[] part : group) {
+                long[] words = part[0] instanceof long[]
+                        ? (long[]) part[0]
+                        : toWords((char[]) part[0], (Integer) part[1]);
+                for (int w = 0; w < WORDS; w++) {
+                    long carry = words[w];
+                    for (int p = 0; p < planeCount && carry != 0; p++) {
+                        long overflow = planes[p][w] & carry;
+                        planes[p][w] ^= carry;
+                        carry = overflow;
+                    }
+                }
+            }
+
+            long[] words = new long[WORDS];
+            for (int w = 0; w < WORDS; w++) {
+                long greater = 0L;
+                long equal = -1L;
+                for (int p = planeCount - 1; p >= 0; p--) {
+                    long plane = planes[p][w];
+                    if (((threshold >>> p) & 1) == 1) {
+                        equal &= plane;
+                    } else {
+                        greater |= equal & plane;
+                        equal &= ~plane;
+                    }
+                }
+                words[w] = greater | equal;
+            }
+            result.appendWords(entry.getKey(), words);
+        }
+        return result;
+    }
+
+    // ==================== 内部实现 ====================
+
+    private static Map<Character, List<Object[]>> groupByKey(List<CompressedBitmap> bitmaps) {
+        Map<Character, List<Object[]>> groups = new TreeMap<>();
+        for (CompressedBitmap bitmap : bitmaps) {
+            if (bitmap == null) {
+                continue;
+            }
+            for (int i = 0; i < bitmap.size; i++) {
+                groups.computeIfAbsent(bitmap.keys[i], k -> new ArrayList<>())
+                        .add(new Object[]{bitmap.containers[i], bitmap.cardinalities[i]});
+            }
+        }
+        return groups;
+    }
+
+    private static void orInto(long[] words, Object container, int cardinality) {
+        if (container instanceof long[]) {
+            long[] source = (long[]) container;
+            for (int w = 0; w < WORDS; w++) {
+                words[w] |= source[w];
+            }
+        } else {
+            char[] values = (char[]) container;
+            for (int j = 0; j < cardinality; j++) {
+                words[values[j] >>> 6] |= 1L << values[j];
+            }
+        }
+    }
+
+    private static long[] copyWords(Object container, int cardinality) {
+        if (container instanceof long[]) {
+            return ((long[]) container).clone();
+        }
+        return toWords((char[]) container, cardinality);
+    }
+
+    private static long[] toWords(char[] values, int cardinality) {
+        long[] words = new long[WORDS];
+        for (int j = 0; j < cardinality; j++) {
+            words[values[j] >>> 6] |= 1L << values[j];
+        }
+        return words;
+    }
+
+    /**
+     * 按升序追加一个桶，根据基数选择数组或位图存储
+     */
+    private void appendWords(char key, long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality == 0) {
+            return;
+        }
+        if (cardinality > ARRAY_MAX) {
+            insertContainer(size, key, words, cardinality);
+            return;
+        }
+        char[] values = new char[cardinality];
+        int position = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[position++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        insertContainer(size, key, values, cardinality);
+    }
+
+    /**
+     * 浅复制桶目录，并深复制value所在的桶
+     */
+    private CompressedBitmap copyForWrite(int value) {
+        CompressedBitmap copy = new CompressedBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(size + 1, 4));
+        copy.containers = Arrays.copyOf(containers, copy.keys.length);
+        copy.cardinalities = Arrays.copyOf(cardinalities, copy.keys.length);
+        copy.size = size;
+        int index = findKey((char) (value >>> 16));
+        if (index >= 0) {
+            Object container = containers[index];
+            copy.containers[index] = container instanceof long[]
+                    ? ((long[]) container).clone()
+                    : ((char[]) container).clone();
+        }
+        return copy;
+    }
+
+    private int findKey(char key) {
+        if (size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int index, char key, Object container, int cardinality) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        cardinalities[index] = cardinality;
+        size++;
+    }
+}
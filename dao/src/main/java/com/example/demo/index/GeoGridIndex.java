@@ -0,0 +1,261 @@
+package com.example.demo.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 房间地理位置网格索引
+ * 按固定经纬度步长把坐标划分为网格，每个网格保存落在其中的特征矩阵行号（升序）。
+ * 半径查询只访问覆盖查询圆外接矩形的网格，再按球面距离精确过滤；
+ * K近邻查询从一个网格大小的半径开始逐步扩大，直到凑够K个或达到最大半径。
+ * 经度先归一化到[-180, 180)再划分网格，外接矩形跨越±180°经线时拆成两段查询。
+ *
+ * 实例不可变，增量变更通过withRow只替换受影响的网格。
+ */
+public final class GeoGridIndex {
+
+    public static final double DEFAULT_CELL_DEGREES = 0.01; // 约1.1公里
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180.0;
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final double cellDegrees;
+    private final Map<Long, int[]> cells;
+    private final int size;
+
+    private GeoGridIndex(double cellDegrees, Map<Long, int[]> cells, int size) {
+        this.cellDegrees = cellDegrees;
+        this.cells = cells;
+        this.size = size;
+    }
+
+    public static GeoGridIndex build(RoomFeatureMatrix matrix) {
+        return build(matrix, DEFAULT_CELL_DEGREES);
+    }
+
+    /**
+     * 基于特征矩阵构建索引，无坐标或已失效的行不参与索引
+     */
+    public static GeoGridIndex build(RoomFeatureMatrix matrix, double cellDegrees) {
+        Map<Long, int[]> cells = new HashMap<>();
+        Map<Long, Integer> counts = new HashMap<>();
+        int size = 0;
+        for (int row = 0; row < matrix.size(); row++) {
+            if (matrix.isLive(row) && matrix.hasLocation(row)) {
+                counts.merge(cellOf(matrix.getLatitude(row), matrix.getLongitude(row), cellDegrees), 1, Integer::sum);
+            }
+        }
+        Map<Long, Integer> filled = new HashMap<>(counts.size() * 2);
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            cells.put(entry.getKey(), new int[entry.getValue()]);
+        }
+        // 按行号顺序写入，网格内天然有序
+        for (int row = 0; row < matrix.size(); row++) {
+            if (matrix.isLive(row) && matrix.hasLocation(row)) {
+                long cell = cellOf(matrix.getLatitude(row), matrix.getLongitude(row), cellDegrees);
+                int index = filled.merge(cell, 1, Integer::sum) - 1;
+                cells.get(cell)[index] = row;
+                size++;
+            }
+        }
+        return new GeoGridIndex(cellDegrees, cells, size);
+    }
+
+    /**
+     * 写时复制地同步一行的位置变化
+     * @param previous 变更前的矩阵，用于找到旧坐标所在网格
+     * @param updated 变更后的矩阵，行失效或无坐标时只做移除
+     */
+    public GeoGridIndex withRow(RoomFeatureMatrix previous, RoomFeatureMatrix updated, int row) {
+        if (row < 0) {
+            return this;
+        }
+        Long oldCell = row < previous.size() && previous.isLive(row) && previous.hasLocation(row)
+                ? cellOf(previous.getLatitude(row), previous.getLongitude(row), cellDegrees) : null;
+        Long newCell = row < updated.size() && updated.isLive(row) && updated.hasLocation(row)
+                ? cellOf(updated.getLatitude(row), updated.getLongitude(row), cellDegrees) : null;
+        if (oldCell == null && newCell == null) {
+            return this;
+        }
+
+        Map<Long, int[]> newCells = new HashMap<>(cells);
+        int newSize = size;
+        if (oldCell != null) {
+            int[] rows = newCells.getOrDefault(oldCell, NO_ROWS);
+            int position = Arrays.binarySearch(rows, row);
+            if (position >= 0) {
+                int[] removed = new int[rows.length - 1];
+                System.arraycopy(rows, 0, removed, 0, position);
+                System.arraycopy(rows, position + 1, removed, position, rows.length - position - 1);
+                if (removed.length == 0) {
+                    newCells.remove(oldCell);
+                } else {
+                    newCells.put(oldCell, removed);
+                }
+                newSize--;
+            }
+        }
+        if (newCell != null) {
+            int[] rows = newCells.getOrDefault(newCell, NO_ROWS);
+            int position = Arrays.binarySearch(rows, row);
+            if (position < 0) {
+                int insert = -position - 1;
+                int[] added = new int[rows.length + 1];
+                System.arraycopy(rows, 0, added, 0, insert);
+                added[insert] = row;
+                System.arraycopy(rows, insert, added, insert + 1, rows.length - insert);
+                newCells.put(newCell, added);
+                newSize++;
+            }
+        }
+        return new GeoGridIndex(cellDegrees, newCells, newSize);
+    }
+
+    /**
+     * 半径查询，按距离由近到远写入rowsOut/distancesOut，返回实际数量
+     * @param limit 最多返回数量
+     * @param distancesOut 距离（公里），可为null
+     */
+    public int withinRadius(RoomFeatureMatrix matrix, double latitude, double longitude, double radiusKm,
+                            int limit, int[] rowsOut, double[] distancesOut) {
+        if (size == 0 || limit <= 0 || radiusKm <= 0) {
+            return 0;
+        }
+        TopKSelector selector = new TopKSelector(limit);
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        double lngSpan = radiusKm / (KM_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+
+        long minLatCell = (long) Math.floor((latitude - latSpan) / cellDegrees);
+        long maxLatCell = (long) Math.floor((latitude + latSpan) / cellDegrees);
+        long[] lngRanges = lngCellRanges(longitude, lngSpan);
+        long lngCells = 0;
+        for (int i = 0; i < lngRanges.length; i += 2) {
+            lngCells += lngRanges[i + 1] - lngRanges[i] + 1;
+        }
+        long boxCells = (maxLatCell - minLatCell + 1) * lngCells;
+
+        if (boxCells > cells.size()) {
+            // 查询范围覆盖的网格比已有网格还多，直接遍历已有网格
+            for (int[] rows : cells.values()) {
+                offerRows(matrix, rows, latitude, longitude, radiusKm, selector);
+            }
+        } else {
+            for (long latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+                for (int i = 0; i < lngRanges.length; i += 2) {
+                    for (long lngCell = lngRanges[i]; lngCell <= lngRanges[i + 1]; lngCell++) {
+                        int[] rows = cells.get(key(latCell, lngCell));
+                        if (rows != null) {
+                            offerRows(matrix, rows, latitude, longitude, radiusKm, selector);
+                        }
+                    }
+                }
+            }
+        }
+
+        double[] negatedDistances = new double[selector.size()];
+        int[] rows = selector.drainDescending(negatedDistances);
+        System.arraycopy(rows, 0, rowsOut, 0, rows.length);
+        if (distancesOut != null) {
+            for (int i = 0; i < rows.length; i++) {
+                distancesOut[i] = -negatedDistances[i];
+            }
+        }
+        return rows.length;
+    }
+
+    /**
+     * K近邻查询：半径从一个网格开始倍增，直到找到k个或超过maxRadiusKm
+     */
+    public int nearest(RoomFeatureMatrix matrix, double latitude, double longitude, int k, double maxRadiusKm,
+                       int[] rowsOut, double[] distancesOut) {
+        if (size == 0 || k <= 0) {
+            return 0;
+        }
+        double radius = Math.min(maxRadiusKm, cellDegrees * KM_PER_DEGREE);
+        while (true) {
+            int found = withinRadius(matrix, latitude, longitude, radius, k, rowsOut, distancesOut);
+            if (found >= k || found >= size || radius >= maxRadiusKm) {
+                return found;
+            }
+            radius = Math.min(maxRadiusKm, radius * 2);
+        }
+    }
+
+    private static void offerRows(RoomFeatureMatrix matrix, int[] rows, double latitude, double longitude,
+                                  double radiusKm, TopKSelector selector) {
+        for (int row : rows) {
+            double distance = distanceKm(latitude, longitude, matrix.getLatitude(row), matrix.getLongitude(row));
+            if (distance <= radiusKm) {
+                selector.offer(row, -distance);
+            }
+        }
+    }
+
+    /**
+     * 球面距离（haversine），单位公里
+     */
+    public static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * 经度区间[longitude - lngSpan, longitude + lngSpan]覆盖的经度网格编号，每两个元素为一段闭区间；
+     * 跨越±180°时返回两段
+     */
+    private long[] lngCellRanges(double longitude, double lngSpan) {
+        long first = lngCellOf(-180.0, cellDegrees);
+        long last = lngCellOf(Math.nextDown(180.0), cellDegrees);
+        // 接近整圈时两端可能落进同一个网格，直接取全部经度
+        if (2 * lngSpan + cellDegrees >= 360.0) {
+            return new long[]{first, last};
+        }
+        long west = lngCellOf(longitude - lngSpan, cellDegrees);
+        long east = lngCellOf(longitude + lngSpan, cellDegrees);
+        return west <= east ? new long[]{west, east} : new long[]{west, last, first, east};
+    }
+
+    private static long cellOf(double latitude, double longitude, double cellDegrees) {
+        return key((long) Math.floor(latitude / cellDegrees), lngCellOf(longitude, cellDegrees));
+    }
+
+    private static long lngCellOf(double longitude, double cellDegrees) {
+        return (long) Math.floor(normalizeLongitude(longitude) / cellDegrees);
+    }
+
+    /**
+     * 经度归一化到[-180, 180)
+     */
+    private static double normalizeLongitude(double longitude) {
+        if (longitude >= -180.0 && longitude < 180.0) {
+            return longitude;
+        }
+        double normalized = (longitude + 180.0) % 360.0;
+        if (normalized < 0) {
+            normalized += 360.0;
+        }
+        return normalized - 180.0;
+    }
+
+    private static long key(long latCell, long lngCell) {
+        return (latCell << 32) ^ (lngCell & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 已索引的房间数
+     */
+    public int size() {
+        return size;
+    }
+
+    public int cellCount() {
+        return cells.size();
+    }
+}
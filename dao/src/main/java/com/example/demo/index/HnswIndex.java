@@ -0,0 +1,390 @@
+package com.example.demo.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * HNSW近似最近邻索引（余弦相似度）
+ * 节点编号与构建时特征矩阵的行号一致，向量在构建时归一化为float存储，
+ * 查询时余弦相似度退化为点积。构建完成后只读，可被并发查询。
+ */
+public final class HnswIndex {
+
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 100;
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    private static final int[] NO_LINKS = new int[0];
+
+    private final RoomFeatureMatrix source;
+    private final int dimension;
+    private final float[] vectors;
+    private final int[][][] links; // links[node][level] -> 邻居节点
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int nodeCount;
+
+    private HnswIndex(RoomFeatureMatrix source, int m, int efConstruction) {
+        this.source = source;
+        this.dimension = source.getDimension();
+        this.vectors = new float[source.size() * dimension];
+        this.links = new int[source.size()][][];
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+    }
+
+    private HnswIndex(RoomFeatureMatrix source, int m, int efConstruction, float[] vectors, int[][][] links,
+                      int entryPoint, int maxLevel, int nodeCount) {
+        this.source = source;
+        this.dimension = source.getDimension();
+        this.vectors = vectors;
+        this.links = links;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.entryPoint = entryPoint;
+        this.maxLevel = maxLevel;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * 从快照文件恢复已构建好的图结构，不重新插入节点
+     */
+    static HnswIndex restore(RoomFeatureMatrix source, int m, int efConstruction, float[] vectors,
+                             int[][][] links, int entryPoint, int maxLevel, int nodeCount) {
+        return new HnswIndex(source, m, efConstruction, vectors, links, entryPoint, maxLevel, nodeCount);
+    }
+
+    /**
+     * 基于特征矩阵构建索引，零向量不参与索引
+     */
+    public static HnswIndex build(RoomFeatureMatrix matrix) {
+        return build(matrix, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, 42L);
+    }
+
+    public static HnswIndex build(RoomFeatureMatrix matrix, int m, int efConstruction, long seed) {
+        HnswIndex index = new HnswIndex(matrix, m, efConstruction);
+        SplittableRandom random = new SplittableRandom(seed);
+        double levelMultiplier = 1.0 / Math.log(m);
+
+        double[] source = matrix.getVectors();
+        for (int row = 0; row < matrix.size(); row++) {
+            if (!index.normalizeInto(source, matrix.vectorOffset(row), row)) {
+                continue;
+            }
+            int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+            index.insert(row, level);
+        }
+        return index;
+    }
+
+    /**
+     * 查询与给定向量余弦相似度最高的k个节点
+     * @return 实际写入idsOut/scoresOut的数量，结果按相似度降序
+     */
+    public int search(double[] query, int k, int ef, int[] idsOut, double[] scoresOut) {
+        if (entryPoint < 0 || k <= 0) {
+            return 0;
+        }
+        float[] normalized = normalizeQuery(query);
+        if (normalized == null) {
+            return 0;
+        }
+
+        int ep = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            ep = greedyClosest(normalized, ep, level);
+        }
+
+        TopKSelector results = searchLayer(normalized, ep, Math.max(ef, k), 0);
+        double[] scores = new double[results.size()];
+        int[] ids = results.drainDescending(scores);
+        int count = Math.min(k, ids.length);
+        System.arraycopy(ids, 0, idsOut, 0, count);
+        if (scoresOut != null) {
+            System.arraycopy(scores, 0, scoresOut, 0, count);
+        }
+        return count;
+    }
+
+    /**
+     * 暴力计算精确Top-K，用于评估召回率
+     */
+    public int exactSearch(double[] query, int k, int[] idsOut) {
+        float[] normalized = normalizeQuery(query);
+        if (normalized == null || k <= 0) {
+            return 0;
+        }
+        TopKSelector selector = new TopKSelector(k);
+        for (int node = 0; node < links.length; node++) {
+            if (links[node] != null) {
+                selector.offer(node, similarity(normalized, node));
+            }
+        }
+        int[] ids = selector.drainDescending(null);
+        System.arraycopy(ids, 0, idsOut, 0, ids.length);
+        return ids.length;
+    }
+
+    public RoomFeatureMatrix getSource() {
+        return source;
+    }
+
+    public int size() {
+        return nodeCount;
+    }
+
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    int getM() {
+        return m;
+    }
+
+    int getEfConstruction() {
+        return efConstruction;
+    }
+
+    int getEntryPoint() {
+        return entryPoint;
+    }
+
+    float[] getNormalizedVectors() {
+        return vectors;
+    }
+
+    int[][][] getLinks() {
+        return links;
+    }
+
+    // ==================== 构建 ====================
+
+    private void insert(int node, int level) {
+        links[node] = new int[level + 1][];
+        Arrays.fill(links[node], NO_LINKS);
+        nodeCount++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        float[] query = Arrays.copyOfRange(vectors, node * dimension, node * dimension + dimension);
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(query, ep, l);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            TopKSelector candidates = searchLayer(query, ep, efConstruction, l);
+            int maxLinks = l == 0 ? maxM0 : m;
+            int[] selected = candidates.drainDescending(null);
+            ep = selected[0];
+
+            int[] neighbours = Arrays.copyOf(selected, Math.min(m, selected.length));
+            links[node][l] = neighbours;
+            for (int neighbour : neighbours) {
+                connect(neighbour, node, l, maxLinks);
+            }
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * 为已有节点追加反向连接，超出容量时保留相似度最高的邻居
+     */
+    private void connect(int node, int newNeighbour, int level, int maxLinks) {
+        int[] current = links[node][level];
+        if (current.length < maxLinks) {
+            int[] extended = Arrays.copyOf(current, current.length + 1);
+            extended[current.length] = newNeighbour;
+            links[node][level] = extended;
+            return;
+        }
+
+        float[] base = Arrays.copyOfRange(vectors, node * dimension, node * dimension + dimension);
+        TopKSelector keep = new TopKSelector(maxLinks);
+        for (int neighbour : current) {
+            keep.offer(neighbour, similarity(base, neighbour));
+        }
+        keep.offer(newNeighbour, similarity(base, newNeighbour));
+        links[node][level] = keep.drainDescending(null);
+    }
+
+    // ==================== 查询 ====================
+
+    private int greedyClosest(float[] query, int ep, int level) {
+        int current = ep;
+        double best = similarity(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int neighbour : linksAt(current, level)) {
+                double score = similarity(query, neighbour);
+                if (score > best) {
+                    best = score;
+                    current = neighbour;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private TopKSelector searchLayer(float[] query, int ep, int ef, int level) {
+        BitSet visited = new BitSet(links.length);
+        CandidateQueue candidates = new CandidateQueue(ef * 2);
+        TopKSelector results = new TopKSelector(ef);
+
+        double epScore = similarity(query, ep);
+        visited.set(ep);
+        candidates.push(ep, epScore);
+        results.offer(ep, epScore);
+
+        while (!candidates.isEmpty()) {
+            double score = candidates.peekScore();
+            if (results.size() >= ef && score < results.threshold()) {
+                break;
+            }
+            int current = candidates.pop();
+            for (int neighbour : linksAt(current, level)) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                double neighbourScore = similarity(query, neighbour);
+                if (results.size() < ef || neighbourScore > results.threshold()) {
+                    candidates.push(neighbour, neighbourScore);
+                    results.offer(neighbour, neighbourScore);
+                }
+            }
+        }
+        return results;
+    }
+
+    private int[] linksAt(int node, int level) {
+        int[][] nodeLinks = links[node];
+        return nodeLinks != null && level < nodeLinks.length ? nodeLinks[level] : NO_LINKS;
+    }
+
+    private double similarity(float[] query, int node) {
+        int offset = node * dimension;
+        double dot = 0.0;
+        for (int i = 0; i < dimension; i++) {
+            dot += query[i] * vectors[offset + i];
+        }
+        return dot;
+    }
+
+    private boolean normalizeInto(double[] source, int offset, int node) {
+        double norm = 0.0;
+        for (int i = 0; i < dimension; i++) {
+            norm += source[offset + i] * source[offset + i];
+        }
+        if (norm == 0.0) {
+            return false;
+        }
+        double inv = 1.0 / Math.sqrt(norm);
+        int target = node * dimension;
+        for (int i = 0; i < dimension; i++) {
+            vectors[target + i] = (float) (source[offset + i] * inv);
+        }
+        return true;
+    }
+
+    private float[] normalizeQuery(double[] query) {
+        double norm = 0.0;
+        int length = Math.min(query.length, dimension);
+        for (int i = 0; i < length; i++) {
+            norm += query[i] * query[i];
+        }
+        if (norm == 0.0) {
+            return null;
+        }
+        double inv = 1.0 / Math.sqrt(norm);
+        float[] normalized = new float[dimension];
+        for (int i = 0; i < length; i++) {
+            normalized[i] = (float) (query[i] * inv);
+        }
+        return normalized;
+    }
+
+    /**
+     * 候选队列：按相似度降序弹出的大顶堆
+     */
+    private static final class CandidateQueue {
+        private int[] ids;
+        private double[] scores;
+        private int size;
+
+        CandidateQueue(int capacity) {
+            this.ids = new int[Math.max(capacity, 8)];
+            this.scores = new double[ids.length];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double peekScore() {
+            return scores[0];
+        }
+
+        void push(int id, double score) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (scores[parent] >= score) {
+                    break;
+                }
+                ids[index] = ids[parent];
+                scores[index] = scores[parent];
+                index = parent;
+            }
+            ids[index] = id;
+            scores[index] = score;
+        }
+
+        int pop() {
+            int top = ids[0];
+            size--;
+            if (size > 0) {
+                int id = ids[size];
+                double score = scores[size];
+                int index = 0;
+                int half = size >>> 1;
+                while (index < half) {
+                    int child = (index << 1) + 1;
+                    int right = child + 1;
+                    if (right < size && scores[right] > scores[child]) {
+                        child = right;
+                    }
+                    if (score >= scores[child]) {
+                        break;
+                    }
+                    ids[index] = ids[child];
+                    scores[index] = scores[child];
+                    index = child;
+                }
+                ids[index] = id;
+                scores[index] = score;
+            }
+            return top;
+        }
+    }
+}
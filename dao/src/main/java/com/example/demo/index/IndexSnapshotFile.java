@@ -0,0 +1,295 @@
+package com.example.demo.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 推荐索引快照文件
+ * 将特征矩阵、标签字典、倒排位图与HNSW图结构写入带版本号的二进制文件，
+ * 启动时通过FileChannel.map映射后批量读取，无需访问数据库也无需重建图。
+ *
+ * 文件布局（大端序）：
+ * 头部 magic、格式版本、快照版本、数据水位、构建时间、构建耗时；
+ * 标签字典；特征矩阵（行元数据含经纬度 + 连续向量块）；倒排位图；HNSW图；末尾CRC32校验。
+ * 文件内的标签编号即写入时全局标签字典的ID，读取时按名称重新映射到当前进程的字典。
+ */
+public final class IndexSnapshotFile {
+
+    private static final int MAGIC = 0x52494458; // "RIDX"
+    private static final int FORMAT_VERSION = 2; // 2: 行元数据增加经纬度
+
+    private final RecommendationIndexSnapshot snapshot;
+    private final long watermark;
+
+    private IndexSnapshotFile(RecommendationIndexSnapshot snapshot, long watermark) {
+        this.snapshot = snapshot;
+        this.watermark = watermark;
+    }
+
+    public RecommendationIndexSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 快照对应的数据水位（毫秒），此后修改的房间需要从数据库追平
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 写入临时文件后原子替换，写入中途失败不会破坏已有快照
+     */
+    public static void write(RecommendationIndexSnapshot snapshot, long watermark, Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(temp);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+            writeBody(out, snapshot, watermark);
+            out.flush();
+            // 校验和本身不参与计算
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeBody(DataOutputStream out, RecommendationIndexSnapshot snapshot, long watermark)
+            throws IOException {
+        RoomFeatureMatrix matrix = snapshot.getMatrix();
+        int rows = matrix.size();
+        int dimension = matrix.getDimension();
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(snapshot.getVersion());
+        out.writeLong(watermark);
+        out.writeLong(snapshot.getBuiltAt());
+        out.writeLong(snapshot.getBuildMillis());
+
+        // 标签字典：行内的标签与倒排共用全局字典的ID
+        List<String> dictionary = snapshot.getTagDictionary().names();
+        out.writeInt(dictionary.size());
+        for (String name : dictionary) {
+            writeString(out, name);
+        }
+
+        // 特征矩阵
+        out.writeInt(dimension);
+        out.writeInt(rows);
+        for (int row = 0; row < rows; row++) {
+            writeString(out, matrix.getRoomId(row));
+            out.writeInt(matrix.getPriceLevel(row));
+            out.writeInt(matrix.getStarLevel(row));
+            out.writeDouble(matrix.getLongitude(row));
+            out.writeDouble(matrix.getLatitude(row));
+            out.writeBoolean(matrix.isLive(row));
+            int[] tagIds = matrix.getTagIds(row);
+            out.writeInt(tagIds.length);
+            for (int tagId : tagIds) {
+                out.writeInt(tagId);
+            }
+        }
+        double[] vectors = matrix.getVectors();
+        for (int i = 0; i < rows * dimension; i++) {
+            out.writeDouble(vectors[i]);
+        }
+
+        // 倒排位图
+        CompressedBitmap[] postings = snapshot.getPostings();
+        out.writeInt(snapshot.getPostingCount());
+        for (int tagId = 0; tagId < postings.length; tagId++) {
+            if (postings[tagId] == null) {
+                continue;
+            }
+            out.writeInt(tagId);
+            int[] values = postings[tagId].toArray();
+            out.writeInt(values.length);
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+
+        // HNSW图
+        HnswIndex annIndex = snapshot.getAnnIndex();
+        out.writeBoolean(annIndex != null);
+        if (annIndex != null) {
+            int[][][] links = annIndex.getLinks();
+            out.writeInt(annIndex.getM());
+            out.writeInt(annIndex.getEfConstruction());
+            out.writeInt(annIndex.getEntryPoint());
+            out.writeInt(annIndex.getMaxLevel());
+            out.writeInt(annIndex.size());
+            out.writeInt(links.length);
+            float[] normalized = annIndex.getNormalizedVectors();
+            for (int i = 0; i < links.length * dimension; i++) {
+                out.writeFloat(normalized[i]);
+            }
+            for (int[][] nodeLinks : links) {
+                out.writeInt(nodeLinks != null ? nodeLinks.length : -1);
+                if (nodeLinks == null) {
+                    continue;
+                }
+                for (int[] levelLinks : nodeLinks) {
+                    out.writeInt(levelLinks.length);
+                    for (int neighbour : levelLinks) {
+                        out.writeInt(neighbour);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 映射并解析快照文件
+     * @param dictionary 当前进程的全局标签字典，文件中的标签按名称映射到其中
+     * @throws IOException 文件不存在、格式版本不符或校验失败
+     */
+    public static IndexSnapshotFile read(Path path, TagDictionary dictionary) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < Long.BYTES || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("快照文件大小异常: " + fileSize);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+
+            int bodyLength = (int) fileSize - Long.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, bodyLength));
+            if (crc.getValue() != buffer.getLong(bodyLength)) {
+                throw new IOException("快照文件校验失败: " + path);
+            }
+            try {
+                return readBody(buffer, dictionary);
+            } catch (RuntimeException e) {
+                throw new IOException("快照文件内容损坏: " + path, e);
+            }
+        }
+    }
+
+    private static IndexSnapshotFile readBody(ByteBuffer buffer, TagDictionary dictionary) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("不是推荐索引快照文件");
+        }
+        int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("快照文件格式版本不兼容: " + formatVersion);
+        }
+        long version = buffer.getLong();
+        long watermark = buffer.getLong();
+        long builtAt = buffer.getLong();
+        long buildMillis = buffer.getLong();
+
+        int[] tagIdMapping = new int[buffer.getInt()];
+        for (int i = 0; i < tagIdMapping.length; i++) {
+            tagIdMapping[i] = dictionary.intern(readString(buffer));
+        }
+
+        int dimension = buffer.getInt();
+        int rows = buffer.getInt();
+        String[] roomIds = new String[rows];
+        int[] priceLevels = new int[rows];
+        int[] starLevels = new int[rows];
+        double[] longitudes = new double[rows];
+        double[] latitudes = new double[rows];
+        boolean[] live = new boolean[rows];
+        int[][] tagIds = new int[rows][];
+        for (int row = 0; row < rows; row++) {
+            roomIds[row] = readString(buffer);
+            priceLevels[row] = buffer.getInt();
+            starLevels[row] = buffer.getInt();
+            longitudes[row] = buffer.getDouble();
+            latitudes[row] = buffer.getDouble();
+            live[row] = buffer.get() != 0;
+            int[] ids = new int[buffer.getInt()];
+            for (int k = 0; k < ids.length; k++) {
+                ids[k] = tagIdMapping[buffer.getInt()];
+            }
+            Arrays.sort(ids);
+            tagIds[row] = ids;
+        }
+        double[] vectors = new double[rows * dimension];
+        buffer.asDoubleBuffer().get(vectors);
+        buffer.position(buffer.position() + vectors.length * Double.BYTES);
+        RoomFeatureMatrix matrix = RoomFeatureMatrix.restore(dimension, roomIds, vectors, priceLevels,
+                starLevels, longitudes, latitudes, tagIds, live);
+
+        int postingCount = buffer.getInt();
+        CompressedBitmap[] postings = new CompressedBitmap[dictionary.size()];
+        for (int i = 0; i < postingCount; i++) {
+            int tagId = tagIdMapping[buffer.getInt()];
+            int[] values = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + values.length * Integer.BYTES);
+            postings[tagId] = CompressedBitmap.of(values);
+        }
+
+        HnswIndex annIndex = null;
+        if (buffer.get() != 0) {
+            int m = buffer.getInt();
+            int efConstruction = buffer.getInt();
+            int entryPoint = buffer.getInt();
+            int maxLevel = buffer.getInt();
+            int nodeCount = buffer.getInt();
+            int nodes = buffer.getInt();
+            float[] normalized = new float[nodes * dimension];
+            buffer.asFloatBuffer().get(normalized);
+            buffer.position(buffer.position() + normalized.length * Float.BYTES);
+            int[][][] links = new int[nodes][][];
+            for (int node = 0; node < nodes; node++) {
+                int levels = buffer.getInt();
+                if (levels < 0) {
+                    continue;
+                }
+                links[node] = new int[levels][];
+                for (int level = 0; level < levels; level++) {
+                    int[] neighbours = new int[buffer.getInt()];
+                    buffer.asIntBuffer().get(neighbours);
+                    buffer.position(buffer.position() + neighbours.length * Integer.BYTES);
+                    links[node][level] = neighbours;
+                }
+            }
+            annIndex = HnswIndex.restore(matrix, m, efConstruction, normalized, links, entryPoint, maxLevel,
+                    nodeCount);
+        }
+
+        RecommendationIndexSnapshot snapshot = new RecommendationIndexSnapshot(version, matrix, dictionary,
+                postings, annIndex, builtAt, buildMillis);
+        return new IndexSnapshotFile(snapshot, watermark);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.demo.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 关键词多模式匹配自动机（Aho–Corasick）
+ * 由"同义词 -> 类别 + 规范词"词表一次性构建，之后对任意文本只需从左到右扫描一遍，
+ * 即可找出全部命中的关键词，复杂度与文本长度和命中数成正比，与词表大小无关。
+ * 匹配不区分大小写；扫描时顺带识别连续数字串，以{@link #NUMBER}类别输出。
+ *
+ * 实例不可变，可在多线程间共享。
+ */
+public final class KeywordAutomaton {
+
+    /**
+     * 数字串的类别名，规范词为数字串本身
+     */
+    public static final String NUMBER = "number";
+
+    private static final long EMPTY = -1L;
+
+    // 状态转移表：开放寻址哈希，键为 (状态 << 32 | 字符)
+    private final long[] transitionKeys;
+    private final int[] transitionTargets;
+    private final int transitionMask;
+
+    private final int[] failure;
+    // 每个状态命中的词条（已合并失败链上的输出）
+    private final int[][] outputs;
+
+    private final String[] categories;
+    private final String[] terms;
+    private final int[] patternLengths;
+
+    private KeywordAutomaton(long[] transitionKeys, int[] transitionTargets, int[] failure, int[][] outputs,
+                             String[] categories, String[] terms, int[] patternLengths) {
+        this.transitionKeys = transitionKeys;
+        this.transitionTargets = transitionTargets;
+        this.transitionMask = transitionKeys.length - 1;
+        this.failure = failure;
+        this.outputs = outputs;
+        this.categories = categories;
+        this.terms = terms;
+        this.patternLengths = patternLengths;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 词条数（每个同义词算一条）
+     */
+    public int patternCount() {
+        return terms.length;
+    }
+
+    /**
+     * 状态数
+     */
+    public int stateCount() {
+        return failure.length;
+    }
+
+    /**
+     * 单遍扫描文本，按命中结束位置的顺序返回全部匹配（含数字串）
+     */
+    public List<Match> findAll(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Match> matches = new ArrayList<>();
+        int state = 0;
+        int numberStart = -1;
+        int length = text.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+
+            if (c >= '0' && c <= '9') {
+                if (numberStart < 0) {
+                    numberStart = i;
+                }
+            } else if (numberStart >= 0) {
+                matches.add(new Match(NUMBER, text.substring(numberStart, i), numberStart, i));
+                numberStart = -1;
+            }
+
+            int next = transition(state, c);
+            while (next < 0 && state != 0) {
+                state = failure[state];
+                next = transition(state, c);
+            }
+            state = next < 0 ? 0 : next;
+
+            for (int entry : outputs[state]) {
+                int end = i + 1;
+                matches.add(new Match(categories[entry], terms[entry], end - patternLengths[entry], end));
+            }
+        }
+        if (numberStart >= 0) {
+            matches.add(new Match(NUMBER, text.substring(numberStart), numberStart, length));
+        }
+        return matches;
+    }
+
+    private int transition(int state, char c) {
+        long key = ((long) state << 32) | c;
+        int slot = mix(key) & transitionMask;
+        while (true) {
+            long current = transitionKeys[slot];
+            if (current == key) {
+                return transitionTargets[slot];
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & transitionMask;
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // ==================== 匹配结果 ====================
+
+    /**
+     * 一次命中：类别、规范词及其在原文中的区间[start, end)
+     */
+    public static final class Match {
+        private final String category;
+        private final String term;
+        private final int start;
+        private final int end;
+
+        Match(String category, String term, int start, int end) {
+            this.category = category;
+            this.term = term;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return category + ":" + term + "[" + start + "," + end + ")";
+        }
+    }
+
+    // ==================== 构建 ====================
+
+    public static final class Builder {
+
+        private final List<String> patterns = new ArrayList<>();
+        private final List<String> categories = new ArrayList<>();
+        private final List<String> terms = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 添加一个规范词及其同义词，规范词本身也作为匹配模式
+         */
+        public Builder add(String category, String term, String... synonyms) {
+            addPattern(category, term, term);
+            for (String synonym : synonyms) {
+                addPattern(category, term, synonym);
+            }
+            return this;
+        }
+
+        private void addPattern(String category, String term, String pattern) {
+            if (pattern == null || pattern.trim().isEmpty()) {
+                return;
+            }
+            patterns.add(pattern.trim().toLowerCase());
+            categories.add(category);
+            terms.add(term);
+        }
+
+        public KeywordAutomaton build() {
+            // 1. 构建字典树
+            List<int[]> childrenOf = new ArrayList<>();
+            List<char[]> labelsOf = new ArrayList<>();
+            List<int[]> outputsOf = new ArrayList<>();
+            childrenOf.add(new int[0]);
+            labelsOf.add(new char[0]);
+            outputsOf.add(new int[0]);
+
+            for (int entry = 0; entry < patterns.size(); entry++) {
+                String pattern = patterns.get(entry);
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = pattern.charAt(i);
+                    int next = childOf(childrenOf.get(state), labelsOf.get(state), c);
+                    if (next < 0) {
+                        next = childrenOf.size();
+                        childrenOf.add(new int[0]);
+                        labelsOf.add(new char[0]);
+                        outputsOf.add(new int[0]);
+                        childrenOf.set(state, append(childrenOf.get(state), next));
+                        labelsOf.set(state, append(labelsOf.get(state), c));
+                    }
+                    state = next;
+                }
+                outputsOf.set(state, append(outputsOf.get(state), entry));
+            }
+
+            int stateCount = childrenOf.size();
+            int transitionCount = stateCount - 1;
+            int capacity = Integer.highestOneBit(Math.max(4, transitionCount * 2 - 1)) << 1;
+            long[] keys = new long[capacity];
+            int[] targets = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            int mask = capacity - 1;
+            for (int state = 0; state < stateCount; state++) {
+                int[] children = childrenOf.get(state);
+                char[] labels = labelsOf.get(state);
+                for (int i = 0; i < children.length; i++) {
+                    long key = ((long) state << 32) | labels[i];
+                    int slot = mix(key) & mask;
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = key;
+                    targets[slot] = children[i];
+                }
+            }
+
+            // 2. 按层序计算失败指针，并把失败链上的输出合并到当前状态
+            int[] failure = new int[stateCount];
+            int[][] outputs = new int[stateCount][];
+            outputs[0] = outputsOf.get(0);
+            int[] queue = new int[stateCount];
+            int head = 0;
+            int tail = 0;
+            for (int child : childrenOf.get(0)) {
+                failure[child] = 0;
+                outputs[child] = outputsOf.get(child);
+                queue[tail++] = child;
+            }
+            while (head < tail) {
+                int state = queue[head++];
+                int[] children = childrenOf.get(state);
+                char[] labels = labelsOf.get(state);
+                for (int i = 0; i < children.length; i++) {
+                    int child = children[i];
+                    char c = labels[i];
+                    int fallback = failure[state];
+                    int target = childOf(childrenOf.get(fallback), labelsOf.get(fallback), c);
+                    while (target < 0 && fallback != 0) {
+                        fallback = failure[fallback];
+                        target = childOf(childrenOf.get(fallback), labelsOf.get(fallback), c);
+                    }
+                    failure[child] = target < 0 ? 0 : target;
+                    outputs[child] = concat(outputsOf.get(child), outputs[failure[child]]);
+                    queue[tail++] = child;
+                }
+            }
+
+            int[] lengths = new int[patterns.size()];
+            for (int entry = 0; entry < lengths.length; entry++) {
+                lengths[entry] = patterns.get(entry).length();
+            }
+            return new KeywordAutomaton(keys, targets, failure, outputs,
+                    categories.toArray(new String[0]), terms.toArray(new String[0]), lengths);
+        }
+
+        private static int childOf(int[] children, char[] labels, char c) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return children[i];
+                }
+            }
+            return -1;
+        }
+
+        private static int[] append(int[] values, int value) {
+            int[] copy = Arrays.copyOf(values, values.length + 1);
+            copy[values.length] = value;
+            return copy;
+        }
+
+        private static char[] append(char[] values, char value) {
+            char[] copy = Arrays.copyOf(values, values.length + 1);
+            copy[values.length] = value;
+            return copy;
+        }
+
+        private static int[] concat(int[] first, int[] second) {
+            if (second.length == 0) {
+                return first;
+            }
+            int[] copy = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, copy, first.length, second.length);
+            return copy;
+        }
+    }
+}
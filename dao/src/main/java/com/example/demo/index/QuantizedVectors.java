@@ -0,0 +1,248 @@
+package com.example.demo.index;
+
+import java.util.Arrays;
+
+/**
+ * 房间向量量化存储
+ * 每一维按全量数据的取值范围做仿射变换 v ≈ offset[d] + scale[d] × code，
+ * code为8位无符号整数（INT8，byte[]）或[0,1]区间内的半精度浮点（FP16，short[]）。
+ * 打分直接在编码上进行：查询向量先乘以scale得到缩放向量，并把offset部分折算为常数项，
+ * 内层循环只剩编码与缩放向量的点积。量化误差由调用方对最终Top-K用原始向量精排消除。
+ *
+ * 实例不可变；增量变更通过withRow沿用已有的scale/offset编码新行，超出范围的值被截断，
+ * 下次全量重建时重新计算量化参数。
+ */
+public final class QuantizedVectors {
+
+    public enum Mode {
+        INT8(Byte.BYTES),
+        FP16(Short.BYTES);
+
+        private final int bytesPerValue;
+
+        Mode(int bytesPerValue) {
+            this.bytesPerValue = bytesPerValue;
+        }
+
+        public int getBytesPerValue() {
+            return bytesPerValue;
+        }
+
+        /**
+         * 解析配置值，none或空值返回null表示不量化
+         */
+        public static Mode parse(String value) {
+            if (value == null || value.trim().isEmpty() || "none".equalsIgnoreCase(value.trim())) {
+                return null;
+            }
+            return Mode.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private static final int INT8_LEVELS = 255;
+
+    // 半精度到单精度的查表，FP16打分时避免逐值位运算
+    private static final float[] HALF_TO_FLOAT = new float[1 << 16];
+
+    static {
+        for (int bits = 0; bits < HALF_TO_FLOAT.length; bits++) {
+            HALF_TO_FLOAT[bits] = halfToFloat((short) bits);
+        }
+    }
+
+    private final Mode mode;
+    private final int dimension;
+    private final int rows;
+    private final double[] offsets;
+    private final double[] scales;
+    private final byte[] int8Codes;
+    private final short[] fp16Codes;
+
+    private QuantizedVectors(Mode mode, int dimension, int rows, double[] offsets, double[] scales,
+                             byte[] int8Codes, short[] fp16Codes) {
+        this.mode = mode;
+        this.dimension = dimension;
+        this.rows = rows;
+        this.offsets = offsets;
+        this.scales = scales;
+        this.int8Codes = int8Codes;
+        this.fp16Codes = fp16Codes;
+    }
+
+    /**
+     * 按每一维的最小值与取值范围量化整个特征矩阵
+     */
+    public static QuantizedVectors encode(RoomFeatureMatrix matrix, Mode mode) {
+        int dimension = matrix.getDimension();
+        int rows = matrix.size();
+        double[] vectors = matrix.getVectors();
+
+        double[] min = new double[dimension];
+        double[] max = new double[dimension];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for (int row = 0; row < rows; row++) {
+            int offset = row * dimension;
+            for (int d = 0; d < dimension; d++) {
+                double v = vectors[offset + d];
+                if (v < min[d]) {
+                    min[d] = v;
+                }
+                if (v > max[d]) {
+                    max[d] = v;
+                }
+            }
+        }
+
+        double[] offsets = new double[dimension];
+        double[] scales = new double[dimension];
+        for (int d = 0; d < dimension; d++) {
+            if (rows == 0) {
+                continue;
+            }
+            double range = max[d] - min[d];
+            offsets[d] = min[d];
+            scales[d] = mode == Mode.INT8 ? range / INT8_LEVELS : range;
+        }
+
+        QuantizedVectors quantized = new QuantizedVectors(mode, dimension, rows, offsets, scales,
+                mode == Mode.INT8 ? new byte[rows * dimension] : null,
+                mode == Mode.FP16 ? new short[rows * dimension] : null);
+        for (int row = 0; row < rows; row++) {
+            quantized.encodeRow(vectors, row);
+        }
+        return quantized;
+    }
+
+    /**
+     * 写时复制地重新编码一行，行号超出现有范围时扩容
+     */
+    public QuantizedVectors withRow(RoomFeatureMatrix matrix, int row) {
+        if (row < 0 || matrix.getDimension() != dimension) {
+            return this;
+        }
+        int newRows = Math.max(rows, row + 1);
+        QuantizedVectors copy = new QuantizedVectors(mode, dimension, newRows, offsets, scales,
+                int8Codes != null ? Arrays.copyOf(int8Codes, newRows * dimension) : null,
+                fp16Codes != null ? Arrays.copyOf(fp16Codes, newRows * dimension) : null);
+        copy.encodeRow(matrix.getVectors(), row);
+        return copy;
+    }
+
+    private void encodeRow(double[] vectors, int row) {
+        int offset = row * dimension;
+        for (int d = 0; d < dimension; d++) {
+            double scale = scales[d];
+            double normalized = scale == 0.0 ? 0.0 : (vectors[offset + d] - offsets[d]) / scale;
+            if (mode == Mode.INT8) {
+                long code = Math.round(Math.min(INT8_LEVELS, Math.max(0.0, normalized)));
+                int8Codes[offset + d] = (byte) code;
+            } else {
+                fp16Codes[offset + d] = floatToHalf((float) Math.min(1.0, Math.max(0.0, normalized)));
+            }
+        }
+    }
+
+    /**
+     * 一个查询向量对一批行计算近似余弦相似度，模长使用矩阵中预先算好的精确值
+     */
+    public void cosineBatch(double[] query, double queryInverseNorm, double[] inverseNorms,
+                            int[] candidateRows, int count, double[] out) {
+        double[] scaledQuery = new double[dimension];
+        double bias = 0.0;
+        for (int d = 0; d < dimension; d++) {
+            scaledQuery[d] = query[d] * scales[d];
+            bias += query[d] * offsets[d];
+        }
+
+        for (int i = 0; i < count; i++) {
+            int row = candidateRows[i];
+            double scale = queryInverseNorm * inverseNorms[row];
+            if (scale == 0.0 || row >= rows) {
+                out[i] = 0.0;
+                continue;
+            }
+            int offset = row * dimension;
+            double dot = bias;
+            if (mode == Mode.INT8) {
+                for (int d = 0; d < dimension; d++) {
+                    dot += scaledQuery[d] * (int8Codes[offset + d] & 0xFF);
+                }
+            } else {
+                for (int d = 0; d < dimension; d++) {
+                    dot += scaledQuery[d] * HALF_TO_FLOAT[fp16Codes[offset + d] & 0xFFFF];
+                }
+            }
+            out[i] = dot * scale;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * 编码占用的字节数（不含每维参数）
+     */
+    public long getSizeInBytes() {
+        return (long) rows * dimension * mode.getBytesPerValue();
+    }
+
+    // ==================== 半精度转换 ====================
+
+    static short floatToHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (Float.isNaN(value)) {
+            return (short) (sign | 0x7E00);
+        }
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            // 非规格化数，按舍入到最近处理
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            if (((mantissa >> (shift - 1)) & 1) != 0) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        if (exponent >= 31) {
+            return (short) (sign | 0x7C00);
+        }
+        int half = sign | (exponent << 10) | (mantissa >> 13);
+        if ((mantissa & 0x1000) != 0) {
+            half++; // 进位可能溢出到指数位，结果仍然正确
+        }
+        return (short) half;
+    }
+
+    static float halfToFloat(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+
+        if (exponent == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // 非规格化数
+            float value = mantissa / 1024.0f * (1.0f / 16384.0f);
+            return sign != 0 ? -value : value;
+        }
+        if (exponent == 31) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
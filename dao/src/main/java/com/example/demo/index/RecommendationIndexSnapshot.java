@@ -0,0 +1,137 @@
+package com.example.demo.index;
+
+/**
+ * 推荐索引快照
+ * 特征矩阵、倒排位图与ANN索引在同一批数据上构建，整体作为不可变对象发布，
+ * 请求开始时取一次引用，整个请求内看到的行号、位图与向量始终一致。
+ * 倒排位图按全局标签字典的ID存放在数组中，召回时按ID直接取得，不经过字符串哈希。
+ * 开启量化时同时携带与特征矩阵行号对应的量化向量，用于排序阶段的粗排；
+ * 地理网格索引同样以矩阵行号为元素，用于附近房间查询与位置召回。
+ */
+public final class RecommendationIndexSnapshot {
+
+    private static final RecommendationIndexSnapshot EMPTY = new RecommendationIndexSnapshot(
+            0L, RoomFeatureMatrix.empty(), new TagDictionary(), new CompressedBitmap[0], null, 0L, 0L);
+
+    private final long version;
+    private final RoomFeatureMatrix matrix;
+    private final TagDictionary dictionary;
+    private final CompressedBitmap[] postings; // 下标为标签ID，没有房间的标签为null
+    private final int postingCount;
+    private final HnswIndex annIndex;
+    private final QuantizedVectors quantizedVectors;
+    private final GeoGridIndex geoIndex;
+    private final long builtAt;
+    private final long buildMillis;
+    private final long postingsSizeInBytes;
+
+    public RecommendationIndexSnapshot(long version, RoomFeatureMatrix matrix, TagDictionary dictionary,
+                                       CompressedBitmap[] postings, HnswIndex annIndex,
+                                       long builtAt, long buildMillis) {
+        this(version, matrix, dictionary, postings, annIndex, null, null, builtAt, buildMillis);
+    }
+
+    public RecommendationIndexSnapshot(long version, RoomFeatureMatrix matrix, TagDictionary dictionary,
+                                       CompressedBitmap[] postings, HnswIndex annIndex,
+                                       QuantizedVectors quantizedVectors, GeoGridIndex geoIndex,
+                                       long builtAt, long buildMillis) {
+        this.version = version;
+        this.matrix = matrix;
+        this.dictionary = dictionary;
+        this.postings = postings;
+        this.annIndex = annIndex;
+        this.quantizedVectors = quantizedVectors;
+        this.geoIndex = geoIndex;
+        this.builtAt = builtAt;
+        this.buildMillis = buildMillis;
+
+        long bytes = 0L;
+        int count = 0;
+        for (CompressedBitmap posting : postings) {
+            if (posting != null) {
+                bytes += posting.getSizeInBytes();
+                count++;
+            }
+        }
+        this.postingsSizeInBytes = bytes;
+        this.postingCount = count;
+    }
+
+    public static RecommendationIndexSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 查询标签ID对应的房间位图，不存在时返回null
+     */
+    public CompressedBitmap posting(int tagId) {
+        return tagId >= 0 && tagId < postings.length ? postings[tagId] : null;
+    }
+
+    /**
+     * 按标签名查询房间位图（用于搜索词等外部输入），不存在时返回null
+     */
+    public CompressedBitmap posting(String tag) {
+        return posting(dictionary.idOf(tag));
+    }
+
+    public boolean isEmpty() {
+        return matrix.isEmpty();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public RoomFeatureMatrix getMatrix() {
+        return matrix;
+    }
+
+    /**
+     * 按标签ID排列的倒排位图，调用方不得修改
+     */
+    public CompressedBitmap[] getPostings() {
+        return postings;
+    }
+
+    /**
+     * 有房间的标签数
+     */
+    public int getPostingCount() {
+        return postingCount;
+    }
+
+    public TagDictionary getTagDictionary() {
+        return dictionary;
+    }
+
+    public HnswIndex getAnnIndex() {
+        return annIndex;
+    }
+
+    /**
+     * 量化向量，未开启量化时为null
+     */
+    public QuantizedVectors getQuantizedVectors() {
+        return quantizedVectors;
+    }
+
+    /**
+     * 地理网格索引，空快照时为null
+     */
+    public GeoGridIndex getGeoIndex() {
+        return geoIndex;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    public long getPostingsSizeInBytes() {
+        return postingsSizeInBytes;
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.demo.index;
+
+import com.example.demo.model.RoomFeatures;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 房间特征列式存储
+ * 所有房间向量按行连续存放在一个double[]中，价格等级、星级、经纬度使用平行的基本类型数组，
+ * 通过roomId→行号字典定位。每行向量模长的倒数在构建时算好，相似度计算只需做点积。实例构建后不可修改，可被推荐请求并发读取；
+ * 增量变更通过withRow/withoutRow生成新实例，已下线房间的行保留为失效行直到下次全量重建。
+ */
+public final class RoomFeatureMatrix {
+
+    public static final int DEFAULT_DIMENSION = 10;
+
+    private static final int DEFAULT_LEVEL = 3;
+
+    private static final RoomFeatureMatrix EMPTY = new RoomFeatureMatrix(
+            DEFAULT_DIMENSION, new String[0], Collections.emptyMap(), new double[0], new double[0], new int[0],
+            new int[0], new double[0], new double[0], new int[0][], new boolean[0], 0);
+
+    private final int dimension;
+    private final String[] roomIds;
+    private final Map<String, Integer> rowIndex;
+    private final double[] vectors;
+    private final double[] inverseNorms; // 每行向量模长的倒数，零向量为0
+    private final int[] priceLevels;
+    private final int[] starLevels;
+    private final double[] longitudes; // 无坐标为NaN
+    private final double[] latitudes;
+    private final int[][] tagIds; // 每行写入倒排的标签ID（标签、价格等级、星级），升序
+    private final boolean[] live;
+    private final int liveCount;
+
+    private RoomFeatureMatrix(int dimension, String[] roomIds, Map<String, Integer> rowIndex,
+                              double[] vectors, double[] inverseNorms, int[] priceLevels, int[] starLevels,
+                              double[] longitudes, double[] latitudes, int[][] tagIds, boolean[] live,
+                              int liveCount) {
+        this.dimension = dimension;
+        this.roomIds = roomIds;
+        this.rowIndex = rowIndex;
+        this.vectors = vectors;
+        this.inverseNorms = inverseNorms;
+        this.priceLevels = priceLevels;
+        this.starLevels = starLevels;
+        this.longitudes = longitudes;
+        this.latitudes = latitudes;
+        this.tagIds = tagIds;
+        this.live = live;
+        this.liveCount = liveCount;
+    }
+
+    public static RoomFeatureMatrix empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 从数据库特征记录构建矩阵，JSON向量直接解析进连续向量块，标签经字典转换为ID
+     */
+    public static RoomFeatureMatrix build(List<RoomFeatures> features, TagDictionary dictionary) {
+        if (features == null || features.isEmpty()) {
+            return EMPTY;
+        }
+
+        int size = features.size();
+        int dimension = DEFAULT_DIMENSION;
+        for (int i = 0; i < size; i++) {
+            dimension = Math.max(dimension, features.get(i).getFeatureVectorLength());
+        }
+
+        String[] roomIds = new String[size];
+        Map<String, Integer> rowIndex = new HashMap<>(size * 2);
+        double[] vectors = new double[size * dimension];
+        int[] priceLevels = new int[size];
+        int[] starLevels = new int[size];
+        double[] longitudes = new double[size];
+        double[] latitudes = new double[size];
+        int[][] tagIds = new int[size][];
+
+        int row = 0;
+        for (int i = 0; i < size; i++) {
+            RoomFeatures room = features.get(i);
+            if (room.getRoomId() == null || rowIndex.containsKey(room.getRoomId())) {
+                continue;
+            }
+
+            roomIds[row] = room.getRoomId();
+            rowIndex.put(room.getRoomId(), row);
+            writeRow(room, row, dimension, vectors, priceLevels, starLevels, longitudes, latitudes,
+                    tagIds, dictionary);
+            row++;
+        }
+
+        if (row < size) {
+            roomIds = Arrays.copyOf(roomIds, row);
+            vectors = Arrays.copyOf(vectors, row * dimension);
+            priceLevels = Arrays.copyOf(priceLevels, row);
+            starLevels = Arrays.copyOf(starLevels, row);
+            longitudes = Arrays.copyOf(longitudes, row);
+            latitudes = Arrays.copyOf(latitudes, row);
+            tagIds = Arrays.copyOf(tagIds, row);
+        }
+        boolean[] live = new boolean[row];
+        Arrays.fill(live, true);
+
+        return new RoomFeatureMatrix(dimension, roomIds, rowIndex, vectors, inverseNormsOf(vectors, row, dimension),
+                priceLevels, starLevels, longitudes, latitudes, tagIds, live, row);
+    }
+
+    /**
+     * 从快照文件恢复矩阵，数组直接持有不再复制
+     */
+    static RoomFeatureMatrix restore(int dimension, String[] roomIds, double[] vectors, int[] priceLevels,
+                                     int[] starLevels, double[] longitudes, double[] latitudes,
+                                     int[][] tagIds, boolean[] live) {
+        Map<String, Integer> rowIndex = new HashMap<>(roomIds.length * 2);
+        int liveCount = 0;
+        for (int row = 0; row < roomIds.length; row++) {
+            rowIndex.put(roomIds[row], row);
+            if (live[row]) {
+                liveCount++;
+            }
+        }
+        return new RoomFeatureMatrix(dimension, roomIds, rowIndex, vectors,
+                inverseNormsOf(vectors, roomIds.length, dimension), priceLevels, starLevels, longitudes, latitudes,
+                tagIds, live, liveCount);
+    }
+
+    private static double[] inverseNormsOf(double[] vectors, int rows, int dimension) {
+        double[] inverseNorms = new double[rows];
+        for (int row = 0; row < rows; row++) {
+            inverseNorms[row] = SimilarityKernel.inverseNorm(vectors, row * dimension, dimension);
+        }
+        return inverseNorms;
+    }
+
+    /**
+     * 房间写入倒排的标签ID：标签、价格等级、星级，升序去重
+     */
+    public static int[] tagIdsOf(RoomFeatures room, TagDictionary dictionary) {
+        List<String> tags = room.getTagsList();
+        int[] ids = new int[(tags != null ? tags.size() : 0) + 2];
+        int count = 0;
+        if (tags != null) {
+            for (String tag : tags) {
+                int id = dictionary.intern(tag);
+                if (id >= 0) {
+                    ids[count++] = id;
+                }
+            }
+        }
+        ids[count++] = dictionary.priceLevelId(room.getPriceLevel() != null ? room.getPriceLevel() : DEFAULT_LEVEL);
+        ids[count++] = dictionary.starLevelId(room.getStarLevel() != null ? room.getStarLevel() : DEFAULT_LEVEL);
+        return Arrays.stream(ids, 0, count).sorted().distinct().toArray();
+    }
+
+    /**
+     * 写时复制地新增或替换一个房间的特征，已存在的房间原位替换行内容，新房间追加到末尾
+     */
+    public RoomFeatureMatrix withRow(RoomFeatures room, TagDictionary dictionary) {
+        Integer existing = rowIndex.get(room.getRoomId());
+        int size = roomIds.length;
+        int row = existing != null ? existing : size;
+        int newSize = existing != null ? size : size + 1;
+
+        String[] newRoomIds = Arrays.copyOf(roomIds, newSize);
+        Map<String, Integer> newRowIndex = rowIndex;
+        if (existing == null) {
+            newRowIndex = new HashMap<>(rowIndex);
+            newRowIndex.put(room.getRoomId(), row);
+        }
+        double[] newVectors = Arrays.copyOf(vectors, newSize * dimension);
+        double[] newInverseNorms = Arrays.copyOf(inverseNorms, newSize);
+        int[] newPriceLevels = Arrays.copyOf(priceLevels, newSize);
+        int[] newStarLevels = Arrays.copyOf(starLevels, newSize);
+        double[] newLongitudes = Arrays.copyOf(longitudes, newSize);
+        double[] newLatitudes = Arrays.copyOf(latitudes, newSize);
+        int[][] newTagIds = Arrays.copyOf(tagIds, newSize);
+        boolean[] newLive = Arrays.copyOf(live, newSize);
+
+        newRoomIds[row] = room.getRoomId();
+        Arrays.fill(newVectors, row * dimension, row * dimension + dimension, 0.0);
+        writeRow(room, row, dimension,
+                newVectors, newPriceLevels, newStarLevels, newLongitudes, newLatitudes, newTagIds, dictionary);
+        newInverseNorms[row] = SimilarityKernel.inverseNorm(newVectors, row * dimension, dimension);
+        int newLiveCount = newLive[row] ? liveCount : liveCount + 1;
+        newLive[row] = true;
+
+        return new RoomFeatureMatrix(dimension, newRoomIds, newRowIndex, newVectors, newInverseNorms,
+                newPriceLevels, newStarLevels, newLongitudes, newLatitudes, newTagIds, newLive, newLiveCount);
+    }
+
+    /**
+     * 写时复制地将房间所在行标记为失效
+     */
+    public RoomFeatureMatrix withoutRow(String roomId) {
+        int row = rowOf(roomId);
+        if (row < 0) {
+            return this;
+        }
+        boolean[] newLive = live.clone();
+        newLive[row] = false;
+        return new RoomFeatureMatrix(dimension, roomIds, rowIndex, vectors, inverseNorms, priceLevels,
+                starLevels, longitudes, latitudes, tagIds, newLive, liveCount - 1);
+    }
+
+    private static void writeRow(RoomFeatures room, int row, int dimension, double[] vectors,
+                                 int[] priceLevels, int[] starLevels, double[] longitudes, double[] latitudes,
+                                 int[][] tagIds, TagDictionary dictionary) {
+        priceLevels[row] = room.getPriceLevel() != null ? room.getPriceLevel() : DEFAULT_LEVEL;
+        starLevels[row] = room.getStarLevel() != null ? room.getStarLevel() : DEFAULT_LEVEL;
+        longitudes[row] = room.getLongitude() != null ? room.getLongitude() : Double.NaN;
+        latitudes[row] = room.getLatitude() != null ? room.getLatitude() : Double.NaN;
+        tagIds[row] = tagIdsOf(room, dictionary);
+        room.readFeatureVector(vectors, row * dimension, dimension);
+    }
+
+    /**
+     * 查询房间所在行，不存在或已失效时返回-1
+     */
+    public int rowOf(String roomId) {
+        Integer row = roomId != null ? rowIndex.get(roomId) : null;
+        return row != null && live[row] ? row : -1;
+    }
+
+    /**
+     * 查询房间所在行，包含已失效的行，不存在时返回-1
+     */
+    public int findRow(String roomId) {
+        Integer row = roomId != null ? rowIndex.get(roomId) : null;
+        return row != null ? row : -1;
+    }
+
+    /**
+     * 行总数（包含失效行），行号范围为[0, size)
+     */
+    public int size() {
+        return roomIds.length;
+    }
+
+    /**
+     * 有效房间数
+     */
+    public int liveCount() {
+        return liveCount;
+    }
+
+    public boolean isEmpty() {
+        return liveCount == 0;
+    }
+
+    public boolean isLive(int row) {
+        return live[row];
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public String getRoomId(int row) {
+        return roomIds[row];
+    }
+
+    public int getPriceLevel(int row) {
+        return priceLevels[row];
+    }
+
+    public int getStarLevel(int row) {
+        return starLevels[row];
+    }
+
+    /**
+     * 经度，无坐标时为NaN
+     */
+    public double getLongitude(int row) {
+        return longitudes[row];
+    }
+
+    /**
+     * 纬度，无坐标时为NaN
+     */
+    public double getLatitude(int row) {
+        return latitudes[row];
+    }
+
+    public boolean hasLocation(int row) {
+        return !Double.isNaN(longitudes[row]) && !Double.isNaN(latitudes[row]);
+    }
+
+    /**
+     * 行内写入倒排的标签ID（升序），调用方不得修改
+     */
+    public int[] getTagIds(int row) {
+        return tagIds[row];
+    }
+
+    /**
+     * 行向量在连续存储中的起始下标
+     */
+    public int vectorOffset(int row) {
+        return row * dimension;
+    }
+
+    /**
+     * 底层向量存储（只读，调用方不得修改）
+     */
+    public double[] getVectors() {
+        return vectors;
+    }
+
+    /**
+     * 每行向量模长的倒数（只读，调用方不得修改）
+     */
+    public double[] getInverseNorms() {
+        return inverseNorms;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.index;
+
+/**
+ * 向量相似度计算内核
+ * 房间向量的模长在特征矩阵中预先计算好，内核只负责点积，
+ * 余弦相似度 = 点积 × 用户向量模长倒数 × 房间向量模长倒数。
+ */
+public interface SimilarityKernel {
+
+    /**
+     * 内核名称，用于日志和状态接口
+     */
+    String name();
+
+    /**
+     * 两段连续存储向量的点积
+     */
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /**
+     * 一个查询向量对一批矩阵行计算余弦相似度，结果按rows顺序写入out
+     * @param queryInverseNorm 查询向量模长的倒数，零向量传0
+     * @param inverseNorms 矩阵每行模长的倒数，零向量为0
+     */
+    default void cosineBatch(double[] query, double queryInverseNorm, double[] vectors, double[] inverseNorms,
+                             int dimension, int[] rows, int count, double[] out) {
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            double scale = queryInverseNorm * inverseNorms[row];
+            out[i] = scale == 0.0 ? 0.0 : dot(query, 0, vectors, row * dimension, dimension) * scale;
+        }
+    }
+
+    /**
+     * 向量模长的倒数，零向量返回0，使其相似度恒为0
+     */
+    static double inverseNorm(double[] vector, int offset, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            double v = vector[offset + i];
+            sum += v * v;
+        }
+        return sum == 0.0 ? 0.0 : 1.0 / Math.sqrt(sum);
+    }
+}
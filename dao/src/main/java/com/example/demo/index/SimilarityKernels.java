@@ -0,0 +1,84 @@
+package com.example.demo.index;
+
+import java.util.Random;
+
+/**
+ * 相似度内核选择
+ * 运行时带有 --add-modules jdk.incubator.vector 且平台向量宽度大于1时使用SIMD内核，
+ * 并用随机向量与标量结果做一次校验；任一条件不满足时回退到标量内核。
+ */
+public final class SimilarityKernels {
+
+    public static final String AUTO = "auto";
+    public static final String SCALAR = "scalar";
+    public static final String SIMD = "simd";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private SimilarityKernels() {
+    }
+
+    public static SimilarityKernel scalar() {
+        return ScalarSimilarityKernel.INSTANCE;
+    }
+
+    /**
+     * 按偏好选择内核：scalar强制标量，auto/simd在可用时使用SIMD
+     */
+    public static SimilarityKernel select(String preference) {
+        if (SCALAR.equalsIgnoreCase(preference)) {
+            return scalar();
+        }
+        SimilarityKernel vectorized = tryVectorized();
+        return vectorized != null ? vectorized : scalar();
+    }
+
+    /**
+     * SIMD内核不可用的原因，可用时返回null
+     */
+    public static String unavailableReason() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return "未加载模块 " + VECTOR_MODULE + "（启动参数需包含 --add-modules " + VECTOR_MODULE + "）";
+        }
+        try {
+            if (VectorizedSimilarityKernel.lanes() < 2) {
+                return "平台不支持多通道double向量";
+            }
+        } catch (Throwable e) {
+            return "向量化内核初始化失败: " + e;
+        }
+        return null;
+    }
+
+    private static SimilarityKernel tryVectorized() {
+        if (unavailableReason() != null) {
+            return null;
+        }
+        try {
+            SimilarityKernel kernel = new VectorizedSimilarityKernel();
+            return agreesWithScalar(kernel) ? kernel : null;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static boolean agreesWithScalar(SimilarityKernel kernel) {
+        Random random = new Random(42);
+        for (int length = 1; length <= 67; length += 11) {
+            double[] a = new double[length + 3];
+            double[] b = new double[length + 5];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = random.nextDouble() - 0.5;
+            }
+            for (int i = 0; i < b.length; i++) {
+                b[i] = random.nextDouble() - 0.5;
+            }
+            double expected = scalar().dot(a, 3, b, 5, length);
+            double actual = kernel.dot(a, 3, b, 5, length);
+            if (Math.abs(expected - actual) > 1e-9 * Math.max(1.0, Math.abs(expected))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
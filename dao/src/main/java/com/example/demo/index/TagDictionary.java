@@ -0,0 +1,129 @@
+package com.example.demo.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 全局标签字典
+ * 把房间标签、用户偏好标签以及价格等级、星级等合成键统一映射为从0开始的稠密整数ID，
+ * 倒排位图、房间标签集合与用户标签权重都以ID表示，召回与打分路径上不再拼接或哈希字符串。
+ * 价格等级与星级的ID在构造时预先分配并缓存在数组中，按等级直接取得。
+ *
+ * 只增不删，ID一经分配不再改变；查询无锁，新增串行执行。持久化由调用方负责（见names）。
+ */
+public final class TagDictionary {
+
+    public static final String PRICE_LEVEL_PREFIX = "price_level_";
+    public static final String STAR_PREFIX = "star_";
+
+    // 预先分配ID的等级范围[0, CACHED_LEVELS)
+    private static final int CACHED_LEVELS = 10;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private volatile int size;
+
+    private final int[] priceLevelIds = new int[CACHED_LEVELS];
+    private final int[] starLevelIds = new int[CACHED_LEVELS];
+
+    public TagDictionary() {
+        this(new ArrayList<>());
+    }
+
+    /**
+     * 按给定顺序恢复字典，第i个名称的ID为i
+     */
+    public TagDictionary(List<String> persistedNames) {
+        for (String name : persistedNames) {
+            intern(name);
+        }
+        for (int level = 0; level < CACHED_LEVELS; level++) {
+            priceLevelIds[level] = intern(priceLevelTag(level));
+            starLevelIds[level] = intern(starTag(level));
+        }
+    }
+
+    public static String priceLevelTag(int level) {
+        return PRICE_LEVEL_PREFIX + level;
+    }
+
+    public static String starTag(int level) {
+        return STAR_PREFIX + level;
+    }
+
+    /**
+     * 取得标签ID，不存在时分配新ID；空白标签返回-1
+     * 标签会去掉首尾空白，换行替换为空格，以便逐行持久化
+     */
+    public int intern(String tag) {
+        String name = normalize(tag);
+        if (name == null) {
+            return -1;
+        }
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            existing = ids.get(name);
+            if (existing != null) {
+                return existing;
+            }
+            int id = size;
+            if (id == names.length) {
+                names = Arrays.copyOf(names, id * 2);
+            }
+            names[id] = name;
+            size = id + 1;
+            ids.put(name, id);
+            return id;
+        }
+    }
+
+    /**
+     * 查询标签ID，不存在时返回-1，不会新增
+     */
+    public int idOf(String tag) {
+        String name = normalize(tag);
+        Integer id = name != null ? ids.get(name) : null;
+        return id != null ? id : -1;
+    }
+
+    public String nameOf(int id) {
+        return id >= 0 && id < size ? names[id] : null;
+    }
+
+    public int priceLevelId(int level) {
+        return level >= 0 && level < CACHED_LEVELS ? priceLevelIds[level] : intern(priceLevelTag(level));
+    }
+
+    public int starLevelId(int level) {
+        return level >= 0 && level < CACHED_LEVELS ? starLevelIds[level] : intern(starTag(level));
+    }
+
+    /**
+     * 标签总数，ID范围为[0, size)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 按ID顺序排列的全部名称，用于持久化
+     */
+    public List<String> names() {
+        int count = size;
+        return new ArrayList<>(Arrays.asList(names).subList(0, count));
+    }
+
+    private static String normalize(String tag) {
+        if (tag == null) {
+            return null;
+        }
+        String name = tag.replace('\r', ' ').replace('\n', ' ').trim();
+        return name.isEmpty() ? null : name;
+    }
+}
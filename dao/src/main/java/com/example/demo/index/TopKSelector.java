@@ -0,0 +1,120 @@
+package com.example.demo.index;
+
+/**
+ * 固定容量的Top-K选择器
+ * 内部为基于基本类型数组的小顶堆，堆顶是当前保留结果中分数最低的一个，
+ * 新元素只有高于堆顶才会入堆，整体复杂度O(N log K)，不产生装箱对象。
+ */
+public final class TopKSelector {
+
+    private final int capacity;
+    private final int[] ids;
+    private final double[] scores;
+    private int size;
+
+    public TopKSelector(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.ids = new int[this.capacity];
+        this.scores = new double[this.capacity];
+    }
+
+    /**
+     * 提交一个候选，返回是否被保留
+     */
+    public boolean offer(int id, double score) {
+        if (capacity == 0) {
+            return false;
+        }
+        if (size < capacity) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        ids[0] = id;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * 当前保留结果中的最低分，未满时返回负无穷
+     */
+    public double threshold() {
+        return size < capacity ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按分数从高到低依次取出，调用后选择器被清空
+     * 返回的数组长度为保留结果数，分数写入scoresOut（可为null）
+     */
+    public int[] drainDescending(double[] scoresOut) {
+        int count = size;
+        int[] result = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            result[i] = ids[0];
+            if (scoresOut != null) {
+                scoresOut[i] = scores[0];
+            }
+            size--;
+            if (size > 0) {
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void siftUp(int index) {
+        int id = ids[index];
+        double score = scores[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            ids[index] = ids[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+
+    private void siftDown(int index) {
+        int id = ids[index];
+        double score = scores[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && scores[right] < scores[child]) {
+                child = right;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            ids[index] = ids[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.demo.index;
+
+import com.example.demo.model.UserProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 单次请求的用户打分上下文
+ * 每个请求只从用户画像编译一次：价格区间与星级偏好解析为整数，画像向量归一化为基本类型数组，
+ * 标签偏好JSON按全局标签字典映射为按ID排序的权重数组，业务规则分按(价格等级, 星级)预先算成查找表。
+ * 召回与打分都只读取本对象，逐候选的循环里不再解析字符串，也不创建对象。
+ *
+ * 实例不可变，可在并发召回的多个线程间共享。
+ */
+public final class UserScoringContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserScoringContext.class);
+
+    // 标签权重超过该值才参与倒排召回
+    private static final double RECALL_TAG_THRESHOLD = 0.3;
+
+    // 业务规则分查找表覆盖的等级范围[0, MAX_LEVEL]，超出时现场计算
+    private static final int MAX_LEVEL = 9;
+    private static final int LEVELS = MAX_LEVEL + 1;
+
+    private final Long userId;
+
+    private final boolean hasPriceRange;
+    private final int minPriceLevel;
+    private final int maxPriceLevel;
+
+    private final boolean hasStarPreference;
+    private final int starPreference;
+
+    private final double[] vector;
+    private final boolean zeroVector;
+
+    // 按标签ID升序的并行数组，字典中不存在的标签没有房间，直接丢弃
+    private final int[] tagIds;
+    private final double[] tagWeights;
+
+    private final int[] recallTagIds;
+
+    private final double[] businessScores;
+
+    private UserScoringContext(Long userId, int[] priceRange, Integer starPreference, double[] vector,
+                               int[] tagIds, double[] tagWeights, TagDictionary dictionary) {
+        this.userId = userId;
+        this.hasPriceRange = priceRange != null;
+        this.minPriceLevel = priceRange != null ? priceRange[0] : 0;
+        this.maxPriceLevel = priceRange != null ? priceRange[1] : -1;
+        this.hasStarPreference = starPreference != null;
+        this.starPreference = starPreference != null ? starPreference : 0;
+        this.vector = vector;
+        this.zeroVector = SimilarityKernel.inverseNorm(vector, 0, vector.length) == 0.0;
+        this.tagIds = tagIds;
+        this.tagWeights = tagWeights;
+
+        // 价格区间先截断到已知等级再分配，画像中异常的大区间不会放大数组；
+        // 读路径只查询字典，不把画像里出现的新等级写入字典，字典中不存在的等级没有倒排，直接跳过
+        int recallMinLevel = Math.max(minPriceLevel, 0);
+        int recallMaxLevel = Math.min(maxPriceLevel, MAX_LEVEL);
+        int recallCount = 0;
+        int[] recall = new int[tagIds.length + Math.max(0, recallMaxLevel - recallMinLevel + 1)];
+        for (int i = 0; i < tagIds.length; i++) {
+            if (tagWeights[i] > RECALL_TAG_THRESHOLD) {
+                recall[recallCount++] = tagIds[i];
+            }
+        }
+        for (int level = recallMinLevel; level <= recallMaxLevel; level++) {
+            int levelId = dictionary.idOf(TagDictionary.priceLevelTag(level));
+            if (levelId >= 0) {
+                recall[recallCount++] = levelId;
+            }
+        }
+        this.recallTagIds = Arrays.copyOf(recall, recallCount);
+
+        this.businessScores = new double[LEVELS * LEVELS];
+        for (int priceLevel = 0; priceLevel < LEVELS; priceLevel++) {
+            for (int starLevel = 0; starLevel < LEVELS; starLevel++) {
+                businessScores[priceLevel * LEVELS + starLevel] = computeBusinessScore(priceLevel, starLevel);
+            }
+        }
+    }
+
+    /**
+     * 从用户画像编译打分上下文
+     * @param dimension 特征矩阵维度，画像向量按该维度截断或补零后归一化
+     * @param dictionary 索引快照使用的标签字典，只查询不新增
+     */
+    public static UserScoringContext compile(UserProfile profile, int dimension, TagDictionary dictionary) {
+        Map<String, Double> preferredTags = profile.getPreferredTagsMap();
+        long[] packed = new long[preferredTags.size()];
+        double[] weights = new double[preferredTags.size()];
+        int count = 0;
+        for (Map.Entry<String, Double> entry : preferredTags.entrySet()) {
+            int tagId = dictionary.idOf(entry.getKey());
+            if (tagId >= 0) {
+                // 高32位为标签ID、低32位为原下标，排序后按ID取权重
+                packed[count] = ((long) tagId << 32) | count;
+                weights[count] = entry.getValue() != null ? entry.getValue() : 0.0;
+                count++;
+            }
+        }
+        Arrays.sort(packed, 0, count);
+        int[] tagIds = new int[count];
+        double[] tagWeights = new double[count];
+        for (int i = 0; i < count; i++) {
+            tagIds[i] = (int) (packed[i] >>> 32);
+            tagWeights[i] = weights[(int) packed[i]];
+        }
+
+        double[] vector = new double[dimension];
+        Double[] profileVector = profile.getProfileVector();
+        if (profileVector != null) {
+            int length = Math.min(profileVector.length, dimension);
+            for (int i = 0; i < length; i++) {
+                vector[i] = profileVector[i] != null ? profileVector[i] : 0.0;
+            }
+        }
+        double inverseNorm = SimilarityKernel.inverseNorm(vector, 0, dimension);
+        for (int i = 0; i < dimension; i++) {
+            vector[i] *= inverseNorm;
+        }
+
+        return new UserScoringContext(profile.getUserId(), parsePriceRange(profile), profile.getStarPreference(),
+                vector, tagIds, tagWeights, dictionary);
+    }
+
+    /**
+     * 价格区间格式为"最低等级,最高等级"，格式不正确时视为没有价格偏好
+     */
+    private static int[] parsePriceRange(UserProfile profile) {
+        String priceRange = profile.getPriceRange();
+        if (priceRange == null) {
+            return null;
+        }
+        try {
+            String[] range = priceRange.split(",");
+            return new int[]{Integer.parseInt(range[0].trim()), Integer.parseInt(range[1].trim())};
+        } catch (RuntimeException e) {
+            logger.warn("用户价格偏好格式错误，忽略价格偏好，用户ID: {}, 值: {}", profile.getUserId(), priceRange);
+            return null;
+        }
+    }
+
+    /**
+     * 业务规则评分：星级越接近偏好越高，价格等级落在偏好区间内加分
+     */
+    public double businessScore(int priceLevel, int starLevel) {
+        if (priceLevel >= 0 && priceLevel < LEVELS && starLevel >= 0 && starLevel < LEVELS) {
+            return businessScores[priceLevel * LEVELS + starLevel];
+        }
+        return computeBusinessScore(priceLevel, starLevel);
+    }
+
+    private double computeBusinessScore(int priceLevel, int starLevel) {
+        double score = 0.0;
+        if (hasStarPreference) {
+            int starDiff = Math.abs(starLevel - starPreference);
+            score += Math.max(0, 1.0 - starDiff * 0.2);
+        }
+        if (hasPriceRange && priceLevel >= minPriceLevel && priceLevel <= maxPriceLevel) {
+            score += 0.5;
+        }
+        return Math.min(1.0, score);
+    }
+
+    /**
+     * 标签ID对应的偏好权重，未偏好的标签为0
+     */
+    public double tagWeight(int tagId) {
+        int index = Arrays.binarySearch(tagIds, tagId);
+        return index >= 0 ? tagWeights[index] : 0.0;
+    }
+
+    public int tagCount() {
+        return tagIds.length;
+    }
+
+    /**
+     * 用于倒排召回的标签ID：权重超过阈值的偏好标签与价格区间内的价格等级，调用方不得修改
+     */
+    public int[] getRecallTagIds() {
+        return recallTagIds;
+    }
+
+    /**
+     * 归一化后的画像向量（零向量保持为零），调用方不得修改
+     */
+    public double[] getVector() {
+        return vector;
+    }
+
+    /**
+     * 归一化向量的模长倒数，零向量为0
+     */
+    public double getInverseNorm() {
+        return zeroVector ? 0.0 : 1.0;
+    }
+
+    public boolean hasVector() {
+        return !zeroVector;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.demo.index;
+
+import java.util.Arrays;
+
+/**
+ * 用户画像向量索引
+ * 每个用户的画像向量先归一化为单位向量，再按固定比例量化为有符号8位整数，
+ * 10维向量每个用户只占10字节编码加8字节用户ID，百万级用户也只需几十MB。
+ * 余弦相似度即两个编码的整数点积除以127²，查询对全部用户做一次顺序扫描，
+ * 用固定容量小顶堆选出Top-K，结果与精确余弦的误差在量化步长量级。
+ *
+ * 用户ID到槽位的映射是基本类型的开放寻址表，避免百万个装箱对象。
+ * 写入串行执行；读取不加锁，与同一槽位的并发写入交错时可能读到新旧混合的编码，对近似检索没有影响。
+ */
+public final class UserVectorIndex {
+
+    public static final int SCALE = 127;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int dimension;
+    private final int maxUsers;
+
+    private volatile Storage storage;
+
+    public UserVectorIndex(int dimension, int maxUsers) {
+        this.dimension = dimension;
+        this.maxUsers = maxUsers;
+        this.storage = new Storage(dimension, 1024);
+    }
+
+    /**
+     * 写入或更新一个用户的向量
+     * 已在索引中的用户更新为零向量时把编码清零，点积恒为0，不再作为相似用户返回
+     * @return false表示向量为零向量或索引已达容量上限，未写入
+     */
+    public synchronized boolean upsert(long userId, Double[] vector) {
+        Storage current = storage;
+        int slot = current.slotOf(userId);
+        byte[] code = new byte[dimension];
+        if (!encode(vector, code)) {
+            if (slot >= 0) {
+                Arrays.fill(current.codes, slot * dimension, (slot + 1) * dimension, (byte) 0);
+            }
+            return false;
+        }
+        if (slot < 0) {
+            if (current.size >= maxUsers) {
+                return false;
+            }
+            if (current.size == current.userIds.length) {
+                current = current.grow(Math.min(maxUsers, current.userIds.length * 2));
+                storage = current;
+            }
+            slot = current.size;
+            current.userIds[slot] = userId;
+            current.put(userId, slot);
+        }
+        System.arraycopy(code, 0, current.codes, slot * dimension, dimension);
+        if (slot == current.size) {
+            current.size = slot + 1;
+        }
+        return true;
+    }
+
+    /**
+     * 查找与给定向量最相似的k个用户（不含excludeUserId），按相似度降序写入输出数组
+     * @return 实际数量
+     */
+    public int search(Double[] vector, int k, long excludeUserId, long[] userIdsOut, double[] similaritiesOut) {
+        byte[] query = new byte[dimension];
+        if (k <= 0 || !encode(vector, query)) {
+            return 0;
+        }
+        Storage current = storage;
+        int size = current.size;
+        byte[] codes = current.codes;
+        TopKSelector selector = new TopKSelector(k);
+        for (int slot = 0; slot < size; slot++) {
+            int offset = slot * dimension;
+            int dot = 0;
+            for (int d = 0; d < dimension; d++) {
+                dot += query[d] * codes[offset + d];
+            }
+            if (dot > 0 && current.userIds[slot] != excludeUserId) {
+                selector.offer(slot, dot);
+            }
+        }
+        double[] scores = new double[selector.size()];
+        int[] slots = selector.drainDescending(scores);
+        for (int i = 0; i < slots.length; i++) {
+            userIdsOut[i] = current.userIds[slots[i]];
+            if (similaritiesOut != null) {
+                similaritiesOut[i] = scores[i] / (SCALE * SCALE);
+            }
+        }
+        return slots.length;
+    }
+
+    public boolean contains(long userId) {
+        return storage.slotOf(userId) >= 0;
+    }
+
+    public int size() {
+        return storage.size;
+    }
+
+    public int getMaxUsers() {
+        return maxUsers;
+    }
+
+    /**
+     * 占用的字节数（编码、用户ID与映射表）
+     */
+    public long getSizeInBytes() {
+        Storage current = storage;
+        return (long) current.codes.length + (long) current.userIds.length * Long.BYTES
+                + (long) current.tableKeys.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * 归一化并量化，零向量或维度不足时返回false
+     */
+    private boolean encode(Double[] vector, byte[] code) {
+        if (vector == null || vector.length < dimension) {
+            return false;
+        }
+        double norm = 0.0;
+        for (int d = 0; d < dimension; d++) {
+            double v = vector[d] != null ? vector[d] : 0.0;
+            norm += v * v;
+        }
+        if (norm == 0.0 || Double.isNaN(norm)) {
+            return false;
+        }
+        double scale = SCALE / Math.sqrt(norm);
+        for (int d = 0; d < dimension; d++) {
+            double v = vector[d] != null ? vector[d] : 0.0;
+            code[d] = (byte) Math.round(v * scale);
+        }
+        return true;
+    }
+
+    /**
+     * 一组同容量的数组，扩容时整体替换，读取方拿到的引用内部始终一致
+     */
+    private static final class Storage {
+        private final int dimension;
+        private final byte[] codes;
+        private final long[] userIds;
+        private final long[] tableKeys;
+        private final int[] tableSlots;
+        private volatile int size;
+
+        private Storage(int dimension, int capacity) {
+            this.dimension = dimension;
+            this.codes = new byte[capacity * dimension];
+            this.userIds = new long[capacity];
+            int tableCapacity = Integer.highestOneBit(Math.max(4, capacity * 2 - 1)) << 1;
+            this.tableKeys = new long[tableCapacity];
+            this.tableSlots = new int[tableCapacity];
+            Arrays.fill(tableKeys, EMPTY);
+        }
+
+        private Storage grow(int capacity) {
+            Storage grown = new Storage(dimension, Math.max(capacity, size + 1));
+            System.arraycopy(codes, 0, grown.codes, 0, size * dimension);
+            System.arraycopy(userIds, 0, grown.userIds, 0, size);
+            for (int slot = 0; slot < size; slot++) {
+                grown.put(userIds[slot], slot);
+            }
+            grown.size = size;
+            return grown;
+        }
+
+        private int slotOf(long userId) {
+            int mask = tableKeys.length - 1;
+            int index = mix(userId) & mask;
+            while (true) {
+                long key = tableKeys[index];
+                if (key == userId) {
+                    return tableSlots[index];
+                }
+                if (key == EMPTY) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private void put(long userId, int slot) {
+            int mask = tableKeys.length - 1;
+            int index = mix(userId) & mask;
+            while (tableKeys[index] != EMPTY && tableKeys[index] != userId) {
+                index = (index + 1) & mask;
+            }
+            tableSlots[index] = slot;
+            tableKeys[index] = userId;
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
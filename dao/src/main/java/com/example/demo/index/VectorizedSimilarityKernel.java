@@ -0,0 +1,43 @@
+package com.example.demo.index;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于jdk.incubator.vector的SIMD实现，按平台首选宽度分段做乘加，尾部按标量处理。
+ * 只能由{@link SimilarityKernels}在确认模块已加载后实例化，否则加载本类会失败。
+ */
+final class VectorizedSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        int upperBound = SPECIES.loopBound(length);
+        int i = 0;
+        double sum = 0.0;
+        if (upperBound > 0) {
+            DoubleVector acc = DoubleVector.zero(SPECIES);
+            for (; i < upperBound; i += SPECIES.length()) {
+                DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+                DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+                acc = va.fma(vb, acc);
+            }
+            sum = acc.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+}
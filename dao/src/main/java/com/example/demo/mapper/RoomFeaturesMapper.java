@@ -98,6 +98,25 @@ public interface RoomFeaturesMapper extends BaseMapper<RoomFeatures> {
             "updated_at = NOW()")
     boolean insertOrUpdate(RoomFeatures roomFeatures);
 
+    /**
+     * 多行批量写入房间特征，一条INSERT ... ON DUPLICATE KEY UPDATE语句完成一批房间的插入或更新
+     */
+    @Insert("<script>" +
+            "INSERT INTO room_features (room_id, feature_vector, tags, longitude, latitude, price_level, star_level) VALUES " +
+            "<foreach collection='list' item='f' separator=','>" +
+            "(#{f.roomId}, #{f.featureVector}, #{f.tags}, #{f.longitude}, #{f.latitude}, #{f.priceLevel}, #{f.starLevel})" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE " +
+            "feature_vector = VALUES(feature_vector), " +
+            "tags = VALUES(tags), " +
+            "longitude = VALUES(longitude), " +
+            "latitude = VALUES(latitude), " +
+            "price_level = VALUES(price_level), " +
+            "star_level = VALUES(star_level), " +
+            "updated_at = NOW()" +
+            "</script>")
+    int batchInsertOrUpdate(@Param("list") List<RoomFeatures> features);
+
     /**
      * 删除没有对应房间记录的特征数据（清理孤立数据）
      * 修正：使用@Delete注解
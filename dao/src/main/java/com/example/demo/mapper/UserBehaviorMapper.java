@@ -22,5 +22,17 @@ public interface UserBehaviorMapper extends BaseMapper<UserBehavior> {
 
     @Select("SELECT room_id, COUNT(*) as click_count FROM user_behavior WHERE behavior_type = 'click' AND timestamp > #{since} GROUP BY room_id ORDER BY click_count DESC LIMIT #{limit}")
     List<Map<String, Object>> findPopularRooms(@Param("since") Timestamp since, @Param("limit") int limit);
+
+    @Select("<script>" +
+            "SELECT room_id, COUNT(*) as interaction_count FROM user_behavior " +
+            "WHERE behavior_type IN ('click', 'book') AND timestamp > #{since} AND user_id IN " +
+            "<foreach collection='userIds' item='userId' open='(' separator=',' close=')'>" +
+            "#{userId}" +
+            "</foreach>" +
+            " GROUP BY room_id ORDER BY interaction_count DESC LIMIT #{limit}" +
+            "</script>")
+    List<Map<String, Object>> findRoomsInteractedByUsers(@Param("userIds") List<Long> userIds,
+                                                         @Param("since") Timestamp since,
+                                                         @Param("limit") int limit);
 }
 
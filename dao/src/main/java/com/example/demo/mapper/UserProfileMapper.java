@@ -124,7 +124,9 @@ public interface UserProfileMapper extends BaseMapper<UserProfile> {
     /**
      * 查询相似用户（基于特征向量相似度）
      * 注意：这是一个简化的相似度查询，实际生产中建议使用专门的向量数据库
+     * @deprecated 排序条件与向量无关，返回的并非相似用户；请使用UserVectorIndexService.findSimilarUsers
      */
+    @Deprecated
     @Select("SELECT user_id, preferred_tags, profile_vector FROM user_profile " +
             "WHERE user_id != #{userId} AND profile_vector IS NOT NULL " +
             "ORDER BY (CASE WHEN profile_vector IS NOT NULL THEN 1 ELSE 0 END) DESC " +
@@ -204,6 +206,15 @@ public interface UserProfileMapper extends BaseMapper<UserProfile> {
             "LIMIT #{offset}, #{size}")
     List<UserProfile> selectProfilesWithPaging(@Param("offset") int offset, @Param("size") int size);
 
+    /**
+     * 按用户ID游标分页查询用户画像，只扫描user_id主键之后的一页，页数多时不会随偏移量变慢
+     */
+    @Select("SELECT * FROM user_profile " +
+            "WHERE user_id > #{lastUserId} " +
+            "ORDER BY user_id " +
+            "LIMIT #{size}")
+    List<UserProfile> selectProfilesAfterUserId(@Param("lastUserId") long lastUserId, @Param("size") int size);
+
     /**
      * 统计用户画像总数
      */
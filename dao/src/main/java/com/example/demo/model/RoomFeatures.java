@@ -3,9 +3,11 @@ package com.example.demo.model;
 import com.alibaba.fastjson.JSON;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.example.demo.handler.VectorCodec;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 @Component
 @TableName("room_features")
@@ -21,12 +23,35 @@ public class RoomFeatures {
 
     public Double[] getFeatureVectorArray() {
         try {
-            return JSON.parseObject(featureVector, Double[].class);
+            return VectorCodec.parseJsonBoxed(featureVector);
         } catch (Exception e) {
             return new Double[0];
         }
     }
 
+    /**
+     * 特征向量维度，格式错误时按实际读到的元素计
+     */
+    public int getFeatureVectorLength() {
+        return featureVector != null ? VectorCodec.jsonLength(featureVector) : 0;
+    }
+
+    /**
+     * 把特征向量直接解析到out[offset, offset + maxLength)，不创建中间数组；格式错误时该区间置零
+     * @return 写入的维度
+     */
+    public int readFeatureVector(double[] out, int offset, int maxLength) {
+        if (featureVector == null) {
+            return 0;
+        }
+        try {
+            return Math.min(VectorCodec.parseJson(featureVector, out, offset, maxLength), maxLength);
+        } catch (Exception e) {
+            Arrays.fill(out, offset, offset + maxLength, 0.0);
+            return 0;
+        }
+    }
+
     public List<String> getTagsList() {
         try {
             return JSON.parseArray(tags, String.class);
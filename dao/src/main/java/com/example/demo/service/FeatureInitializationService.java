@@ -4,21 +4,29 @@ package com.example.demo.service;
 
 import com.alibaba.fastjson2.JSON;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.handler.VectorCodec;
 import com.example.demo.mapper.RoomFeaturesMapper;
 import com.example.demo.mapper.RoomMapper;
 import com.example.demo.mapper.UserProfileMapper;
 import com.example.demo.model.Room;
 import com.example.demo.model.RoomFeatures;
-import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,39 +41,70 @@ public class FeatureInitializationService {
     @Autowired
     private UserProfileMapper userProfileMapper;
 
+    @Autowired
+    private RecommendationIndexService recommendationIndexService;
+
+    @Autowired
+    private KeywordDictionaryService keywordDictionaryService;
+
+    @Autowired
+    private RecommendationMetricsService metricsService;
+
+    @Autowired
+    @Qualifier("featureBuildExecutor")
+    private ThreadPoolTaskExecutor featureBuildExecutor;
+
+    // 每页读取的房间数（按room_id键集分页）
+    @Value("${recommendation.features.page-size:1000}")
+    private int pageSize;
+
+    // 单条批量写入语句包含的房间数，也是并行生成的分片大小
+    @Value("${recommendation.features.batch-size:200}")
+    private int batchSize;
+
+    private volatile Map<String, Object> lastBuildStats = Collections.emptyMap();
+
     private static final Logger logger = LoggerFactory.getLogger(FeatureInitializationService.class);
 
+    /**
+     * 按gmt_modify水位追平快照之后修改过的房间，并移除停机期间删除或下架的房间
+     */
+    public void catchUpSinceWatermark(long watermark) {
+        long start = System.currentTimeMillis();
+        try {
+            QueryWrapper<Room> queryWrapper = new QueryWrapper<>();
+            queryWrapper.ge("gmt_modify", new Timestamp(watermark));
+            List<Room> modifiedRooms = roomMapper.selectList(queryWrapper);
+
+            int refreshed = 0;
+            for (Room room : modifiedRooms) {
+                if (updateSingleRoomFeatures(room.getRoomId())) {
+                    recommendationIndexService.refreshRoom(room.getRoomId());
+                    refreshed++;
+                }
+            }
+
+            // 删除不会更新gmt_modify，按在架房间ID做一次对账
+            int removed = recommendationIndexService.retainLiveRooms();
+
+            logger.info("推荐索引水位追平完成，水位: {}, 刷新: {}, 移除: {}, 耗时: {} ms",
+                    new Timestamp(watermark), refreshed, removed, System.currentTimeMillis() - start);
+
+        } catch (Exception e) {
+            logger.error("按水位追平推荐索引失败，触发全量重建", e);
+            recommendationIndexService.triggerRebuild();
+        }
+    }
+
     /**
      * 初始化所有房间的特征向量
      * 建议在系统启动时或定时任务中执行
      */
-    @PostConstruct
     public void initializeRoomFeatures() {
         logger.info("开始初始化房间特征向量...");
 
         try {
-            List<Room> allRooms = roomMapper.selectList(null);
-            int processed = 0;
-
-            for (Room room : allRooms) {
-                RoomFeatures features = generateRoomFeatures(room);
-
-                // 检查是否已存在
-                RoomFeatures existing = roomFeaturesMapper.selectById(room.getRoomId());
-                if (existing != null) {
-                    features.setRoomId(room.getRoomId());
-                    roomFeaturesMapper.updateById(features);
-                } else {
-                    features.setRoomId(room.getRoomId());
-                    roomFeaturesMapper.insert(features);
-                }
-
-                processed++;
-                if (processed % 100 == 0) {
-                    logger.info("已处理 {} 个房间特征", processed);
-                }
-            }
-
+            int processed = buildFeatures("initialize", null);
             logger.info("房间特征向量初始化完成，共处理 {} 个房间", processed);
 
         } catch (Exception e) {
@@ -91,7 +130,7 @@ public class FeatureInitializationService {
 
         // 4. 生成特征向量 (10维向量)
         Double[] featureVector = generateFeatureVector(room, tags);
-        features.setFeatureVector(JSON.toJSONString(featureVector));
+        features.setFeatureVector(VectorCodec.toJson(featureVector));
 
         // 5. 设置地理位置 (这里使用模拟数据，实际应用中应该从真实的地理信息获取)
         features.setLongitude(generateMockLongitude());
@@ -106,29 +145,14 @@ public class FeatureInitializationService {
     private List<String> generateRoomTags(Room room) {
         List<String> tags = new ArrayList<>();
 
-        // 基于房间名称生成标签（增加空值检查）
+        // 基于房间名称生成房型与景观标签，基于房间描述生成设施标签（词典自动机单遍匹配）
         if (room.getRoomName() != null) {
-            String roomName = room.getRoomName().toLowerCase();
-            if (roomName.contains("豪华")) tags.add("豪华");
-            if (roomName.contains("标准")) tags.add("标准");
-            if (roomName.contains("套房")) tags.add("套房");
-            if (roomName.contains("商务")) tags.add("商务");
-            if (roomName.contains("亲子")) tags.add("亲子");
-            if (roomName.contains("海景")) tags.add("海景");
-            if (roomName.contains("山景")) tags.add("山景");
-            if (roomName.contains("电竞")) tags.add("电竞");
+            tags.addAll(keywordDictionaryService.extractTerms(room.getRoomName(),
+                    KeywordDictionaryService.ROOM_TYPE, KeywordDictionaryService.VIEW));
         }
-
-        // 基于房间描述生成标签
         if (room.getRoomContent() != null && !room.getRoomContent().trim().isEmpty()) {
-            String content = room.getRoomContent().toLowerCase();
-            if (content.contains("wifi") || content.contains("无线网络")) tags.add("wifi");
-            if (content.contains("早餐")) tags.add("早餐");
-            if (content.contains("停车")) tags.add("停车");
-            if (content.contains("健身")) tags.add("健身");
-            if (content.contains("游泳")) tags.add("游泳池");
-            if (content.contains("空调")) tags.add("空调");
-            if (content.contains("浴缸")) tags.add("浴缸");
+            tags.addAll(keywordDictionaryService.extractTerms(room.getRoomContent(),
+                    KeywordDictionaryService.FACILITY));
         }
 
         // 基于设备信息生成标签
@@ -334,38 +358,131 @@ public class FeatureInitializationService {
         try {
             // 获取最近24小时内修改的房间
             Timestamp yesterday = new Timestamp(System.currentTimeMillis() - 24 * 60 * 60 * 1000);
+            int processedCount = buildFeatures("scheduled", yesterday);
+
+            logger.info("定时更新完成，成功: {}, 失败: {}", processedCount, lastBuildStats.get("failed"));
 
+            // 特征更新后重建推荐索引（倒排位图以特征矩阵行号为序号，两者需同批重建）
+            if (processedCount > 0) {
+                recommendationIndexService.rebuild();
+            }
+
+        } catch (Exception e) {
+            logger.error("定时更新房间特征向量失败", e);
+        }
+    }
+
+    /**
+     * 特征构建流水线：按room_id键集分页读取房间，每页切成分片在线程池上并行生成特征，
+     * 每个分片用一条批量upsert语句写入；内存中只保留一页房间，线程池队列满时由当前线程执行，限制在途分片数
+     * @param modifiedSince 只处理该时间之后修改的房间，null表示全部房间
+     * @return 成功写入的房间数
+     */
+    private int buildFeatures(String job, Timestamp modifiedSince) {
+        long start = System.currentTimeMillis();
+        AtomicInteger failed = new AtomicInteger();
+        int written = 0;
+        int pages = 0;
+        String lastRoomId = null;
+
+        while (true) {
             QueryWrapper<Room> queryWrapper = new QueryWrapper<>();
-            queryWrapper.ge("gmt_modify", yesterday);
-            List<Room> modifiedRooms = roomMapper.selectList(queryWrapper);
+            if (modifiedSince != null) {
+                queryWrapper.ge("gmt_modify", modifiedSince);
+            }
+            if (lastRoomId != null) {
+                queryWrapper.gt("room_id", lastRoomId);
+            }
+            queryWrapper.orderByAsc("room_id").last("LIMIT " + pageSize);
+            List<Room> page = roomMapper.selectList(queryWrapper);
+            if (page.isEmpty()) {
+                break;
+            }
+            lastRoomId = page.get(page.size() - 1).getRoomId();
+            pages++;
 
-            int processedCount = 0;
-            int errorCount = 0;
+            List<CompletableFuture<List<RoomFeatures>>> chunks = new ArrayList<>();
+            for (int from = 0; from < page.size(); from += batchSize) {
+                List<Room> chunk = page.subList(from, Math.min(from + batchSize, page.size()));
+                chunks.add(CompletableFuture.supplyAsync(() -> generateChunk(chunk, failed), featureBuildExecutor));
+            }
+            for (CompletableFuture<List<RoomFeatures>> chunk : chunks) {
+                written += writeBatch(chunk.join(), failed);
+            }
+            logger.info("已处理 {} 个房间特征", written + failed.get());
+            metricsService.recordFeatureBuildProgress(written + failed.get());
 
-            for (Room room : modifiedRooms) {
-                try {
-                    RoomFeatures features = generateRoomFeatures(room);
-                    features.setRoomId(room.getRoomId());
-
-                    RoomFeatures existing = roomFeaturesMapper.selectById(room.getRoomId());
-                    if (existing != null) {
-                        roomFeaturesMapper.updateById(features);
-                    } else {
-                        roomFeaturesMapper.insert(features);
-                    }
-                    processedCount++;
-                } catch (Exception e) {
-                    errorCount++;
-                    logger.error("更新房间 {} 特征失败", room.getRoomId(), e);
-                }
+            if (page.size() < pageSize) {
+                break;
             }
+        }
 
-            logger.info("定时更新完成，处理了 {} 个房间，成功: {}, 失败: {}",
-                    modifiedRooms.size(), processedCount, errorCount);
+        long millis = System.currentTimeMillis() - start;
+        double rowsPerSecond = millis > 0 ? written * 1000.0 / millis : written;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("job", job);
+        stats.put("written", written);
+        stats.put("failed", failed.get());
+        stats.put("pages", pages);
+        stats.put("millis", millis);
+        stats.put("rowsPerSecond", rowsPerSecond);
+        stats.put("finishedAt", System.currentTimeMillis());
+        lastBuildStats = stats;
+
+        logger.info("房间特征构建[{}]完成，写入: {}, 失败: {}, 页数: {}, 耗时: {} ms, 速度: {} 行/秒",
+                job, written, failed.get(), pages, millis, String.format("%.1f", rowsPerSecond));
+        return written;
+    }
+
+    /**
+     * 生成一个分片内所有房间的特征，单个房间失败只跳过该房间
+     */
+    private List<RoomFeatures> generateChunk(List<Room> rooms, AtomicInteger failed) {
+        List<RoomFeatures> batch = new ArrayList<>(rooms.size());
+        for (Room room : rooms) {
+            try {
+                RoomFeatures features = generateRoomFeatures(room);
+                features.setRoomId(room.getRoomId());
+                batch.add(features);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                logger.error("生成房间 {} 特征失败", room.getRoomId(), e);
+            }
+        }
+        return batch;
+    }
 
+    /**
+     * 批量写入一个分片，整批失败时逐行重试，定位出错的房间
+     */
+    private int writeBatch(List<RoomFeatures> batch, AtomicInteger failed) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            roomFeaturesMapper.batchInsertOrUpdate(batch);
+            return batch.size();
         } catch (Exception e) {
-            logger.error("定时更新房间特征向量失败", e);
+            logger.warn("批量写入 {} 个房间特征失败，改为逐行写入", batch.size(), e);
         }
+        int written = 0;
+        for (RoomFeatures features : batch) {
+            try {
+                roomFeaturesMapper.insertOrUpdate(features);
+                written++;
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                logger.error("写入房间 {} 特征失败", features.getRoomId(), e);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 最近一次特征构建的统计（写入数、失败数、耗时、行/秒）
+     */
+    public Map<String, Object> getLastBuildStats() {
+        return lastBuildStats;
     }
 
     /**
@@ -389,13 +506,7 @@ public class FeatureInitializationService {
 
             RoomFeatures features = generateRoomFeatures(room);
             features.setRoomId(room.getRoomId());
-
-            RoomFeatures existing = roomFeaturesMapper.selectById(room.getRoomId());
-            if (existing != null) {
-                roomFeaturesMapper.updateById(features);
-            } else {
-                roomFeaturesMapper.insert(features);
-            }
+            roomFeaturesMapper.insertOrUpdate(features);
 
             logger.info("房间 {} 特征向量更新成功", roomId);
             return true;
@@ -406,6 +517,17 @@ public class FeatureInitializationService {
         }
     }
 
+    /**
+     * 删除单个房间的特征向量（房间被删除时调用）
+     */
+    public void deleteRoomFeatures(String roomId) {
+        try {
+            roomFeaturesMapper.deleteById(roomId);
+        } catch (Exception e) {
+            logger.error("删除房间 {} 特征向量失败", roomId, e);
+        }
+    }
+
     /**
      * 获取特征向量初始化统计信息
      */
@@ -420,6 +542,7 @@ public class FeatureInitializationService {
             stats.put("featuresCount", featuresCount);
             stats.put("initializationRate", totalRooms > 0 ? (double) featuresCount / totalRooms : 0.0);
             stats.put("missingFeatures", totalRooms - featuresCount);
+            stats.put("lastBuild", lastBuildStats);
 
         } catch (Exception e) {
             logger.error("获取初始化统计信息失败", e);
@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import com.example.demo.index.KeywordAutomaton;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 推荐关键词词典
+ * 启动时从可配置的词表文件构建一次Aho–Corasick自动机，搜索意图解析和房间打标签共用，
+ * 一遍扫描即可取出文本中的设施、景观、房型、价格意图和数字。
+ */
+@Service
+public class KeywordDictionaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeywordDictionaryService.class);
+
+    public static final String FACILITY = "facility";
+    public static final String VIEW = "view";
+    public static final String ROOM_TYPE = "roomType";
+    public static final String PRICE = "price";
+
+    private static final String DEFAULT_LOCATION = "classpath:recommendation-keywords.txt";
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Value("${recommendation.keywords.path:" + DEFAULT_LOCATION + "}")
+    private String keywordsPath;
+
+    private volatile KeywordAutomaton automaton;
+
+    @PostConstruct
+    public void initialize() {
+        try {
+            automaton = load(resourceLoader.getResource(keywordsPath));
+        } catch (Exception e) {
+            logger.error("加载关键词词表失败，使用内置词表，路径: {}", keywordsPath, e);
+            try {
+                automaton = load(new ClassPathResource("recommendation-keywords.txt"));
+            } catch (IOException fallbackError) {
+                logger.error("加载内置关键词词表失败", fallbackError);
+                automaton = KeywordAutomaton.builder().build();
+            }
+        }
+        logger.info("关键词词典初始化完成，词条数: {}, 状态数: {}", automaton.patternCount(), automaton.stateCount());
+    }
+
+    /**
+     * 扫描文本，返回全部命中（按出现位置排列）
+     */
+    public List<KeywordAutomaton.Match> match(String text) {
+        return automaton.findAll(text);
+    }
+
+    /**
+     * 提取指定类别的规范词，按出现顺序去重
+     */
+    public List<String> extractTerms(String text, String... categories) {
+        List<KeywordAutomaton.Match> matches = automaton.findAll(text);
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        for (KeywordAutomaton.Match match : matches) {
+            for (String category : categories) {
+                if (category.equals(match.getCategory())) {
+                    terms.add(match.getTerm());
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * 词典统计信息
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("path", keywordsPath);
+        status.put("patternCount", automaton.patternCount());
+        status.put("stateCount", automaton.stateCount());
+        return status;
+    }
+
+    /**
+     * 词表每行格式: 类别|规范词|同义词1,同义词2，#开头为注释
+     */
+    private static KeywordAutomaton load(Resource resource) throws IOException {
+        KeywordAutomaton.Builder builder = KeywordAutomaton.builder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\|", -1);
+                if (parts.length < 2 || parts[0].trim().isEmpty() || parts[1].trim().isEmpty()) {
+                    logger.warn("忽略无效的关键词行: {}", line);
+                    continue;
+                }
+                String[] synonyms = parts.length > 2 ? parts[2].split(",") : new String[0];
+                builder.add(parts[0].trim(), parts[1].trim(), synonyms);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CacheEnvelope;
+import com.example.demo.dto.RoomRecommendationDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 推荐结果两级缓存
+ * L1为进程内Caffeine缓存（容量 + TTL淘汰），L2为Redis中的room:recommendation:键。
+ * 热点用户命中L1时不再经过网络与JSON反序列化；L1的TTL远短于L2，
+ * 其他实例上的L1最多在一个TTL内看到旧结果。
+ *
+ * 缓存未命中时按键单飞合并，同一用户同一时间只计算一次；缓存值记录计算耗时与过期时间，
+ * 临近过期时按XFetch概率提前在后台刷新，避免过期瞬间形成并发重算。
+ */
+@Service
+public class RecommendationCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationCacheService.class);
+
+    public static final String RECOMMENDATION_CACHE_KEY = "room:recommendation:";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RecommendationMetricsService metricsService;
+
+    @Autowired
+    @Qualifier("recommendationExecutor")
+    private ThreadPoolTaskExecutor recommendationExecutor;
+
+    @Value("${recommendation.cache.expiration:1800}")
+    private long l2ExpirationSeconds;
+
+    // 降级结果（召回源被丢弃或使用了热门兜底）的L2过期时间，尽快被完整结果替换
+    @Value("${recommendation.cache.degraded-expiration:60}")
+    private long degradedExpirationSeconds;
+
+    @Value("${recommendation.cache.local.maximum-size:10000}")
+    private long l1MaximumSize;
+
+    @Value("${recommendation.cache.local.expiration:60}")
+    private long l1ExpirationSeconds;
+
+    @Value("${recommendation.cache.early-refresh-beta:1.0}")
+    private double earlyRefreshBeta;
+
+    private Cache<Long, CacheEnvelope<List<RoomRecommendationDTO>>> localCache;
+
+    private final SingleFlight<Long, List<RoomRecommendationDTO>> userFlight = new SingleFlight<>();
+
+    private final SingleFlight<String, Object> sharedFlight = new SingleFlight<>();
+
+    // 当前线程上正在执行的loader是否产出了降级结果，只在load期间有值
+    private final ThreadLocal<boolean[]> degradedLoad = new ThreadLocal<>();
+
+    // 合并与提前刷新统计
+    private final LongAdder computeCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder earlyRefreshCount = new LongAdder();
+    private final LongAdder degradedCount = new LongAdder();
+
+    @PostConstruct
+    public void initializeCache() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(l1MaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(l1ExpirationSeconds))
+                .recordStats()
+                .build();
+        logger.info("推荐结果本地缓存初始化完成，容量: {}, TTL: {}s", l1MaximumSize, l1ExpirationSeconds);
+    }
+
+    /**
+     * 读取用户推荐结果，未命中时单飞计算并写入两级缓存
+     * @param loader 计算推荐结果，可能被提前刷新在后台线程调用
+     */
+    public List<RoomRecommendationDTO> getOrCompute(Long userId, Supplier<List<RoomRecommendationDTO>> loader) {
+        CacheEnvelope<List<RoomRecommendationDTO>> cached = get(userId);
+        if (cached != null) {
+            if (cached.shouldRefreshEarly(earlyRefreshBeta, System.currentTimeMillis())
+                    && !userFlight.isInFlight(userId)) {
+                earlyRefreshCount.increment();
+                userFlight.executeAsync(userId, () -> load(userId, loader), recommendationExecutor);
+            }
+            metricsService.recordTraceCacheHit(true);
+            return cached.getValue();
+        }
+
+        // 未命中：本线程计算，或等待同一用户正在进行的计算，两种情况都不算缓存命中
+        metricsService.recordTraceCacheHit(false);
+        if (userFlight.isInFlight(userId)) {
+            coalescedCount.increment();
+        }
+        return userFlight.execute(userId, () -> {
+            // 前一个计算可能刚刚完成并写入了缓存
+            CacheEnvelope<List<RoomRecommendationDTO>> local = localCache.getIfPresent(userId);
+            if (local != null) {
+                metricsService.recordTraceCacheHit(true);
+                return local.getValue();
+            }
+            return load(userId, loader);
+        });
+    }
+
+    /**
+     * 依次查询L1、L2，L2命中时回填L1
+     * @return 缓存的推荐结果，两级均未命中时返回null
+     */
+    public CacheEnvelope<List<RoomRecommendationDTO>> get(Long userId) {
+        CacheEnvelope<List<RoomRecommendationDTO>> local = localCache.getIfPresent(userId);
+        metricsService.recordCacheHit("l1", local != null);
+        if (local != null) {
+            return local;
+        }
+
+        try {
+            CacheEnvelope<List<RoomRecommendationDTO>> cached = toEnvelope(
+                    redisTemplate.opsForValue().get(RECOMMENDATION_CACHE_KEY + userId));
+            boolean hit = cached != null && cached.getValue() != null && !cached.getValue().isEmpty();
+            metricsService.recordCacheHit("l2", hit);
+            if (hit) {
+                cached.setValue(Collections.unmodifiableList(cached.getValue()));
+                localCache.put(userId, cached);
+                return cached;
+            }
+        } catch (Exception e) {
+            logger.warn("读取推荐缓存失败，用户ID: {}", userId, e);
+        }
+        return null;
+    }
+
+    /**
+     * 标记当前线程上正在计算的推荐结果为降级结果，写缓存时使用较短的过期时间
+     * 不在getOrCompute或computeTracked的计算过程中调用时不做任何事
+     */
+    public void markDegraded() {
+        boolean[] degraded = degradedLoad.get();
+        if (degraded != null) {
+            degraded[0] = true;
+        }
+    }
+
+    /**
+     * 在当前线程上执行一次推荐计算，计算期间调用markDegraded时把degraded[0]置为true
+     * 供不经过getOrCompute、自行写缓存的批量推荐与离线预计算使用；嵌套调用时内层的降级标记同时计入外层
+     */
+    public <T> T computeTracked(Supplier<T> loader, boolean[] degraded) {
+        boolean[] outer = degradedLoad.get();
+        degradedLoad.set(degraded);
+        try {
+            return loader.get();
+        } finally {
+            if (outer != null) {
+                outer[0] |= degraded[0];
+                degradedLoad.set(outer);
+            } else {
+                degradedLoad.remove();
+            }
+        }
+    }
+
+    /**
+     * 写入两级缓存
+     */
+    public void put(Long userId, List<RoomRecommendationDTO> recommendations, long computeMillis) {
+        put(userId, recommendations, computeMillis, false);
+    }
+
+    /**
+     * 写入两级缓存，降级结果使用recommendation.cache.degraded-expiration
+     */
+    public void put(Long userId, List<RoomRecommendationDTO> recommendations, long computeMillis,
+                    boolean degraded) {
+        put(userId, recommendations, computeMillis, expirationFor(degraded, l2ExpirationSeconds));
+    }
+
+    private void put(Long userId, List<RoomRecommendationDTO> recommendations, long computeMillis,
+                     long ttlSeconds) {
+        if (recommendations == null || recommendations.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        CacheEnvelope<List<RoomRecommendationDTO>> envelope = new CacheEnvelope<>(
+                recommendations, now, computeMillis, now + ttlSeconds * 1000);
+        long start = System.nanoTime();
+        try {
+            redisTemplate.opsForValue().set(RECOMMENDATION_CACHE_KEY + userId, envelope,
+                    ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.warn("写入推荐缓存失败，用户ID: {}", userId, e);
+        }
+        // 序列化并写入Redis
+        metricsService.recordStage("serialization", start);
+        localCache.put(userId, new CacheEnvelope<>(Collections.unmodifiableList(recommendations),
+                envelope.getComputedAt(), computeMillis, envelope.getExpiresAt()));
+    }
+
+    /**
+     * 批量写入L2（离线预计算使用），一次管道提交，不回填本实例的L1
+     * @param computeMillis 每个用户的计算耗时，用于提前刷新判断
+     * @param degradedUserIds 结果为降级结果的用户，使用recommendation.cache.degraded-expiration
+     */
+    public void putAll(Map<Long, List<RoomRecommendationDTO>> recommendations, Map<Long, Long> computeMillis,
+                       Set<Long> degradedUserIds, long ttlSeconds) {
+        if (recommendations.isEmpty()) {
+            return;
+        }
+        degradedCount.add(degradedUserIds.size());
+        long now = System.currentTimeMillis();
+        long degradedTtlSeconds = Math.min(degradedExpirationSeconds, ttlSeconds);
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Map.Entry<Long, List<RoomRecommendationDTO>> entry : recommendations.entrySet()) {
+                    if (entry.getValue() == null || entry.getValue().isEmpty()) {
+                        continue;
+                    }
+                    long ttl = degradedUserIds.contains(entry.getKey()) ? degradedTtlSeconds : ttlSeconds;
+                    CacheEnvelope<List<RoomRecommendationDTO>> envelope = new CacheEnvelope<>(entry.getValue(), now,
+                            computeMillis.getOrDefault(entry.getKey(), 0L), now + ttl * 1000);
+                    ops.opsForValue().set(RECOMMENDATION_CACHE_KEY + entry.getKey(), envelope,
+                            ttl, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 清除两级缓存
+     */
+    public void evict(Long userId) {
+        localCache.invalidate(userId);
+        redisTemplate.delete(RECOMMENDATION_CACHE_KEY + userId);
+    }
+
+    /**
+     * 读取全局共享的Redis缓存值（如热门房间），未命中时单飞计算，临近过期时后台提前刷新
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrComputeShared(String key, long ttlSeconds, Supplier<T> loader) {
+        CacheEnvelope<T> cached = null;
+        try {
+            cached = toEnvelope(redisTemplate.opsForValue().get(key));
+        } catch (Exception e) {
+            logger.warn("读取缓存失败，键: {}", key, e);
+        }
+
+        if (cached != null && !isEmptyValue(cached.getValue())) {
+            if (cached.shouldRefreshEarly(earlyRefreshBeta, System.currentTimeMillis())
+                    && !sharedFlight.isInFlight(key)) {
+                earlyRefreshCount.increment();
+                sharedFlight.executeAsync(key, () -> loadShared(key, ttlSeconds, loader), recommendationExecutor);
+            }
+            return cached.getValue();
+        }
+
+        if (sharedFlight.isInFlight(key)) {
+            coalescedCount.increment();
+        }
+        return (T) sharedFlight.execute(key, () -> loadShared(key, ttlSeconds, loader));
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getLocalCacheStats() {
+        CacheStats stats = localCache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", localCache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("computeCount", computeCount.sum());
+        result.put("coalescedCount", coalescedCount.sum());
+        result.put("earlyRefreshCount", earlyRefreshCount.sum());
+        result.put("degradedCount", degradedCount.sum());
+        return result;
+    }
+
+    private List<RoomRecommendationDTO> load(Long userId, Supplier<List<RoomRecommendationDTO>> loader) {
+        computeCount.increment();
+        long start = System.currentTimeMillis();
+        boolean[] degraded = {false};
+        List<RoomRecommendationDTO> recommendations = computeTracked(loader, degraded);
+        put(userId, recommendations, System.currentTimeMillis() - start, degraded[0]);
+        return recommendations;
+    }
+
+    /**
+     * 降级结果的过期时间取降级TTL与正常TTL中较短的一个，并计入降级次数
+     */
+    private long expirationFor(boolean degraded, long ttlSeconds) {
+        if (!degraded) {
+            return ttlSeconds;
+        }
+        degradedCount.increment();
+        return Math.min(degradedExpirationSeconds, ttlSeconds);
+    }
+
+    private <T> Object loadShared(String key, long ttlSeconds, Supplier<T> loader) {
+        computeCount.increment();
+        long start = System.currentTimeMillis();
+        T value = loader.get();
+        long now = System.currentTimeMillis();
+        if (!isEmptyValue(value)) {
+            try {
+                redisTemplate.opsForValue().set(key,
+                        new CacheEnvelope<>(value, now, now - start, now + ttlSeconds * 1000),
+                        ttlSeconds, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                logger.warn("写入缓存失败，键: {}", key, e);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 兼容升级前直接缓存原始值的旧格式，旧格式不参与提前刷新
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> CacheEnvelope<T> toEnvelope(Object cached) {
+        if (cached == null) {
+            return null;
+        }
+        if (cached instanceof CacheEnvelope) {
+            return (CacheEnvelope<T>) cached;
+        }
+        return new CacheEnvelope<>((T) cached, 0L, 0L, 0L);
+    }
+
+    private static boolean isEmptyValue(Object value) {
+        return value == null || (value instanceof Collection && ((Collection<?>) value).isEmpty());
+    }
+}
@@ -0,0 +1,536 @@
+package com.example.demo.service;
+
+import com.example.demo.index.CompressedBitmap;
+import com.example.demo.index.GeoGridIndex;
+import com.example.demo.index.HnswIndex;
+import com.example.demo.index.IndexSnapshotFile;
+import com.example.demo.index.QuantizedVectors;
+import com.example.demo.index.RecommendationIndexSnapshot;
+import com.example.demo.index.RoomFeatureMatrix;
+import com.example.demo.index.TagDictionary;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.mapper.RoomFeaturesMapper;
+import com.example.demo.mapper.RoomMapper;
+import com.example.demo.model.Room;
+import com.example.demo.model.RoomFeatures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 推荐索引管理服务
+ * 在旁路构建完整的索引快照（特征矩阵 + 倒排位图 + ANN索引），构建完成后通过一次原子引用替换发布，
+ * 重建期间在线召回继续使用旧快照，不会看到半空的索引。
+ * 单个房间的新增、修改、下线通过增量接口写时复制出新快照，只改动该房间涉及的标签位图。
+ * 每次全量构建后把快照落盘，重启时直接映射快照文件，再按gmt_modify水位从数据库追平。
+ * 另有定时全量重建，兜底丢失的房间变更消息。
+ */
+@Service
+public class RecommendationIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationIndexService.class);
+
+    @Autowired
+    private RoomFeaturesMapper roomFeaturesMapper;
+
+    @Autowired
+    private RoomMapper roomMapper;
+
+    @Autowired
+    private RecommendationMetricsService metricsService;
+
+    @Autowired
+    private TagDictionaryService tagDictionaryService;
+
+    @Autowired
+    @Qualifier("recommendationExecutor")
+    private ThreadPoolTaskExecutor recommendationExecutor;
+
+    private final AtomicReference<RecommendationIndexSnapshot> current =
+            new AtomicReference<>(RecommendationIndexSnapshot.empty());
+
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    // 同一时间只允许一个重建任务
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    private volatile String lastBuildError;
+
+    @Value("${recommendation.index.snapshot-enabled:true}")
+    private boolean snapshotEnabled;
+
+    @Value("${recommendation.index.snapshot-path:data/recommendation-index.snap}")
+    private String snapshotPath;
+
+    // 排序粗排使用的向量量化方式：none/int8/fp16
+    @Value("${recommendation.index.quantization:none}")
+    private String quantization;
+
+    // 水位向前留出的余量，覆盖构建读取期间提交的修改
+    private static final long WATERMARK_MARGIN_MILLIS = 60 * 1000L;
+
+    // 本次启动是否由快照文件恢复，恢复后由特征服务按水位追平
+    private volatile boolean restoredFromFile;
+
+    private volatile long restoredWatermark;
+
+    // 增量变更累计到该数量后触发一次全量重建，回收失效行并把新房间纳入ANN索引
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    // 串行化增量变更与快照发布
+    private final Object deltaLock = new Object();
+
+    // 重建期间到达的增量，在新快照发布前重放，避免被旧数据覆盖
+    private final List<RoomDelta> pendingDeltas = new ArrayList<>();
+
+    private boolean recordingDeltas;
+
+    private final AtomicInteger deltasSinceBuild = new AtomicInteger();
+
+    /**
+     * 启动预热时调用：从快照文件恢复索引
+     * @return 是否恢复成功；未启用快照、文件缺失或损坏时返回false，由调用方生成特征后全量构建
+     */
+    public boolean restoreFromSnapshot() {
+        if (snapshotEnabled && restoreFromFile()) {
+            logger.info("推荐引擎初始化完成（快照文件恢复）");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 映射快照文件恢复索引，文件缺失或损坏时返回false，由调用方回退到全量构建
+     */
+    private boolean restoreFromFile() {
+        Path path = Paths.get(snapshotPath);
+        if (!Files.exists(path)) {
+            logger.info("推荐索引快照文件不存在: {}", path.toAbsolutePath());
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            IndexSnapshotFile file = IndexSnapshotFile.read(path, tagDictionaryService.getDictionary());
+            RecommendationIndexSnapshot snapshot = withDerivedIndexes(file.getSnapshot());
+            versionSequence.set(Math.max(versionSequence.get(), snapshot.getVersion()));
+            current.set(snapshot);
+            restoredWatermark = file.getWatermark();
+            restoredFromFile = true;
+            tagDictionaryService.saveIfChanged();
+
+            metricsService.recordIndexBuild(snapshot.getVersion(), System.currentTimeMillis() - start,
+                    snapshot.getMatrix().size(), snapshot.getPostingCount(), snapshot.getPostingsSizeInBytes());
+            logger.info("从快照文件恢复推荐索引v{}，房间数: {}, 标签数: {}, 数据水位: {}, 耗时: {} ms",
+                    snapshot.getVersion(), snapshot.getMatrix().liveCount(), snapshot.getPostingCount(),
+                    new Timestamp(restoredWatermark), System.currentTimeMillis() - start);
+            return true;
+
+        } catch (Exception e) {
+            metricsService.recordError("index_restore");
+            logger.error("读取推荐索引快照文件失败，改为全量构建: {}", path.toAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 快照落盘，失败只记录日志，不影响已发布的快照
+     */
+    private void writeSnapshotFile(RecommendationIndexSnapshot snapshot, long watermark) {
+        if (!snapshotEnabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            IndexSnapshotFile.write(snapshot, watermark, Paths.get(snapshotPath));
+            logger.info("推荐索引快照v{}已写入 {}，耗时: {} ms", snapshot.getVersion(),
+                    Paths.get(snapshotPath).toAbsolutePath(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            metricsService.recordError("index_snapshot_write");
+            logger.error("写入推荐索引快照文件失败", e);
+        }
+    }
+
+    public boolean isRestoredFromFile() {
+        return restoredFromFile;
+    }
+
+    /**
+     * 恢复快照的数据水位，之后修改过的房间需要追平
+     */
+    public long getRestoredWatermark() {
+        return restoredWatermark;
+    }
+
+    /**
+     * 移除索引中不在架的房间（停机期间被删除或下架的房间），在架判定见{@link #loadLiveRoomIds()}
+     * @return 移除的房间数
+     */
+    public int retainLiveRooms() {
+        Set<String> liveRoomIds = loadLiveRoomIds();
+        RoomFeatureMatrix matrix = current.get().getMatrix();
+        int removed = 0;
+        for (int row = 0; row < matrix.size(); row++) {
+            if (matrix.isLive(row) && !liveRoomIds.contains(matrix.getRoomId(row))) {
+                removeRoom(matrix.getRoomId(row));
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 当前生效的索引快照
+     */
+    public RecommendationIndexSnapshot current() {
+        return current.get();
+    }
+
+    /**
+     * 同步重建索引
+     * @return 是否成功发布了新快照；已有重建在执行或构建失败时返回false
+     */
+    public boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            logger.info("已有索引重建任务在执行，跳过本次重建");
+            return false;
+        }
+        try {
+            return buildAndPublish();
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 异步重建索引（管理端触发），立即返回
+     * @return 是否已提交重建任务
+     */
+    public boolean triggerRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            recommendationExecutor.execute(() -> {
+                try {
+                    buildAndPublish();
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+            return true;
+        } catch (Exception e) {
+            rebuilding.set(false);
+            logger.error("提交索引重建任务失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * 定时全量重建兜底，默认每小时一次
+     * 房间变更消息发送失败或消费丢失时，增量接口不会收到对应变更，由本任务按数据库当前状态重新构建；
+     * 预热失败、索引为空的实例也会在这里恢复
+     */
+    @Scheduled(fixedDelayString = "${recommendation.index.reconcile-interval-millis:3600000}",
+            initialDelayString = "${recommendation.index.reconcile-interval-millis:3600000}")
+    public void scheduledReconcile() {
+        if (triggerRebuild()) {
+            logger.info("定时对账：已提交推荐索引全量重建");
+        }
+    }
+
+    /**
+     * 增量新增或更新单个房间
+     */
+    public void upsertRoom(RoomFeatures features) {
+        if (features == null || features.getRoomId() == null) {
+            return;
+        }
+        applyDelta(new RoomDelta(features.getRoomId(), features));
+    }
+
+    /**
+     * 增量移除单个房间（下线或删除）
+     */
+    public void removeRoom(String roomId) {
+        if (roomId == null) {
+            return;
+        }
+        applyDelta(new RoomDelta(roomId, null));
+    }
+
+    /**
+     * 按数据库当前状态刷新单个房间：房间在架且有特征时写入索引，否则移除
+     */
+    public void refreshRoom(String roomId) {
+        Room room = roomMapper.selectById(roomId);
+        RoomFeatures features = isLiveRoom(room) ? roomFeaturesMapper.selectById(roomId) : null;
+        if (features != null) {
+            upsertRoom(features);
+        } else {
+            removeRoom(roomId);
+        }
+    }
+
+    private void applyDelta(RoomDelta delta) {
+        synchronized (deltaLock) {
+            RecommendationIndexSnapshot snapshot = current.get();
+            RecommendationIndexSnapshot updated = applyDelta(snapshot, delta);
+            if (updated != snapshot) {
+                current.set(updated);
+            }
+            if (recordingDeltas) {
+                pendingDeltas.add(delta);
+            }
+        }
+        logger.debug("房间 {} 增量{}完成", delta.roomId, delta.features != null ? "更新" : "移除");
+
+        if (deltasSinceBuild.incrementAndGet() >= COMPACTION_THRESHOLD && triggerRebuild()) {
+            logger.info("增量变更已累计 {} 次，触发索引重建", COMPACTION_THRESHOLD);
+        }
+    }
+
+    /**
+     * 在给定快照上应用一次房间变更，只重建该房间新旧标签对应的位图
+     */
+    private RecommendationIndexSnapshot applyDelta(RecommendationIndexSnapshot snapshot, RoomDelta delta) {
+        RoomFeatureMatrix matrix = snapshot.getMatrix();
+        int oldRow = matrix.rowOf(delta.roomId);
+        if (delta.features == null && oldRow < 0) {
+            return snapshot;
+        }
+
+        // 空快照自带独立的空字典，增量一律使用全局字典
+        TagDictionary dictionary = tagDictionaryService.getDictionary();
+        RoomFeatureMatrix updatedMatrix = delta.features != null
+                ? matrix.withRow(delta.features, dictionary)
+                : matrix.withoutRow(delta.roomId);
+        int newRow = delta.features != null ? updatedMatrix.rowOf(delta.roomId) : -1;
+
+        // 新旧标签ID均已排序，归并一次即可得出移除与新增的标签
+        int[] oldTagIds = oldRow >= 0 ? matrix.getTagIds(oldRow) : new int[0];
+        int[] newTagIds = newRow >= 0 ? updatedMatrix.getTagIds(newRow) : new int[0];
+
+        CompressedBitmap[] postings = Arrays.copyOf(snapshot.getPostings(),
+                Math.max(snapshot.getPostings().length, dictionary.size()));
+        int i = 0;
+        int j = 0;
+        while (i < oldTagIds.length || j < newTagIds.length) {
+            if (j == newTagIds.length || (i < oldTagIds.length && oldTagIds[i] < newTagIds[j])) {
+                int tagId = oldTagIds[i++];
+                CompressedBitmap posting = postings[tagId];
+                if (posting != null) {
+                    CompressedBitmap updated = posting.withRemoved(oldRow);
+                    postings[tagId] = updated.isEmpty() ? null : updated;
+                }
+            } else if (i == oldTagIds.length || newTagIds[j] < oldTagIds[i]) {
+                int tagId = newTagIds[j++];
+                CompressedBitmap posting = postings[tagId];
+                postings[tagId] = posting != null ? posting.withAdded(newRow) : CompressedBitmap.of(newRow);
+            } else {
+                i++;
+                j++;
+            }
+        }
+
+        QuantizedVectors quantized = snapshot.getQuantizedVectors();
+        if (quantized != null && newRow >= 0) {
+            quantized = quantized.withRow(updatedMatrix, newRow);
+        }
+        GeoGridIndex geoIndex = snapshot.getGeoIndex();
+        if (geoIndex != null) {
+            geoIndex = geoIndex.withRow(matrix, updatedMatrix, newRow >= 0 ? newRow : oldRow);
+        }
+
+        return new RecommendationIndexSnapshot(versionSequence.incrementAndGet(), updatedMatrix, dictionary,
+                postings, snapshot.getAnnIndex(), quantized, geoIndex, snapshot.getBuiltAt(), snapshot.getBuildMillis());
+    }
+
+    /**
+     * 为从文件恢复的快照补充量化向量与地理网格（二者不落盘，由矩阵重新生成）
+     */
+    private RecommendationIndexSnapshot withDerivedIndexes(RecommendationIndexSnapshot snapshot) {
+        QuantizedVectors.Mode mode = quantizationMode();
+        RoomFeatureMatrix matrix = snapshot.getMatrix();
+        return new RecommendationIndexSnapshot(snapshot.getVersion(), matrix, snapshot.getTagDictionary(),
+                snapshot.getPostings(), snapshot.getAnnIndex(), mode != null ? QuantizedVectors.encode(matrix, mode) : null,
+                GeoGridIndex.build(matrix), snapshot.getBuiltAt(), snapshot.getBuildMillis());
+    }
+
+    private QuantizedVectors.Mode quantizationMode() {
+        try {
+            return QuantizedVectors.Mode.parse(quantization);
+        } catch (IllegalArgumentException e) {
+            logger.warn("未知的向量量化方式: {}，不启用量化", quantization);
+            return null;
+        }
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    /**
+     * 索引状态信息
+     */
+    public Map<String, Object> getIndexStatus() {
+        RecommendationIndexSnapshot snapshot = current.get();
+        Map<String, Object> status = new HashMap<>();
+        status.put("version", snapshot.getVersion());
+        status.put("builtAt", snapshot.getBuiltAt());
+        status.put("buildMillis", snapshot.getBuildMillis());
+        status.put("roomCount", snapshot.getMatrix().size());
+        status.put("postingCount", snapshot.getPostingCount());
+        status.put("tagDictionarySize", snapshot.getTagDictionary().size());
+        status.put("postingsMemoryBytes", snapshot.getPostingsSizeInBytes());
+        status.put("vectorIndexSize", snapshot.getAnnIndex() != null ? snapshot.getAnnIndex().size() : 0);
+        QuantizedVectors quantized = snapshot.getQuantizedVectors();
+        status.put("quantization", quantized != null ? quantized.getMode().name() : "NONE");
+        status.put("quantizedVectorBytes", quantized != null ? quantized.getSizeInBytes() : 0L);
+        status.put("vectorBytes", (long) snapshot.getMatrix().getVectors().length * Double.BYTES);
+        GeoGridIndex geoIndex = snapshot.getGeoIndex();
+        status.put("geoIndexedRooms", geoIndex != null ? geoIndex.size() : 0);
+        status.put("geoCellCount", geoIndex != null ? geoIndex.cellCount() : 0);
+        status.put("liveRoomCount", snapshot.getMatrix().liveCount());
+        status.put("deltasSinceBuild", deltasSinceBuild.get());
+        status.put("rebuilding", rebuilding.get());
+        status.put("lastBuildError", lastBuildError);
+        status.put("snapshotPath", snapshotEnabled ? Paths.get(snapshotPath).toAbsolutePath().toString() : null);
+        status.put("restoredFromFile", restoredFromFile);
+        return status;
+    }
+
+    /**
+     * 构建新快照并原子发布，失败时保留旧快照
+     */
+    private boolean buildAndPublish() {
+        long start = System.currentTimeMillis();
+        long watermark = start - WATERMARK_MARGIN_MILLIS;
+        synchronized (deltaLock) {
+            pendingDeltas.clear();
+            recordingDeltas = true;
+        }
+        try {
+            List<RoomFeatures> allRoomFeatures = roomFeaturesMapper.selectList(null);
+            Set<String> liveRoomIds = loadLiveRoomIds();
+            allRoomFeatures.removeIf(features -> !liveRoomIds.contains(features.getRoomId()));
+            TagDictionary dictionary = tagDictionaryService.getDictionary();
+            RoomFeatureMatrix matrix = RoomFeatureMatrix.build(allRoomFeatures, dictionary);
+            CompressedBitmap[] postings = buildPostings(matrix, dictionary);
+            HnswIndex annIndex = HnswIndex.build(matrix);
+            QuantizedVectors.Mode mode = quantizationMode();
+            QuantizedVectors quantized = mode != null ? QuantizedVectors.encode(matrix, mode) : null;
+            GeoGridIndex geoIndex = GeoGridIndex.build(matrix);
+
+            long buildMillis = System.currentTimeMillis() - start;
+            RecommendationIndexSnapshot snapshot = new RecommendationIndexSnapshot(
+                    versionSequence.incrementAndGet(), matrix, dictionary, postings, annIndex, quantized, geoIndex,
+                    System.currentTimeMillis(), buildMillis);
+
+            int replayed;
+            synchronized (deltaLock) {
+                // 重放构建期间的增量（重复应用是幂等的）
+                for (RoomDelta delta : pendingDeltas) {
+                    snapshot = applyDelta(snapshot, delta);
+                }
+                replayed = pendingDeltas.size();
+                pendingDeltas.clear();
+                recordingDeltas = false;
+                current.set(snapshot);
+            }
+            deltasSinceBuild.set(replayed);
+            lastBuildError = null;
+
+            metricsService.recordIndexBuild(snapshot.getVersion(), buildMillis, matrix.size(),
+                    snapshot.getPostingCount(), snapshot.getPostingsSizeInBytes());
+            logger.info("推荐索引快照v{}发布完成，房间数: {}, 标签数: {}, 向量节点数: {}, 耗时: {} ms",
+                    snapshot.getVersion(), matrix.size(), snapshot.getPostingCount(), annIndex.size(), buildMillis);
+
+            tagDictionaryService.saveIfChanged();
+
+            writeSnapshotFile(snapshot, watermark);
+            return true;
+
+        } catch (Exception e) {
+            synchronized (deltaLock) {
+                pendingDeltas.clear();
+                recordingDeltas = false;
+            }
+            lastBuildError = e.getMessage();
+            metricsService.recordError("index_build");
+            logger.error("构建推荐索引失败，继续使用旧快照v{}", current.get().getVersion(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 在架房间：房间记录存在且room_status = 1
+     * 全量构建、单房间刷新和水位对账共用这一判定，避免同一房间在增量中被移除、又在全量对账时被加回
+     */
+    private static boolean isLiveRoom(Room room) {
+        return room != null && room.isAvailable();
+    }
+
+    /**
+     * 在架房间ID集合，与{@link #isLiveRoom(Room)}判定一致；房间已删除的特征行、状态为空或非1的房间都不在其中
+     */
+    private Set<String> loadLiveRoomIds() {
+        QueryWrapper<Room> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("room_id").eq("room_status", 1);
+        Set<String> roomIds = new HashSet<>();
+        for (Room room : roomMapper.selectList(queryWrapper)) {
+            roomIds.add(room.getRoomId());
+        }
+        return roomIds;
+    }
+
+    /**
+     * 以特征矩阵行号作为稠密房间序号构建位图倒排，数组下标为标签ID
+     */
+    private CompressedBitmap[] buildPostings(RoomFeatureMatrix matrix, TagDictionary dictionary) {
+        CompressedBitmap[] postings = new CompressedBitmap[dictionary.size()];
+        for (int row = 0; row < matrix.size(); row++) {
+            // 标签、价格等级、星级索引
+            for (int tagId : matrix.getTagIds(row)) {
+                if (postings[tagId] == null) {
+                    postings[tagId] = new CompressedBitmap();
+                }
+                postings[tagId].add(row);
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * 单个房间的增量变更，features为null表示移除
+     */
+    private static final class RoomDelta {
+        private final String roomId;
+        private final RoomFeatures features;
+
+        private RoomDelta(String roomId, RoomFeatures features) {
+            this.roomId = roomId;
+            this.features = features;
+        }
+    }
+}
@@ -1,12 +1,20 @@
 package com.example.demo.service;
 
 // ==================== 正确的import ====================
+import com.example.demo.dto.RecommendationTrace;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
 /**
  * 推荐系统性能监控服务
  * 负责记录推荐系统的各种性能指标
@@ -21,6 +29,25 @@ public class RecommendationMetricsService {
     private final Counter conversionCounter;
     private final Timer searchTimer;
     private final Timer recommendationTimer;
+    private final Timer indexBuildTimer;
+    private final AtomicLong indexVersion = new AtomicLong();
+    private final AtomicLong indexRoomCount = new AtomicLong();
+    private final AtomicLong indexPostingCount = new AtomicLong();
+    private final AtomicLong indexMemoryBytes = new AtomicLong();
+    private final Timer precomputeTimer;
+    private final AtomicLong precomputeProcessed = new AtomicLong();
+    private final AtomicLong precomputeTotal = new AtomicLong();
+    private final AtomicLong precomputeThroughput = new AtomicLong();
+    private final AtomicLong warmupPhase = new AtomicLong();
+    private final AtomicLong warmupReady = new AtomicLong();
+    private final AtomicLong featureBuildProcessed = new AtomicLong();
+
+    // 推荐流水线分阶段耗时与候选数量分布，按阶段/召回源缓存，避免每次调用重新注册
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> candidateSummaries = new ConcurrentHashMap<>();
+
+    // 当前线程上的调试追踪，仅在explain请求期间存在
+    private final ThreadLocal<RecommendationTrace> currentTrace = new ThreadLocal<>();
 
     public RecommendationMetricsService(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
@@ -59,6 +86,30 @@ public class RecommendationMetricsService {
                 .description("Recommendation generation duration")
                 .tag("service", "recommendation")
                 .register(meterRegistry);
+
+        // 索引快照相关指标
+        this.indexBuildTimer = Timer.builder("recommendation.index.build.duration")
+                .description("Recommendation index snapshot build duration")
+                .tag("service", "recommendation")
+                .register(meterRegistry);
+        meterRegistry.gauge("recommendation.index.version", indexVersion);
+        meterRegistry.gauge("recommendation.index.rooms", indexRoomCount);
+        meterRegistry.gauge("recommendation.index.postings", indexPostingCount);
+        meterRegistry.gauge("recommendation.index.memory.bytes", indexMemoryBytes);
+
+        // 离线预计算相关指标
+        this.precomputeTimer = Timer.builder("recommendation.precompute.duration")
+                .description("Offline recommendation precompute run duration")
+                .tag("service", "recommendation")
+                .register(meterRegistry);
+        meterRegistry.gauge("recommendation.precompute.processed", precomputeProcessed);
+        meterRegistry.gauge("recommendation.precompute.total", precomputeTotal);
+        meterRegistry.gauge("recommendation.precompute.throughput", precomputeThroughput);
+
+        // 启动预热相关指标
+        meterRegistry.gauge("recommendation.warmup.phase", warmupPhase);
+        meterRegistry.gauge("recommendation.warmup.ready", warmupReady);
+        meterRegistry.gauge("recommendation.features.build.processed", featureBuildProcessed);
     }
 
     // ==================== 基础计数方法 ====================
@@ -154,6 +205,109 @@ public class RecommendationMetricsService {
         sample.stop(recommendationTimer);
     }
 
+    // ==================== 流水线分阶段指标 ====================
+
+    /**
+     * 记录一个阶段的耗时，当前线程开启了追踪时同时写入追踪
+     * @param startNanos 阶段开始时的System.nanoTime()
+     * @return 当前System.nanoTime()，可直接作为下一阶段的开始时间
+     */
+    public long recordStage(String stage, long startNanos) {
+        long now = System.nanoTime();
+        long elapsed = now - startNanos;
+        stageTimers.computeIfAbsent(stage, key -> Timer.builder("recommendation.stage.duration")
+                .description("Recommendation pipeline stage duration")
+                .tag("service", "recommendation")
+                .tag("stage", key)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        RecommendationTrace trace = currentTrace.get();
+        if (trace != null) {
+            trace.addStage(stage, elapsed);
+        }
+        return now;
+    }
+
+    /**
+     * 记录一路召回（或召回合并后）的候选数量
+     */
+    public void recordCandidates(String source, int count) {
+        candidateSummaries.computeIfAbsent(source, key -> DistributionSummary.builder("recommendation.candidates")
+                .description("Candidate count per recall source")
+                .tag("service", "recommendation")
+                .tag("source", key)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+                .record(count);
+        RecommendationTrace trace = currentTrace.get();
+        if (trace != null) {
+            trace.addCandidates(source, count);
+        }
+    }
+
+    /**
+     * 记录一路召回被丢弃（超时、失败），合并时使用其余已返回的召回结果
+     */
+    public void recordRecallDropped(String source, String reason) {
+        Counter.builder("recommendation.recall.dropped.total")
+                .tag("source", source)
+                .tag("reason", reason)
+                .tag("service", "recommendation")
+                .register(meterRegistry)
+                .increment();
+        RecommendationTrace trace = currentTrace.get();
+        if (trace != null) {
+            trace.addDroppedSource(source + ":" + reason);
+        }
+    }
+
+    /**
+     * 在当前线程的调试追踪上记录本次请求的推荐结果是否来自缓存
+     */
+    public void recordTraceCacheHit(boolean hit) {
+        RecommendationTrace trace = currentTrace.get();
+        if (trace != null) {
+            trace.setCacheHit(hit);
+        }
+    }
+
+    /**
+     * 包装一个将在其他线程执行的任务，使其阶段耗时写入当前线程的调试追踪
+     */
+    public <T> Supplier<T> withCurrentTrace(Supplier<T> task) {
+        RecommendationTrace trace = currentTrace.get();
+        if (trace == null) {
+            return task;
+        }
+        return () -> {
+            currentTrace.set(trace);
+            try {
+                return task.get();
+            } finally {
+                currentTrace.remove();
+            }
+        };
+    }
+
+    /**
+     * 在当前线程开启调试追踪，必须与endTrace成对调用
+     */
+    public RecommendationTrace beginTrace(Long userId) {
+        RecommendationTrace trace = new RecommendationTrace(userId);
+        currentTrace.set(trace);
+        return trace;
+    }
+
+    /**
+     * 结束当前线程的调试追踪
+     */
+    public void endTrace() {
+        currentTrace.remove();
+    }
+
     // ==================== 高级指标方法 ====================
 
     /**
@@ -167,6 +321,84 @@ public class RecommendationMetricsService {
                 .increment();
     }
 
+    /**
+     * 记录分级缓存命中率
+     * @param tier 缓存层级（l1进程内缓存、l2 Redis）
+     */
+    public void recordCacheHit(String tier, boolean hit) {
+        Counter.builder("recommendation.cache.total")
+                .tag("result", hit ? "hit" : "miss")
+                .tag("service", "recommendation")
+                .tag("tier", tier)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录离线预计算进度
+     * @param processed 本轮已处理用户数
+     * @param total 本轮需要处理的用户数
+     */
+    public void recordPrecomputeProgress(int processed, int total) {
+        precomputeProcessed.set(processed);
+        precomputeTotal.set(total);
+    }
+
+    /**
+     * 记录一轮离线预计算完成
+     */
+    public void recordPrecomputeRun(int computedUsers, int skippedUsers, long durationMillis) {
+        precomputeTimer.record(durationMillis, TimeUnit.MILLISECONDS);
+        Counter.builder("recommendation.precompute.users.total")
+                .tag("result", "computed")
+                .register(meterRegistry)
+                .increment(computedUsers);
+        Counter.builder("recommendation.precompute.users.total")
+                .tag("result", "skipped")
+                .register(meterRegistry)
+                .increment(skippedUsers);
+        precomputeThroughput.set(durationMillis > 0 ? computedUsers * 1000L / durationMillis : computedUsers);
+    }
+
+    /**
+     * 记录启动预热阶段
+     * @param phase 阶段序号，见RecommendationWarmupService.Phase
+     */
+    public void recordWarmupPhase(int phase, boolean ready) {
+        warmupPhase.set(phase);
+        warmupReady.set(ready ? 1 : 0);
+    }
+
+    /**
+     * 记录启动预热结束
+     */
+    public void recordWarmupComplete(long durationMillis, boolean success) {
+        Timer.builder("recommendation.warmup.duration")
+                .tag("result", success ? "success" : "failure")
+                .tag("service", "recommendation")
+                .register(meterRegistry)
+                .record(durationMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录预热期间使用降级结果的请求
+     * @param source cache（离线预计算结果）或popular（热门房间）
+     */
+    public void recordWarmupFallback(String source) {
+        Counter.builder("recommendation.warmup.fallback.total")
+                .tag("source", source)
+                .tag("service", "recommendation")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录本轮特征构建已处理的房间数
+     */
+    public void recordFeatureBuildProgress(long processed) {
+        featureBuildProcessed.set(processed);
+    }
+
     /**
      * 记录推荐质量分数
      */
@@ -203,6 +435,17 @@ public class RecommendationMetricsService {
                 .increment();
     }
 
+    /**
+     * 记录索引快照构建结果
+     */
+    public void recordIndexBuild(long version, long buildMillis, int roomCount, int postingCount, long memoryBytes) {
+        indexBuildTimer.record(buildMillis, TimeUnit.MILLISECONDS);
+        indexVersion.set(version);
+        indexRoomCount.set(roomCount);
+        indexPostingCount.set(postingCount);
+        indexMemoryBytes.set(memoryBytes);
+    }
+
     // ==================== 业务指标方法 ====================
 
     /**
@@ -0,0 +1,373 @@
+package com.example.demo.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.dto.RoomRecommendationDTO;
+import com.example.demo.index.RecommendationIndexSnapshot;
+import com.example.demo.index.RoomFeatureMatrix;
+import com.example.demo.mapper.RoomMapper;
+import com.example.demo.mapper.UserProfileMapper;
+import com.example.demo.model.Room;
+import com.example.demo.model.UserProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 推荐结果离线预计算服务
+ * 定时对活跃用户（最近30天画像有更新）批量计算推荐列表，提前写入room:recommendation:缓存，
+ * 请求路径直接命中缓存，不再承担缓存过期后第一次访问的完整召回排序耗时。
+ *
+ * 增量策略：Redis中记录上一轮的水位，只重算画像在水位之后更新过的用户，
+ * 以及偏好标签/价格等级与水位之后变更房间有交集的用户；
+ * 向量召回带来的影响无法按标签判断，由周期性的全量刷新兜底（全量间隔小于预计算结果TTL）。
+ */
+@Service
+public class RecommendationPrecomputeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationPrecomputeService.class);
+
+    private static final String WATERMARK_KEY = "recommendation:precompute:watermark";
+    private static final String LOCK_KEY = "recommendation:precompute:lock";
+    private static final String FIELD_LAST_RUN = "lastRunAt";
+    private static final String FIELD_LAST_FULL_RUN = "lastFullRunAt";
+
+    // 只有锁值仍是本轮令牌时才删除，避免锁过期后误删其他实例持有的锁
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private UserProfileMapper userProfileMapper;
+
+    @Autowired
+    private RoomMapper roomMapper;
+
+    @Autowired
+    private RoomRecommendationEngineService recommendationEngine;
+
+    @Autowired
+    private RecommendationIndexService indexService;
+
+    @Autowired
+    private RecommendationWarmupService warmupService;
+
+    @Autowired
+    private RecommendationCacheService recommendationCache;
+
+    @Autowired
+    private RecommendationMetricsService metricsService;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Autowired
+    @Qualifier("recommendationExecutor")
+    private ThreadPoolTaskExecutor recommendationExecutor;
+
+    @Autowired
+    @Qualifier("precomputeExecutor")
+    private ThreadPoolTaskExecutor precomputeExecutor;
+
+    @Value("${recommendation.precompute.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommendation.precompute.list-size:20}")
+    private int listSize;
+
+    @Value("${recommendation.precompute.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${recommendation.precompute.ttl-seconds:21600}")
+    private long ttlSeconds;
+
+    @Value("${recommendation.precompute.full-refresh-seconds:10800}")
+    private long fullRefreshSeconds;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger processed = new AtomicInteger();
+    private volatile int total;
+    private volatile Map<String, Object> lastRun = Collections.emptyMap();
+
+    // 本实例上一轮使用的索引快照及该轮写入的水位，增量判断时据此取得房间变更前的标签
+    private volatile RecommendationIndexSnapshot lastRunSnapshot;
+    private volatile long lastRunSnapshotAt;
+
+    /**
+     * 定时预计算，默认每10分钟一轮
+     * 只负责把本轮交给precomputeExecutor，调度线程不等待分组任务完成，不阻塞其他定时任务
+     */
+    @Scheduled(fixedDelayString = "${recommendation.precompute.interval-millis:600000}",
+            initialDelayString = "${recommendation.precompute.initial-delay-millis:120000}")
+    public void scheduledPrecompute() {
+        if (enabled && !running.get()) {
+            precomputeExecutor.execute(() -> precompute(false));
+        }
+    }
+
+    /**
+     * 执行一轮预计算
+     * @param forceFull 是否忽略水位全量重算
+     * @return 是否执行（已有任务在执行或其他实例持有锁时返回false）
+     */
+    public boolean precompute(boolean forceFull) {
+        // 预热期间索引尚未加载，此时计算会用空索引覆盖缓存中可用的预计算结果
+        if (warmupService.isWarmingUp()) {
+            logger.info("推荐引擎预热中，跳过本轮预计算");
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Boolean locked = null;
+        String lockToken = UUID.randomUUID().toString();
+        try {
+            // 多实例部署时同一时间只有一个实例执行
+            locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, lockToken, 30, TimeUnit.MINUTES);
+            if (!Boolean.TRUE.equals(locked)) {
+                logger.info("其他实例正在执行推荐预计算，跳过本轮");
+                return false;
+            }
+            runPrecompute(forceFull);
+            return true;
+
+        } catch (Exception e) {
+            metricsService.recordError("precompute");
+            logger.error("推荐预计算失败", e);
+            return false;
+        } finally {
+            if (Boolean.TRUE.equals(locked)) {
+                releaseLock(lockToken);
+            }
+            running.set(false);
+        }
+    }
+
+    private void releaseLock(String lockToken) {
+        try {
+            Long released = stringRedisTemplate.execute(RELEASE_LOCK_SCRIPT,
+                    Collections.singletonList(LOCK_KEY), lockToken);
+            if (released == null || released == 0L) {
+                logger.warn("推荐预计算锁已过期或被其他实例持有，未释放");
+            }
+        } catch (Exception e) {
+            logger.warn("释放推荐预计算锁失败，等待锁自动过期", e);
+        }
+    }
+
+    /**
+     * 后台触发一轮预计算（管理端使用），立即返回
+     * @return 是否已提交；本实例已有任务在执行时返回false
+     */
+    public boolean triggerPrecompute(boolean forceFull) {
+        if (running.get()) {
+            return false;
+        }
+        // 不占用recommendationExecutor：预计算本身会向其提交分组任务并等待
+        precomputeExecutor.execute(() -> precompute(forceFull));
+        return true;
+    }
+
+    private void runPrecompute(boolean forceFull) {
+        long start = System.currentTimeMillis();
+        Map<Object, Object> watermark = stringRedisTemplate.opsForHash().entries(WATERMARK_KEY);
+        long lastRunAt = parseLong(watermark.get(FIELD_LAST_RUN));
+        long lastFullRunAt = parseLong(watermark.get(FIELD_LAST_FULL_RUN));
+        boolean full = forceFull || lastRunAt == 0 || start - lastFullRunAt >= fullRefreshSeconds * 1000;
+
+        RecommendationIndexSnapshot snapshot = indexService.current();
+        List<UserProfile> activeProfiles = userProfileMapper.selectActiveProfiles();
+
+        List<UserProfile> targets;
+        if (full) {
+            targets = activeProfiles;
+        } else {
+            // 上一轮由其他实例执行时本机没有对应快照，无法得知变更前的标签
+            RecommendationIndexSnapshot previous = lastRunSnapshotAt == lastRunAt ? lastRunSnapshot : null;
+            BitSet changedKeys = changedRoomKeys(snapshot, previous, lastRunAt);
+            targets = new ArrayList<>();
+            for (UserProfile profile : activeProfiles) {
+                if (needsRecompute(profile, lastRunAt, changedKeys)) {
+                    targets.add(profile);
+                }
+            }
+        }
+
+        total = targets.size();
+        processed.set(0);
+        metricsService.recordPrecomputeProgress(0, total);
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < targets.size(); from += chunkSize) {
+            List<UserProfile> chunk = targets.subList(from, Math.min(from + chunkSize, targets.size()));
+            tasks.add(CompletableFuture.runAsync(() -> precomputeChunk(chunk, snapshot), recommendationExecutor));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+
+        // 水位取本轮开始时间，本轮执行期间的变更留给下一轮
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_LAST_RUN, String.valueOf(start));
+        if (full) {
+            fields.put(FIELD_LAST_FULL_RUN, String.valueOf(start));
+        }
+        stringRedisTemplate.opsForHash().putAll(WATERMARK_KEY, fields);
+        lastRunSnapshot = snapshot;
+        lastRunSnapshotAt = start;
+
+        long duration = System.currentTimeMillis() - start;
+        int skipped = activeProfiles.size() - targets.size();
+        metricsService.recordPrecomputeRun(targets.size(), skipped, duration);
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("startedAt", new Timestamp(start));
+        summary.put("full", full);
+        summary.put("activeUsers", activeProfiles.size());
+        summary.put("computedUsers", targets.size());
+        summary.put("skippedUsers", skipped);
+        summary.put("durationMillis", duration);
+        summary.put("usersPerSecond", duration > 0 ? targets.size() * 1000L / duration : targets.size());
+        summary.put("indexVersion", snapshot.getVersion());
+        lastRun = summary;
+
+        logger.info("推荐预计算完成（{}），活跃用户: {}, 重算: {}, 跳过: {}, 耗时: {} ms",
+                full ? "全量" : "增量", activeProfiles.size(), targets.size(), skipped, duration);
+    }
+
+    /**
+     * 计算一组用户并通过一次管道写入Redis
+     */
+    private void precomputeChunk(List<UserProfile> chunk, RecommendationIndexSnapshot snapshot) {
+        Map<Long, List<RoomRecommendationDTO>> results = new HashMap<>(chunk.size() * 2);
+        Map<Long, Long> computeMillis = new HashMap<>(chunk.size() * 2);
+        Set<Long> degradedUserIds = new HashSet<>();
+        for (UserProfile profile : chunk) {
+            try {
+                long start = System.currentTimeMillis();
+                boolean[] degraded = {false};
+                results.put(profile.getUserId(), recommendationCache.computeTracked(
+                        () -> recommendationEngine.rankForProfile(profile, snapshot, listSize, true), degraded));
+                computeMillis.put(profile.getUserId(), System.currentTimeMillis() - start);
+                if (degraded[0]) {
+                    degradedUserIds.add(profile.getUserId());
+                }
+            } catch (Exception e) {
+                logger.warn("预计算用户推荐失败，用户ID: {}", profile.getUserId(), e);
+            }
+        }
+        try {
+            recommendationCache.putAll(results, computeMillis, degradedUserIds, ttlSeconds);
+        } catch (Exception e) {
+            logger.error("写入预计算结果失败，数量: {}", results.size(), e);
+        }
+        metricsService.recordPrecomputeProgress(processed.addAndGet(chunk.size()), total);
+    }
+
+    /**
+     * 水位之后变更房间涉及的标签ID（标签、价格等级、星级），包括变更前后的标签：
+     * 只因房间已去掉的标签而命中它的用户同样需要重算
+     * 已下线房间的失效行仍保留标签；全量重建后无法找到的房间，或没有上一轮快照而无法得知变更前标签时，
+     * 返回null，表示需要全量重算
+     */
+    private BitSet changedRoomKeys(RecommendationIndexSnapshot snapshot, RecommendationIndexSnapshot previous,
+                                   long lastRunAt) {
+        QueryWrapper<Room> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("room_id").ge("gmt_modify", new Timestamp(lastRunAt));
+        List<Room> changedRooms = roomMapper.selectList(queryWrapper);
+        if (changedRooms.isEmpty()) {
+            return new BitSet();
+        }
+        if (previous == null) {
+            return null;
+        }
+        RoomFeatureMatrix matrix = snapshot.getMatrix();
+        RoomFeatureMatrix previousMatrix = previous.getMatrix();
+
+        BitSet keys = new BitSet();
+        for (Room room : changedRooms) {
+            int row = matrix.findRow(room.getRoomId());
+            if (row < 0) {
+                return null;
+            }
+            for (int tagId : matrix.getTagIds(row)) {
+                keys.set(tagId);
+            }
+            int previousRow = previousMatrix.findRow(room.getRoomId());
+            if (previousRow >= 0) {
+                for (int tagId : previousMatrix.getTagIds(previousRow)) {
+                    keys.set(tagId);
+                }
+            }
+        }
+        return keys;
+    }
+
+    private boolean needsRecompute(UserProfile profile, long lastRunAt, BitSet changedKeys) {
+        if (changedKeys == null) {
+            return true;
+        }
+        if (profile.getLastUpdated() == null || profile.getLastUpdated().getTime() >= lastRunAt) {
+            return true;
+        }
+        if (changedKeys.isEmpty()) {
+            return false;
+        }
+        try {
+            for (int tagId : recommendationEngine.getRecallTagIds(profile)) {
+                if (changedKeys.get(tagId)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    /**
+     * 预计算状态与进度
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("running", running.get());
+        status.put("processed", processed.get());
+        status.put("total", total);
+        status.put("lastRun", lastRun);
+        try {
+            status.put("watermark", stringRedisTemplate.opsForHash().entries(WATERMARK_KEY));
+        } catch (Exception e) {
+            logger.warn("读取预计算水位失败", e);
+        }
+        return status;
+    }
+
+    private static long parseLong(Object value) {
+        try {
+            return value != null ? Long.parseLong(value.toString()) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 推荐引擎启动预热
+ * 应用上下文就绪后在后台线程加载推荐索引与房间特征，不阻塞启动：
+ * 能从快照文件恢复索引时只按水位追平变更，否则先全量生成房间特征，再构建索引。
+ * 预热完成前readiness探针保持OUT_OF_SERVICE（见RecommendationWarmupHealthIndicator），
+ * 期间到达的推荐请求降级为离线预计算结果或热门房间。
+ * 预热失败时按指数退避重试，重试期间仍视为预热中；重试次数用尽后才以降级模式对外提供服务。
+ */
+@Service
+public class RecommendationWarmupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationWarmupService.class);
+
+    public enum Phase {
+        PENDING, RESTORING_INDEX, CATCHING_UP, BUILDING_FEATURES, BUILDING_INDEX, READY, FAILED, RETRY_WAITING
+    }
+
+    @Autowired
+    private RecommendationIndexService indexService;
+
+    @Autowired
+    private FeatureInitializationService featureInitializationService;
+
+    @Autowired
+    private RecommendationMetricsService metricsService;
+
+    // 预热最多尝试次数（含首次）
+    @Value("${recommendation.warmup.max-attempts:5}")
+    private int maxAttempts;
+
+    // 首次重试前的等待时间，之后每次翻倍，不超过retry-max-backoff-millis
+    @Value("${recommendation.warmup.retry-backoff-millis:10000}")
+    private long retryBackoffMillis;
+
+    @Value("${recommendation.warmup.retry-max-backoff-millis:300000}")
+    private long retryMaxBackoffMillis;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private volatile Phase phase = Phase.PENDING;
+
+    private volatile long startedAt;
+
+    private volatile long finishedAt;
+
+    private volatile String lastError;
+
+    private volatile int attempts;
+
+    /**
+     * 上下文就绪后启动后台预热线程
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "recommendation-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() {
+        startedAt = System.currentTimeMillis();
+        logger.info("推荐引擎开始后台预热");
+        long backoff = retryBackoffMillis;
+        int budget = Math.max(1, maxAttempts);
+        while (true) {
+            attempts++;
+            try {
+                runWarmup();
+                finishedAt = System.currentTimeMillis();
+                lastError = null;
+                enter(Phase.READY);
+                metricsService.recordWarmupComplete(finishedAt - startedAt, true);
+                logger.info("推荐引擎预热完成，尝试次数: {}, 耗时: {} ms", attempts, finishedAt - startedAt);
+                return;
+
+            } catch (Exception e) {
+                lastError = e.getMessage();
+                metricsService.recordError("warmup");
+                if (attempts >= budget) {
+                    finishedAt = System.currentTimeMillis();
+                    enter(Phase.FAILED);
+                    metricsService.recordWarmupComplete(finishedAt - startedAt, false);
+                    logger.error("推荐引擎预热失败，已重试 {} 次，以降级模式提供推荐，"
+                            + "需通过 /api/admin/recommendation/index/rebuild 手动重建索引", attempts, e);
+                    return;
+                }
+                enter(Phase.RETRY_WAITING);
+                logger.warn("推荐引擎预热失败（第 {}/{} 次），{} ms 后重试", attempts, budget, backoff, e);
+            }
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finishedAt = System.currentTimeMillis();
+                enter(Phase.FAILED);
+                logger.warn("推荐引擎预热重试被中断，以降级模式提供推荐");
+                return;
+            }
+            backoff = Math.min(backoff * 2, retryMaxBackoffMillis);
+        }
+    }
+
+    /**
+     * 执行一次预热，失败时抛出异常由调用方决定是否重试
+     */
+    private void runWarmup() {
+        enter(Phase.RESTORING_INDEX);
+        if (indexService.restoreFromSnapshot()) {
+            enter(Phase.CATCHING_UP);
+            featureInitializationService.catchUpSinceWatermark(indexService.getRestoredWatermark());
+        } else {
+            // 没有可用快照：先生成特征，再用新特征构建索引，只扫描一次房间特征表
+            enter(Phase.BUILDING_FEATURES);
+            featureInitializationService.initializeRoomFeatures();
+            enter(Phase.BUILDING_INDEX);
+            if (!indexService.rebuild()) {
+                throw new IllegalStateException("推荐索引构建失败");
+            }
+        }
+    }
+
+    private void enter(Phase next) {
+        phase = next;
+        metricsService.recordWarmupPhase(next.ordinal(), next == Phase.READY);
+        logger.info("推荐引擎预热阶段: {}", next);
+    }
+
+    public boolean isReady() {
+        return phase == Phase.READY;
+    }
+
+    /**
+     * 预热是否仍在进行（包括等待重试），进行中推荐请求走降级结果、readiness保持OUT_OF_SERVICE；
+     * 重试次数用尽视为结束，之后与原先启动失败时一样用空索引与兜底逻辑提供服务
+     */
+    public boolean isWarmingUp() {
+        return phase != Phase.READY && phase != Phase.FAILED;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * 预热状态
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("phase", phase.name());
+        status.put("ready", isReady());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("elapsedMillis", startedAt == 0 ? 0L
+                : (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt);
+        status.put("lastError", lastError);
+        status.put("attempts", attempts);
+        status.put("maxAttempts", maxAttempts);
+        status.put("featureBuild", featureInitializationService.getLastBuildStats());
+        return status;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.demo.service;
+
+import com.example.demo.index.CoOccurrenceMatrix;
+import com.example.demo.index.TopKSelector;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 房间共现模型（"看过这个房间的用户还看过"）
+ * 由用户行为上报驱动：同一用户间隔不超过sessionGap的点击、浏览构成一个会话，
+ * 每出现一个新房间，就与会话中已有的房间各记一次共现，直接增量更新内存中的共现矩阵，不回查数据库。
+ * 定期裁剪每个房间的邻居到Top-N并落盘，重启时从快照文件恢复。
+ */
+@Service
+public class RoomCoOccurrenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomCoOccurrenceService.class);
+
+    // 单个会话参与共现计数的最近房间数
+    private static final int MAX_SESSION_ROOMS = 20;
+
+    @Value("${recommendation.cooccurrence.max-neighbours:50}")
+    private int maxNeighbours;
+
+    @Value("${recommendation.cooccurrence.session-gap-millis:1800000}")
+    private long sessionGapMillis;
+
+    @Value("${recommendation.cooccurrence.snapshot-path:data/room-cooccurrence.snap}")
+    private String snapshotPath;
+
+    private volatile CoOccurrenceMatrix matrix;
+
+    private final Map<Long, ClickSession> sessions = new ConcurrentHashMap<>();
+
+    private volatile int lastPruned;
+
+    @PostConstruct
+    public void initialize() {
+        Path path = Paths.get(snapshotPath);
+        if (Files.exists(path)) {
+            try {
+                matrix = CoOccurrenceMatrix.read(path, maxNeighbours);
+                logger.info("从快照文件恢复房间共现矩阵，房间数: {}, 邻居条目数: {}",
+                        matrix.size(), matrix.entryCount());
+                return;
+            } catch (Exception e) {
+                logger.error("读取房间共现矩阵快照失败，从空矩阵开始: {}", path.toAbsolutePath(), e);
+            }
+        }
+        matrix = new CoOccurrenceMatrix(maxNeighbours);
+    }
+
+    /**
+     * 记录一次用户行为，只有点击和浏览计入会话
+     */
+    public void recordEvent(Long userId, String roomId, String behaviorType) {
+        if (userId == null || roomId == null
+                || !("click".equals(behaviorType) || "view".equals(behaviorType))) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ClickSession session = sessions.computeIfAbsent(userId, k -> new ClickSession());
+        List<String> previous;
+        synchronized (session) {
+            if (now - session.lastEventAt > sessionGapMillis) {
+                session.rooms.clear();
+            }
+            session.lastEventAt = now;
+            if (session.rooms.contains(roomId)) {
+                return;
+            }
+            previous = new ArrayList<>(session.rooms);
+            if (session.rooms.size() == MAX_SESSION_ROOMS) {
+                session.rooms.remove(0);
+            }
+            session.rooms.add(roomId);
+        }
+        matrix.addCoOccurrences(roomId, previous);
+    }
+
+    /**
+     * 用户当前会话中的房间（按访问顺序），会话已过期时返回空列表
+     */
+    public List<String> getSessionRooms(Long userId) {
+        ClickSession session = userId != null ? sessions.get(userId) : null;
+        if (session == null) {
+            return Collections.emptyList();
+        }
+        synchronized (session) {
+            if (System.currentTimeMillis() - session.lastEventAt > sessionGapMillis) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(session.rooms);
+        }
+    }
+
+    /**
+     * 与种子房间共现次数最高的房间，多个种子的共现次数相加，不包含种子本身
+     */
+    public List<String> getAlsoViewedRooms(Collection<String> seedRoomIds, int limit) {
+        CoOccurrenceMatrix current = matrix;
+        if (seedRoomIds.isEmpty() || limit <= 0 || current.size() == 0) {
+            return Collections.emptyList();
+        }
+        int[] neighbours = new int[current.maxRowSize()];
+        int[] counts = new int[neighbours.length];
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (String seed : seedRoomIds) {
+            int found = current.neighbours(current.ordinalOf(seed), neighbours, counts);
+            for (int i = 0; i < found; i++) {
+                scores.merge(neighbours[i], counts[i], Integer::sum);
+            }
+        }
+        for (String seed : seedRoomIds) {
+            scores.remove(current.ordinalOf(seed));
+        }
+
+        TopKSelector selector = new TopKSelector(limit);
+        for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+            selector.offer(entry.getKey(), entry.getValue());
+        }
+        int[] top = selector.drainDescending(null);
+        List<String> result = new ArrayList<>(top.length);
+        for (int ordinal : top) {
+            result.add(current.roomIdOf(ordinal));
+        }
+        return result;
+    }
+
+    /**
+     * 定期维护：清理过期会话，把每个房间的邻居裁剪到Top-N，有变更时落盘
+     */
+    @Scheduled(fixedDelayString = "${recommendation.cooccurrence.maintenance-interval-millis:600000}",
+            initialDelayString = "${recommendation.cooccurrence.maintenance-interval-millis:600000}")
+    public void maintain() {
+        try {
+            long now = System.currentTimeMillis();
+            sessions.entrySet().removeIf(entry -> now - entry.getValue().lastEventAt > sessionGapMillis);
+
+            CoOccurrenceMatrix current = matrix;
+            lastPruned = current.prune();
+            if (current.isDirty()) {
+                long start = System.currentTimeMillis();
+                Path path = Paths.get(snapshotPath);
+                current.write(path);
+                logger.info("房间共现矩阵已落盘，房间数: {}, 本次裁剪: {}, 耗时: {} ms, 路径: {}",
+                        current.size(), lastPruned, System.currentTimeMillis() - start, path.toAbsolutePath());
+            }
+        } catch (Exception e) {
+            logger.warn("房间共现矩阵维护失败", e);
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> getStatus() {
+        CoOccurrenceMatrix current = matrix;
+        Map<String, Object> status = new HashMap<>();
+        status.put("rooms", current.size());
+        status.put("entries", current.entryCount());
+        status.put("activeSessions", sessions.size());
+        status.put("maxNeighbours", maxNeighbours);
+        status.put("lastPruned", lastPruned);
+        return status;
+    }
+
+    private static final class ClickSession {
+        private final List<String> rooms = new ArrayList<>(MAX_SESSION_ROOMS);
+        private volatile long lastEventAt;
+    }
+}
@@ -1,26 +1,53 @@
 package com.example.demo.service;
 
 import com.alibaba.fastjson2.JSON;
+import com.example.demo.config.RecommendationConfig;
+import com.example.demo.dto.CacheEnvelope;
+import com.example.demo.dto.ExplainedRecommendationDTO;
+import com.example.demo.dto.NearbyRoomDTO;
+import com.example.demo.dto.RecommendationTrace;
 import com.example.demo.dto.RoomRecommendationDTO;
-import com.example.demo.mapper.RoomFeaturesMapper;
+import com.example.demo.handler.VectorCodec;
+import com.example.demo.index.CompressedBitmap;
+import com.example.demo.index.GeoGridIndex;
+import com.example.demo.index.HnswIndex;
+import com.example.demo.index.QuantizedVectors;
+import com.example.demo.index.KeywordAutomaton;
+import com.example.demo.index.RecommendationIndexSnapshot;
+import com.example.demo.index.RoomFeatureMatrix;
+import com.example.demo.index.SimilarityKernel;
+import com.example.demo.index.SimilarityKernels;
+import com.example.demo.index.TagDictionary;
+import com.example.demo.index.TopKSelector;
+import com.example.demo.index.UserScoringContext;
 import com.example.demo.mapper.RoomMapper;
 import com.example.demo.mapper.UserProfileMapper;
 import com.example.demo.model.Room;
-import com.example.demo.model.RoomFeatures;
 import com.example.demo.model.SearchIntent;
 import com.example.demo.model.UserProfile;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -36,21 +63,97 @@ public class RoomRecommendationEngineService {
     private RoomMapper roomMapper;
 
     @Autowired
-    private RoomFeaturesMapper roomFeaturesMapper;
+    private UserProfileMapper userProfileMapper;
 
     @Autowired
-    private UserProfileMapper userProfileMapper;
+    private RecommendationIndexService indexService;
+
+    @Autowired
+    private RecommendationCacheService recommendationCache;
+
+    @Autowired
+    private TrendingRoomService trendingRoomService;
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private RoomCoOccurrenceService coOccurrenceService;
 
-    // 倒排索引存储
-    private final Map<String, Set<String>> invertedIndex = new ConcurrentHashMap<>();
+    @Autowired
+    private UserVectorIndexService userVectorIndexService;
+
+    @Autowired
+    private TagDictionaryService tagDictionaryService;
+
+    @Autowired
+    private RecommendationWarmupService warmupService;
+
+    @Autowired
+    private KeywordDictionaryService keywordDictionaryService;
+
+    @Autowired
+    private RecommendationMetricsService metricsService;
+
+    // 在线请求各路召回的总截止时间
+    @Value("${recommendation.recall.timeout-millis:80}")
+    private long recallTimeoutMillis;
+
+    @Value("${recommendation.similarity.kernel:auto}")
+    private String similarityKernelPreference;
+
+    // 相似度计算内核，启动时选定
+    private SimilarityKernel similarityKernel = SimilarityKernels.scalar();
+
+    @Autowired
+    @Qualifier("recommendationExecutor")
+    private ThreadPoolTaskExecutor recommendationExecutor;
+
+    @Autowired
+    @Qualifier("recallExecutor")
+    private ThreadPoolTaskExecutor recallExecutor;
+
+    @PostConstruct
+    public void initializeSimilarityKernel() {
+        similarityKernel = SimilarityKernels.select(similarityKernelPreference);
+        String reason = SimilarityKernels.unavailableReason();
+        if (reason != null && !SimilarityKernels.SCALAR.equalsIgnoreCase(similarityKernelPreference)) {
+            logger.info("相似度计算使用标量内核，SIMD不可用: {}", reason);
+        } else {
+            logger.info("相似度计算内核: {}", similarityKernel.name());
+        }
+    }
+
+    // 向量召回统计：耗时与抽样召回率
+    private final LongAdder vectorRecallCount = new LongAdder();
+    private final LongAdder vectorRecallNanos = new LongAdder();
+    private final LongAdder recallSampleCount = new LongAdder();
+    private final LongAdder recallSampleHits = new LongAdder();
+    private final LongAdder recallSampleExpected = new LongAdder();
+
+    private static final int VECTOR_RECALL_SIZE = 50;
+    // 量化排序精度统计：与全精度Top-K的重合率、相似度误差
+    private final LongAdder quantizedSampleCount = new LongAdder();
+    private final LongAdder quantizedSampleHits = new LongAdder();
+    private final LongAdder quantizedSampleExpected = new LongAdder();
+    private final DoubleAdder quantizedErrorSum = new DoubleAdder();
+    private final LongAdder quantizedErrorCount = new LongAdder();
+
+    private static final int QUANTIZED_RESCORE_FACTOR = 4; // 量化粗排保留limit的倍数，交给原始向量精排
+
+    private static final int GEO_RECALL_SIZE = 50; // 位置召回的房间数
+    private static final double GEO_RECALL_RADIUS_KM = 10.0; // 位置召回的最大半径
+
+    private static final int CO_OCCURRENCE_RECALL_SIZE = 50; // 共现召回的房间数
+
+    private static final int SIMILAR_USER_COUNT = 20; // 协同召回参考的相似用户数
+    private static final int COLLABORATIVE_RECALL_SIZE = 50; // 协同召回的房间数
+
+    private static final int RECALL_SAMPLE_RATE = 20; // 每20次向量召回抽样1次计算recall@K
+
+    // 批量推荐：画像分批查询的IN列表大小、每个并行任务处理的用户数
+    private static final int BATCH_PROFILE_CHUNK = 500;
+    private static final int BATCH_RANK_CHUNK = 32;
 
     // 缓存相关常量
-    private static final String RECOMMENDATION_CACHE_KEY = "room:recommendation:";
     private static final String POPULAR_ROOMS_KEY = "popular_rooms";
-    private static final int CACHE_EXPIRATION = 1800; // 30分钟缓存
 
     /**
      * 通用向量解析方法 - 将字符串或对象转换为Double数组
@@ -65,17 +168,22 @@ public class RoomRecommendationEngineService {
                 return (Double[]) vectorData;
             }
 
+            // 向量列迁移为二进制后，Map结果中的列值为byte[]
+            if (vectorData instanceof byte[]) {
+                return VectorCodec.decodeBoxed((byte[]) vectorData);
+            }
+
             if (vectorData instanceof String) {
                 String vectorJson = (String) vectorData;
                 if (vectorJson.trim().isEmpty()) {
                     return getDefaultVector();
                 }
-                return JSON.parseObject(vectorJson, Double[].class);
+                return VectorCodec.parseJsonBoxed(vectorJson);
             }
 
             // 尝试转换为JSON字符串再解析
             String vectorJson = JSON.toJSONString(vectorData);
-            return JSON.parseObject(vectorJson, Double[].class);
+            return VectorCodec.parseJsonBoxed(vectorJson);
 
         } catch (Exception e) {
             logger.warn("解析向量数据失败，使用默认向量: {}", e.getMessage());
@@ -104,8 +212,8 @@ public class RoomRecommendationEngineService {
                 return defaultVector;
             }
 
-            // 使用fastjson解析JSON字符串为Double数组
-            return JSON.parseObject(vectorJson, Double[].class);
+            // 专用编解码直接解析数值数组
+            return VectorCodec.parseJsonBoxed(vectorJson);
 
         } catch (Exception e) {
             logger.warn("解析房间特征向量失败，使用默认向量: {}", e.getMessage());
@@ -117,258 +225,693 @@ public class RoomRecommendationEngineService {
     }
 
     /**
-     * 系统启动时初始化索引
+     * 主推荐接口
      */
-    @jakarta.annotation.PostConstruct
-    public void initializeIndex() {
+    public List<RoomRecommendationDTO> recommendRooms(Long userId, int limit) {
+        return recommendRooms(userId, limit, true);
+    }
+
+    /**
+     * 主推荐接口
+     * @param useTopK true使用固定容量小顶堆选取Top-K，false使用全量排序
+     */
+    public List<RoomRecommendationDTO> recommendRooms(Long userId, int limit, boolean useTopK) {
+        Timer.Sample sample = metricsService.startRecommendationTimer();
+        long start = System.nanoTime();
+        long[] computeNanos = {-1L};
         try {
-            buildInvertedIndex();
-            logger.info("推荐引擎初始化完成");
+            if (warmupService.isWarmingUp()) {
+                return getWarmupRecommendations(userId, limit);
+            }
+
+            // 本地L1 → Redis L2，未命中时同一用户的并发请求只计算一次
+            List<RoomRecommendationDTO> recommendations = recommendationCache.getOrCompute(userId, () -> {
+                long computeStart = System.nanoTime();
+                try {
+                    return computeRecommendations(userId, limit * 2, useTopK);
+                } finally {
+                    computeNanos[0] = System.nanoTime() - computeStart;
+                }
+            });
+            // 缓存阶段耗时不含本线程上的计算耗时
+            metricsService.recordStage("cache_lookup", start + Math.max(0L, computeNanos[0]));
+
+            return recommendations.stream().limit(limit).collect(Collectors.toList());
+
         } catch (Exception e) {
-            logger.error("推荐引擎初始化失败", e);
+            logger.error("生成推荐失败，用户ID: {}", userId, e);
+            return getFallbackRecommendations(limit);
+        } finally {
+            metricsService.recordRecommendationDuration(sample);
         }
     }
 
     /**
-     * 主推荐接口
+     * 主推荐接口（调试模式），同时返回各阶段耗时与候选数量
+     * 缓存命中时追踪中只有缓存阶段，是否命中由缓存服务记录
      */
-    public List<RoomRecommendationDTO> recommendRooms(Long userId, int limit) {
-        String cacheKey = RECOMMENDATION_CACHE_KEY + userId;
-
+    public ExplainedRecommendationDTO recommendRoomsExplained(Long userId, int limit, boolean useTopK) {
+        RecommendationTrace trace = metricsService.beginTrace(userId);
+        long start = System.nanoTime();
         try {
-            // 检查缓存
-            @SuppressWarnings("unchecked")
-            List<RoomRecommendationDTO> cachedResult =
-                    (List<RoomRecommendationDTO>) redisTemplate.opsForValue().get(cacheKey);
+            List<RoomRecommendationDTO> recommendations = recommendRooms(userId, limit, useTopK);
+            // 缓存命中与否由缓存服务与预热降级路径显式记录，异常兜底时没有记录，按未命中处理
+            if (trace.getCacheHit() == null) {
+                trace.setCacheHit(false);
+            }
+            trace.setTotalMillis((System.nanoTime() - start) / 1_000_000.0);
+            return new ExplainedRecommendationDTO(recommendations, trace);
+        } finally {
+            metricsService.endTrace();
+        }
+    }
 
-            if (cachedResult != null && !cachedResult.isEmpty()) {
-                return cachedResult.stream().limit(limit).collect(Collectors.toList());
+    /**
+     * 批量推荐
+     * @return 按输入顺序排列的userId → 推荐结果
+     */
+    public Map<Long, List<RoomRecommendationDTO>> recommendRoomsBatch(List<Long> userIds, int limit) {
+        Map<Long, List<RoomRecommendationDTO>> results = new ConcurrentHashMap<>();
+        recommendRoomsBatch(userIds, limit, results::put).join();
+
+        Map<Long, List<RoomRecommendationDTO>> ordered = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            if (userId != null && results.containsKey(userId)) {
+                ordered.put(userId, results.get(userId));
             }
+        }
+        return ordered;
+    }
 
-            // 获取用户画像
-            UserProfile userProfile = userProfileMapper.selectById(userId);
-            if (userProfile == null) {
-                userProfile = createDefaultProfile(userId);
+    /**
+     * 批量推荐（流式）
+     * 缓存命中的用户立即回调；其余用户的画像用selectByUserIds分批一次查出，
+     * 全部用户共用同一个索引快照，在recommendationExecutor上分组并行排序，每完成一个用户回调一次。
+     * @param consumer 结果回调，会被多个线程并发调用
+     * @return 所有用户回调完成后结束的Future
+     */
+    public CompletableFuture<Void> recommendRoomsBatch(List<Long> userIds, int limit,
+                                                       BiConsumer<Long, List<RoomRecommendationDTO>> consumer) {
+        List<Long> misses = new ArrayList<>();
+        for (Long userId : new LinkedHashSet<>(userIds)) {
+            if (userId == null) {
+                continue;
             }
+            CacheEnvelope<List<RoomRecommendationDTO>> cached = recommendationCache.get(userId);
+            if (cached != null) {
+                consumer.accept(userId, cached.getValue().stream().limit(limit).collect(Collectors.toList()));
+            } else {
+                misses.add(userId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (warmupService.isWarmingUp()) {
+            List<RoomRecommendationDTO> fallback = getWarmupRecommendations(null, limit);
+            for (Long userId : misses) {
+                consumer.accept(userId, fallback);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
 
-            // 候选房间召回
-            Set<String> candidateRoomIds = recallCandidates(userProfile);
+        Map<Long, UserProfile> profiles = new HashMap<>(misses.size() * 2);
+        for (int from = 0; from < misses.size(); from += BATCH_PROFILE_CHUNK) {
+            List<Long> chunk = misses.subList(from, Math.min(from + BATCH_PROFILE_CHUNK, misses.size()));
+            try {
+                for (UserProfile profile : userProfileMapper.selectByUserIds(chunk)) {
+                    profiles.put(profile.getUserId(), profile);
+                }
+            } catch (Exception e) {
+                logger.warn("批量查询用户画像失败，使用默认画像，数量: {}", chunk.size(), e);
+            }
+        }
 
-            // 排序和推荐
-            List<RoomRecommendationDTO> recommendations = rankAndRecommend(
-                    candidateRoomIds, userProfile, limit * 2
-            );
+        RecommendationIndexSnapshot snapshot = indexService.current();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < misses.size(); from += BATCH_RANK_CHUNK) {
+            List<Long> chunk = misses.subList(from, Math.min(from + BATCH_RANK_CHUNK, misses.size()));
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (Long userId : chunk) {
+                    consumer.accept(userId, rankForBatch(userId, profiles.get(userId), snapshot, limit));
+                }
+            }, recommendationExecutor));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+    }
 
-            // 缓存结果
-            if (!recommendations.isEmpty()) {
-                redisTemplate.opsForValue().set(cacheKey, recommendations,
-                        CACHE_EXPIRATION, TimeUnit.SECONDS);
+    private List<RoomRecommendationDTO> rankForBatch(Long userId, UserProfile userProfile,
+                                                     RecommendationIndexSnapshot snapshot, int limit) {
+        try {
+            if (userProfile == null) {
+                userProfile = createDefaultProfile(userId);
             }
+            long start = System.currentTimeMillis();
+            UserProfile profile = userProfile;
+            boolean[] degraded = {false};
+            List<RoomRecommendationDTO> recommendations = recommendationCache.computeTracked(
+                    () -> rankForProfile(profile, snapshot, limit * 2, true), degraded);
+            recommendationCache.put(userId, recommendations, System.currentTimeMillis() - start, degraded[0]);
 
             return recommendations.stream().limit(limit).collect(Collectors.toList());
 
         } catch (Exception e) {
-            logger.error("生成推荐失败，用户ID: {}", userId, e);
+            logger.error("批量推荐失败，用户ID: {}", userId, e);
             return getFallbackRecommendations(limit);
         }
     }
 
+    /**
+     * 召回并排序，不经过缓存
+     */
+    private List<RoomRecommendationDTO> computeRecommendations(Long userId, int size, boolean useTopK) {
+        // 获取用户画像
+        long start = System.nanoTime();
+        UserProfile userProfile = userProfileMapper.selectById(userId);
+        if (userProfile == null) {
+            userProfile = createDefaultProfile(userId);
+        }
+        metricsService.recordStage("profile_load", start);
+
+        // 候选房间召回（整个请求使用同一个索引快照），各路召回并发执行
+        RecommendationIndexSnapshot snapshot = indexService.current();
+        UserScoringContext context = compileScoringContext(userProfile, snapshot);
+        CompressedBitmap candidateRows = recallCandidates(userProfile, context, snapshot, true);
+        return rankAndRecommend(snapshot, candidateRows, context, size, useTopK);
+    }
+
+    /**
+     * 在给定快照上为单个画像召回并排序，供批量推荐与离线预计算复用
+     */
+    public List<RoomRecommendationDTO> rankForProfile(UserProfile userProfile, RecommendationIndexSnapshot snapshot,
+                                                      int size, boolean useTopK) {
+        UserScoringContext context = compileScoringContext(userProfile, snapshot);
+        CompressedBitmap candidateRows = recallCandidates(userProfile, context, snapshot, false);
+        return rankAndRecommend(snapshot, candidateRows, context, size, useTopK);
+    }
+
+    /**
+     * 每个请求编译一次用户打分上下文，召回与排序共用
+     */
+    private UserScoringContext compileScoringContext(UserProfile userProfile, RecommendationIndexSnapshot snapshot) {
+        long stageStart = System.nanoTime();
+        UserScoringContext context = UserScoringContext.compile(userProfile, snapshot.getMatrix().getDimension(),
+                snapshot.getTagDictionary());
+        metricsService.recordStage("feature_fetch", stageStart);
+        return context;
+    }
+
     /**
      * 基于搜索关键词的智能推荐
      */
     public List<RoomRecommendationDTO> searchWithRecommendation(Long userId, String keyword, int limit) {
+        return searchWithRecommendation(userId, keyword, limit, true);
+    }
+
+    /**
+     * 基于搜索关键词的智能推荐
+     * @param useTopK true使用固定容量小顶堆选取Top-K，false使用全量排序
+     */
+    public List<RoomRecommendationDTO> searchWithRecommendation(Long userId, String keyword, int limit,
+                                                                boolean useTopK) {
+        return searchWithRecommendation(userId, keyword, limit, useTopK, null, null);
+    }
+
+    /**
+     * 基于搜索关键词的智能推荐，带用户当前位置时额外召回附近房间
+     */
+    public List<RoomRecommendationDTO> searchWithRecommendation(Long userId, String keyword, int limit,
+                                                                boolean useTopK, Double longitude,
+                                                                Double latitude) {
+        Timer.Sample sample = metricsService.startSearchTimer();
+        metricsService.recordSearch();
         try {
             // 解析搜索意图
+            long stageStart = System.nanoTime();
             SearchIntent intent = parseSearchIntent(keyword);
-
-            // 基于意图的候选召回
-            Set<String> candidateRoomIds = recallByIntent(intent);
+            stageStart = metricsService.recordStage("intent_parse", stageStart);
+
+            // 基于意图的候选召回（整个请求使用同一个索引快照）
+            RecommendationIndexSnapshot snapshot = indexService.current();
+            CompressedBitmap candidateRows = recallByIntent(intent, snapshot);
+            if (isValidLocation(longitude, latitude)) {
+                stageStart = System.nanoTime();
+                CompressedBitmap nearby = recallByLocation(longitude, latitude, snapshot);
+                metricsService.recordStage("recall_location", stageStart);
+                metricsService.recordCandidates("location", nearby.getCardinality());
+                candidateRows = CompressedBitmap.or(candidateRows, nearby);
+            }
+            metricsService.recordCandidates("total", candidateRows.getCardinality());
 
             // 获取用户画像进行个性化排序
+            stageStart = System.nanoTime();
             UserProfile userProfile = userProfileMapper.selectById(userId);
             if (userProfile == null) {
                 userProfile = createDefaultProfile(userId);
             }
+            metricsService.recordStage("profile_load", stageStart);
 
-            return rankAndRecommend(candidateRoomIds, userProfile, limit);
+            UserScoringContext context = compileScoringContext(userProfile, snapshot);
+            return rankAndRecommend(snapshot, candidateRows, context, limit, useTopK);
 
         } catch (Exception e) {
             logger.error("搜索推荐失败，用户ID: {}, 关键词: {}", userId, keyword, e);
             return searchFallback(keyword, limit);
+        } finally {
+            metricsService.recordSearchDuration(sample);
         }
     }
 
     /**
-     * 构建倒排索引
+     * 搜索推荐（调试模式），同时返回各阶段耗时与候选数量
      */
-    private void buildInvertedIndex() {
+    public ExplainedRecommendationDTO searchWithRecommendationExplained(Long userId, String keyword, int limit,
+                                                                         boolean useTopK, Double longitude,
+                                                                         Double latitude) {
+        RecommendationTrace trace = metricsService.beginTrace(userId);
+        long start = System.nanoTime();
         try {
-            List<RoomFeatures> allRoomFeatures = roomFeaturesMapper.selectList(null);
-            invertedIndex.clear();
-
-            for (RoomFeatures room : allRoomFeatures) {
-                List<String> tags = room.getTagsList();
-                for (String tag : tags) {
-                    invertedIndex.computeIfAbsent(tag, k -> ConcurrentHashMap.newKeySet())
-                            .add(room.getRoomId());
-                }
+            List<RoomRecommendationDTO> recommendations = searchWithRecommendation(userId, keyword, limit, useTopK,
+                    longitude, latitude);
+            trace.setCacheHit(false);
+            trace.setTotalMillis((System.nanoTime() - start) / 1_000_000.0);
+            return new ExplainedRecommendationDTO(recommendations, trace);
+        } finally {
+            metricsService.endTrace();
+        }
+    }
 
-                // 价格等级索引
-                String priceTag = "price_level_" + room.getPriceLevel();
-                invertedIndex.computeIfAbsent(priceTag, k -> ConcurrentHashMap.newKeySet())
-                        .add(room.getRoomId());
+    /**
+     * 用户画像用于倒排召回的标签ID（当前索引快照的字典）：权重超过阈值的偏好标签与价格区间内的价格等级
+     */
+    public int[] getRecallTagIds(UserProfile userProfile) {
+        RecommendationIndexSnapshot snapshot = indexService.current();
+        return UserScoringContext.compile(userProfile, snapshot.getMatrix().getDimension(),
+                snapshot.getTagDictionary()).getRecallTagIds();
+    }
 
-                // 星级索引
-                String starTag = "star_" + room.getStarLevel();
-                invertedIndex.computeIfAbsent(starTag, k -> ConcurrentHashMap.newKeySet())
-                        .add(room.getRoomId());
+    /**
+     * 候选房间召回
+     * @param concurrent true时各路召回在recallExecutor上并发执行，共享同一个截止时间，
+     *                   超时或被线程池拒绝的召回源被丢弃并计入指标，用已返回的结果合并；
+     *                   false时在当前线程依次执行（批量推荐与离线预计算本身已运行在线程池上）。
+     *                   已经运行在推荐线程池上（如缓存提前刷新）时同样依次执行，避免在线程池内嵌套阻塞等待。
+     *                   有召回源被丢弃或使用了热门兜底时，结果标记为降级，缓存只保留较短时间
+     */
+    private CompressedBitmap recallCandidates(UserProfile userProfile, UserScoringContext context,
+                                              RecommendationIndexSnapshot snapshot, boolean concurrent) {
+        RoomFeatureMatrix matrix = snapshot.getMatrix();
+
+        try {
+            Map<String, Supplier<CompressedBitmap>> recallSources = recallSources(userProfile, context, snapshot);
+            Supplier<Set<String>> popularSource = () -> {
+                long stageStart = System.nanoTime();
+                Set<String> popular = getPopularRooms(50);
+                metricsService.recordStage("recall_popular", stageStart);
+                return popular;
+            };
+
+            List<CompressedBitmap> sources = new ArrayList<>(recallSources.size());
+            concurrent = concurrent && !RecommendationConfig.isRecommendationPoolThread();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(recallTimeoutMillis);
+
+            if (concurrent) {
+                Map<String, CompletableFuture<CompressedBitmap>> futures = new LinkedHashMap<>();
+                for (Map.Entry<String, Supplier<CompressedBitmap>> source : recallSources.entrySet()) {
+                    CompletableFuture<CompressedBitmap> future = submitRecall(source.getKey(), source.getValue());
+                    if (future != null) {
+                        futures.put(source.getKey(), future);
+                    }
+                }
+
+                for (Map.Entry<String, CompletableFuture<CompressedBitmap>> future : futures.entrySet()) {
+                    CompressedBitmap result = awaitRecall(future.getKey(), future.getValue(), deadline);
+                    if (result != null) {
+                        sources.add(result);
+                    }
+                }
+                if (sources.size() < recallSources.size()) {
+                    recommendationCache.markDegraded();
+                }
+            } else {
+                for (Supplier<CompressedBitmap> source : recallSources.values()) {
+                    sources.add(source.get());
+                }
             }
 
-            logger.info("倒排索引构建完成，包含 {} 个标签", invertedIndex.size());
+            CompressedBitmap candidates = CompressedBitmap.or(sources);
+
+            // 如果候选太少，添加流行房间
+            if (candidates.getCardinality() < 20) {
+                recommendationCache.markDegraded();
+                Set<String> popular;
+                if (concurrent) {
+                    CompletableFuture<Set<String>> popularFuture = submitRecall("popular", popularSource);
+                    popular = popularFuture != null ? awaitRecall("popular", popularFuture, deadline) : null;
+                } else {
+                    popular = popularSource.get();
+                }
+                if (popular != null) {
+                    candidates = CompressedBitmap.or(candidates, toRows(popular, matrix));
+                }
+            }
+            metricsService.recordCandidates("total", candidates.getCardinality());
+            return candidates;
 
         } catch (Exception e) {
-            logger.error("构建倒排索引失败", e);
+            logger.error("候选召回失败，用户ID: {}", userProfile.getUserId(), e);
+            recommendationCache.markDegraded();
+            return toRows(getPopularRooms(50), matrix);
         }
     }
 
     /**
-     * 候选房间召回
+     * 把一路召回提交到召回线程池，线程池饱和被拒绝时丢弃该召回源并返回null
      */
-    private Set<String> recallCandidates(UserProfile userProfile) {
-        Set<String> candidates = new HashSet<>();
-        Map<String, Double> preferredTags = userProfile.getPreferredTagsMap();
+    private <T> CompletableFuture<T> submitRecall(String source, Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(metricsService.withCurrentTrace(supplier), recallExecutor);
+        } catch (RejectedExecutionException e) {
+            metricsService.recordRecallDropped(source, "rejected");
+            logger.debug("召回线程池已满，召回源 {} 已丢弃", source);
+            return null;
+        }
+    }
+
+    /**
+     * 各路召回源（按名称），每一路自行记录阶段耗时与候选数量
+     */
+    private Map<String, Supplier<CompressedBitmap>> recallSources(UserProfile userProfile,
+                                                                 UserScoringContext context,
+                                                                 RecommendationIndexSnapshot snapshot) {
+        Map<String, Supplier<CompressedBitmap>> recallSources = new LinkedHashMap<>();
+
+        // 基于标签与价格偏好召回
+        recallSources.put("tags", () -> {
+            long stageStart = System.nanoTime();
+            List<CompressedBitmap> postings = new ArrayList<>();
+            for (int tagId : context.getRecallTagIds()) {
+                addPosting(postings, snapshot, tagId);
+            }
+            CompressedBitmap tagCandidates = CompressedBitmap.or(postings);
+            metricsService.recordStage("recall_tags", stageStart);
+            metricsService.recordCandidates("tags", tagCandidates.getCardinality());
+            return tagCandidates;
+        });
+
+        // 基于画像向量的近邻召回
+        recallSources.put("vector", () -> {
+            long stageStart = System.nanoTime();
+            CompressedBitmap vectorCandidates = recallByVector(userProfile, context, snapshot,
+                    VECTOR_RECALL_SIZE);
+            metricsService.recordStage("recall_vector", stageStart);
+            metricsService.recordCandidates("vector", vectorCandidates.getCardinality());
+            return vectorCandidates;
+        });
+
+        // 基于位置偏好的附近房间召回
+        double[] location = parseLocation(userProfile.getLocationPreference());
+        if (location != null) {
+            recallSources.put("location", () -> {
+                long stageStart = System.nanoTime();
+                CompressedBitmap nearby = recallByLocation(location[0], location[1], snapshot);
+                metricsService.recordStage("recall_location", stageStart);
+                metricsService.recordCandidates("location", nearby.getCardinality());
+                return nearby;
+            });
+        }
 
+        // 基于当前会话浏览记录的共现召回（看过这些房间的用户还看过）
+        List<String> sessionRooms = coOccurrenceService.getSessionRooms(userProfile.getUserId());
+        if (!sessionRooms.isEmpty()) {
+            recallSources.put("cooccurrence", () -> {
+                long stageStart = System.nanoTime();
+                CompressedBitmap alsoViewed = toRows(
+                        coOccurrenceService.getAlsoViewedRooms(sessionRooms, CO_OCCURRENCE_RECALL_SIZE),
+                        snapshot.getMatrix());
+                metricsService.recordStage("recall_cooccurrence", stageStart);
+                metricsService.recordCandidates("cooccurrence", alsoViewed.getCardinality());
+                return alsoViewed;
+            });
+        }
+
+        // 基于相似用户的协同召回
+        recallSources.put("similar_users", () -> {
+            long stageStart = System.nanoTime();
+            CompressedBitmap collaborative = toRows(userVectorIndexService.findRoomsOfSimilarUsers(
+                    userProfile, SIMILAR_USER_COUNT, COLLABORATIVE_RECALL_SIZE), snapshot.getMatrix());
+            metricsService.recordStage("recall_similar_users", stageStart);
+            metricsService.recordCandidates("similar_users", collaborative.getCardinality());
+            return collaborative;
+        });
+        return recallSources;
+    }
+
+    /**
+     * 在截止时间前等待一路召回，超时或失败时返回null并记录
+     */
+    private <T> T awaitRecall(String source, CompletableFuture<T> future, long deadline) {
         try {
-            // 基于标签召回
-            for (Map.Entry<String, Double> entry : preferredTags.entrySet()) {
-                String tag = entry.getKey();
-                Double weight = entry.getValue();
-
-                if (weight > 0.3) { // 权重阈值过滤
-                    Set<String> tagRooms = invertedIndex.get(tag);
-                    if (tagRooms != null) {
-                        candidates.addAll(tagRooms);
-                    }
-                }
+            return future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            metricsService.recordRecallDropped(source, "timeout");
+            logger.debug("召回源 {} 超过 {} ms 截止时间，已丢弃", source, recallTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metricsService.recordRecallDropped(source, "interrupted");
+        } catch (ExecutionException e) {
+            metricsService.recordRecallDropped(source, "error");
+            logger.warn("召回源 {} 执行失败", source, e.getCause());
+        }
+        return null;
+    }
+
+    private void addPosting(List<CompressedBitmap> sources, RecommendationIndexSnapshot snapshot, int tagId) {
+        CompressedBitmap posting = snapshot.posting(tagId);
+        if (posting != null) {
+            sources.add(posting);
+        }
+    }
+
+    private void addPosting(List<CompressedBitmap> sources, RecommendationIndexSnapshot snapshot, String tag) {
+        addPosting(sources, snapshot, snapshot.getTagDictionary().idOf(tag));
+    }
+
+    /**
+     * 将房间ID集合转换为特征矩阵行号位图
+     */
+    private CompressedBitmap toRows(Collection<String> roomIds, RoomFeatureMatrix matrix) {
+        CompressedBitmap rows = new CompressedBitmap();
+        for (String roomId : roomIds) {
+            int row = matrix.rowOf(roomId);
+            if (row >= 0) {
+                rows.add(row);
             }
+        }
+        return rows;
+    }
 
-            // 基于价格偏好召回
-            if (userProfile.getPriceRange() != null) {
-                String[] range = userProfile.getPriceRange().split(",");
-                int minLevel = Integer.parseInt(range[0]);
-                int maxLevel = Integer.parseInt(range[1]);
+    /**
+     * 向量召回：在ANN索引中查找与用户画像向量余弦相似度最高的房间
+     */
+    private CompressedBitmap recallByVector(UserProfile userProfile, UserScoringContext context,
+                                            RecommendationIndexSnapshot snapshot, int size) {
+        HnswIndex index = snapshot.getAnnIndex();
+        RoomFeatureMatrix matrix = snapshot.getMatrix();
+        CompressedBitmap result = new CompressedBitmap();
+        if (index == null || index.size() == 0 || userProfile.getProfileVector() == null) {
+            return result;
+        }
 
-                for (int level = minLevel; level <= maxLevel; level++) {
-                    Set<String> priceRooms = invertedIndex.get("price_level_" + level);
-                    if (priceRooms != null) {
-                        candidates.addAll(priceRooms);
-                    }
-                }
+        try {
+            double[] userVector = context.getVector();
+
+            long start = System.nanoTime();
+            int[] rows = new int[size];
+            int found = index.search(userVector, size, HnswIndex.DEFAULT_EF_SEARCH, rows, null);
+            vectorRecallNanos.add(System.nanoTime() - start);
+            vectorRecallCount.increment();
+
+            if (found > 0 && ThreadLocalRandom.current().nextInt(RECALL_SAMPLE_RATE) == 0) {
+                sampleVectorRecall(index, userVector, rows, found);
             }
 
-            // 如果候选太少，添加流行房间
-            if (candidates.size() < 20) {
-                candidates.addAll(getPopularRooms(50));
+            // ANN索引只在全量重建时更新，跳过之后增量下线的房间
+            int live = 0;
+            for (int i = 0; i < found; i++) {
+                if (matrix.isLive(rows[i])) {
+                    rows[live++] = rows[i];
+                }
             }
+            int[] sorted = Arrays.copyOf(rows, live);
+            Arrays.sort(sorted);
+            return CompressedBitmap.of(sorted);
 
         } catch (Exception e) {
-            logger.error("候选召回失败，用户ID: {}", userProfile.getUserId(), e);
-            candidates.addAll(getPopularRooms(50));
+            logger.warn("向量召回失败，用户ID: {}", userProfile.getUserId(), e);
+            return result;
+        }
+    }
+
+    /**
+     * 基于位置的召回：最大半径内最近的若干个房间
+     */
+    private CompressedBitmap recallByLocation(double longitude, double latitude,
+                                              RecommendationIndexSnapshot snapshot) {
+        GeoGridIndex geoIndex = snapshot.getGeoIndex();
+        if (geoIndex == null || geoIndex.size() == 0) {
+            return new CompressedBitmap();
+        }
+        try {
+            int[] rows = new int[GEO_RECALL_SIZE];
+            int found = geoIndex.nearest(snapshot.getMatrix(), latitude, longitude, GEO_RECALL_SIZE,
+                    GEO_RECALL_RADIUS_KM, rows, null);
+            int[] sorted = Arrays.copyOf(rows, found);
+            Arrays.sort(sorted);
+            return CompressedBitmap.of(sorted);
+        } catch (Exception e) {
+            logger.warn("位置召回失败，经度: {}, 纬度: {}", longitude, latitude, e);
+            return new CompressedBitmap();
         }
+    }
 
-        return candidates;
+    /**
+     * 附近房间查询：radiusKm内按距离由近到远返回最多limit个在架房间
+     */
+    public List<NearbyRoomDTO> findNearbyRooms(double longitude, double latitude, double radiusKm, int limit) {
+        RecommendationIndexSnapshot snapshot = indexService.current();
+        GeoGridIndex geoIndex = snapshot.getGeoIndex();
+        if (geoIndex == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        RoomFeatureMatrix matrix = snapshot.getMatrix();
+        int[] rows = new int[limit];
+        double[] distances = new double[limit];
+        int found = geoIndex.withinRadius(matrix, latitude, longitude, radiusKm, limit, rows, distances);
+
+        List<NearbyRoomDTO> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(new NearbyRoomDTO(matrix.getRoomId(rows[i]), distances[i],
+                    matrix.getLongitude(rows[i]), matrix.getLatitude(rows[i])));
+        }
+        return result;
+    }
+
+    /**
+     * 解析"经度,纬度"格式的位置偏好，格式不符时返回null
+     */
+    private double[] parseLocation(String location) {
+        if (location == null || location.trim().isEmpty()) {
+            return null;
+        }
+        String[] parts = location.split(",");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            double longitude = Double.parseDouble(parts[0].trim());
+            double latitude = Double.parseDouble(parts[1].trim());
+            return isValidLocation(longitude, latitude) ? new double[]{longitude, latitude} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isValidLocation(Double longitude, Double latitude) {
+        return longitude != null && latitude != null
+                && longitude >= -180 && longitude <= 180 && latitude >= -90 && latitude <= 90;
+    }
+
+    /**
+     * 抽样对比暴力精确结果，累计recall@K
+     */
+    private void sampleVectorRecall(HnswIndex index, double[] userVector, int[] approximate, int found) {
+        int[] exact = new int[found];
+        int exactCount = index.exactSearch(userVector, found, exact);
+        Set<Integer> approximateRows = new HashSet<>(found * 2);
+        for (int i = 0; i < found; i++) {
+            approximateRows.add(approximate[i]);
+        }
+        int hits = 0;
+        for (int i = 0; i < exactCount; i++) {
+            if (approximateRows.contains(exact[i])) {
+                hits++;
+            }
+        }
+        recallSampleCount.increment();
+        recallSampleHits.add(hits);
+        recallSampleExpected.add(exactCount);
     }
 
     /**
      * 基于搜索意图召回候选房间
      */
-    private Set<String> recallByIntent(SearchIntent intent) {
-        Set<String> candidates = new HashSet<>();
+    private CompressedBitmap recallByIntent(SearchIntent intent, RecommendationIndexSnapshot snapshot) {
+        RoomFeatureMatrix matrix = snapshot.getMatrix();
+        List<CompressedBitmap> sources = new ArrayList<>();
 
         try {
             // 基于设施召回
+            long stageStart = System.nanoTime();
             for (String facility : intent.getFacilities()) {
-                Set<String> facilityRooms = invertedIndex.get(facility);
-                if (facilityRooms != null) {
-                    candidates.addAll(facilityRooms);
-                }
+                addPosting(sources, snapshot, facility);
             }
 
             // 基于房型召回
             if (intent.getRoomType() != null) {
-                Set<String> typeRooms = invertedIndex.get(intent.getRoomType());
-                if (typeRooms != null) {
-                    candidates.addAll(typeRooms);
-                }
+                addPosting(sources, snapshot, intent.getRoomType());
             }
 
             // 基于价格召回
             if (intent.getPriceHint() != null) {
                 int priceLevel = calculatePriceLevel(intent.getPriceHint().doubleValue());
-                Set<String> priceRooms = invertedIndex.get("price_level_" + priceLevel);
-                if (priceRooms != null) {
-                    candidates.addAll(priceRooms);
-                }
+                addPosting(sources, snapshot, snapshot.getTagDictionary().priceLevelId(priceLevel));
             }
 
+            CompressedBitmap candidates = CompressedBitmap.or(sources);
+            metricsService.recordStage("recall_intent", stageStart);
+            metricsService.recordCandidates("intent", candidates.getCardinality());
+
             // 如果候选太少，使用热门房间补充
-            if (candidates.size() < 10) {
-                candidates.addAll(getPopularRooms(30));
+            if (candidates.getCardinality() < 10) {
+                stageStart = System.nanoTime();
+                candidates = CompressedBitmap.or(candidates, toRows(getPopularRooms(30), matrix));
+                metricsService.recordStage("recall_popular", stageStart);
             }
+            return candidates;
 
         } catch (Exception e) {
             logger.error("基于意图召回失败", e);
-            candidates.addAll(getPopularRooms(30));
+            return toRows(getPopularRooms(30), matrix);
         }
-
-        return candidates;
     }
 
     /**
      * 排序和推荐
      */
-    private List<RoomRecommendationDTO> rankAndRecommend(
-            Set<String> candidateRoomIds, UserProfile userProfile, int limit) {
+    private List<RoomRecommendationDTO> rankAndRecommend(RecommendationIndexSnapshot snapshot,
+                                                         CompressedBitmap candidateRows,
+                                                         UserScoringContext context, int limit, boolean useTopK) {
+        RoomFeatureMatrix matrix = snapshot.getMatrix();
 
-        if (candidateRoomIds.isEmpty()) {
+        if (candidateRows.isEmpty() || matrix.isEmpty()) {
             return getFallbackRecommendations(limit);
         }
 
         try {
-            List<RoomFeatures> candidates = roomFeaturesMapper.selectByRoomIds(candidateRoomIds);
-            // 直接获取用户画像向量（已经是Double[]类型）
-            Double[] userVector = userProfile.getProfileVector();
-            if (userVector == null) {
-                userVector = getDefaultVector();
-            }
-
-            // 将userVector声明为final，以便在lambda中使用
-            final Double[] finalUserVector = userVector;
-
-            return candidates.stream()
-                    .map(room -> {
-                        // 获取房间特征向量 - 使用RoomFeatures提供的方法
-                        Double[] roomVector = room.getFeatureVectorArray();
-                        if (roomVector == null || roomVector.length == 0) {
-                            roomVector = getDefaultVector();
-                        }
-                        double similarity = calculateCosineSimilarity(finalUserVector, roomVector);
-
-                        // 添加业务规则加权
-                        double businessScore = calculateBusinessScore(room, userProfile);
-                        double finalScore = similarity * 0.7 + businessScore * 0.3;
-
-                        return new RoomRecommendationDTO(
-                                room.getRoomId(),
-                                finalScore,
-                                similarity,
-                                "基于您的偏好推荐"
-                        );
-                    })
-                    .filter(dto -> dto.getScore() > 0.1) // 过滤低分推荐
-                    .sorted(Comparator.comparingDouble(RoomRecommendationDTO::getScore).reversed())
-                    .limit(limit)
-                    .collect(Collectors.toList());
+            long stageStart = System.nanoTime();
+            List<RoomRecommendationDTO> result;
+            if (useTopK && snapshot.getQuantizedVectors() != null) {
+                result = rankTopKQuantized(matrix, snapshot.getQuantizedVectors(), candidateRows, context, limit);
+            } else if (useTopK) {
+                result = rankTopK(matrix, candidateRows, context, limit);
+            } else {
+                result = rankFullSort(matrix, candidateRows, context, limit);
+            }
+            metricsService.recordStage("scoring", stageStart);
+            metricsService.recordRecommendation(result.size());
+            return result;
 
         } catch (Exception e) {
             logger.error("排序推荐失败", e);
@@ -377,88 +920,191 @@ public class RoomRecommendationEngineService {
     }
 
     /**
-     * 解析用户画像向量字符串为Double数组
+     * Top-K排序：小顶堆只保留limit个基本类型分数，仅为最终结果创建DTO
      */
-    private Double[] parseProfileVector(String vectorJson) {
-        try {
-            if (vectorJson == null || vectorJson.trim().isEmpty()) {
-                // 返回默认10维零向量
-                Double[] defaultVector = new Double[10];
-                Arrays.fill(defaultVector, 0.0);
-                return defaultVector;
+    private List<RoomRecommendationDTO> rankTopK(RoomFeatureMatrix matrix, CompressedBitmap candidateRows,
+                                                 UserScoringContext context, int limit) {
+        int[] rows = candidateRows.toArray();
+        double[] similarities = calculateCosineSimilarities(matrix, rows, context);
+
+        // 堆中保存候选在rows中的下标，输出时可直接取回相似度
+        TopKSelector selector = new TopKSelector(limit);
+        for (int i = 0; i < rows.length; i++) {
+            double finalScore = calculateFinalScore(matrix, rows[i], similarities[i], context);
+            if (finalScore > 0.1) { // 过滤低分推荐
+                selector.offer(i, finalScore);
             }
+        }
 
-            // 使用fastjson解析JSON字符串为Double数组
-            return JSON.parseObject(vectorJson, Double[].class);
-
-        } catch (Exception e) {
-            logger.warn("解析用户画像向量失败，使用默认向量: {}", e.getMessage());
-            // 返回默认10维零向量
-            Double[] defaultVector = new Double[10];
-            Arrays.fill(defaultVector, 0.0);
-            return defaultVector;
+        double[] scores = new double[selector.size()];
+        int[] positions = selector.drainDescending(scores);
+        List<RoomRecommendationDTO> result = new ArrayList<>(positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            result.add(new RoomRecommendationDTO(
+                    matrix.getRoomId(rows[positions[i]]),
+                    scores[i],
+                    similarities[positions[i]],
+                    "基于您的偏好推荐"
+            ));
         }
+        return result;
     }
 
     /**
-     * 余弦相似度计算
+     * 量化Top-K排序：先在量化编码上粗排选出limit×RESCORE_FACTOR个候选，
+     * 再用原始向量精确计算相似度重排，返回结果的分数与全精度路径一致
      */
-    private double calculateCosineSimilarity(Double[] vectorA, Double[] vectorB) {
-        if (vectorA == null || vectorB == null ||
-                vectorA.length == 0 || vectorB.length == 0) {
-            return 0.0;
+    private List<RoomRecommendationDTO> rankTopKQuantized(RoomFeatureMatrix matrix, QuantizedVectors quantized,
+                                                          CompressedBitmap candidateRows,
+                                                          UserScoringContext context, int limit) {
+        int[] rows = candidateRows.toArray();
+        double[] approximate = new double[rows.length];
+        quantized.cosineBatch(context.getVector(), context.getInverseNorm(), matrix.getInverseNorms(), rows,
+                rows.length, approximate);
+
+        // 粗排：量化相似度，保留limit×RESCORE_FACTOR个候选
+        TopKSelector coarse = new TopKSelector(limit * QUANTIZED_RESCORE_FACTOR);
+        for (int i = 0; i < rows.length; i++) {
+            coarse.offer(i, calculateFinalScore(matrix, rows[i], approximate[i], context));
+        }
+        int[] positions = coarse.drainDescending(null);
+        int[] shortlist = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            shortlist[i] = rows[positions[i]];
+        }
+
+        // 精排：原始向量重新计算相似度
+        double[] similarities = calculateCosineSimilarities(matrix, shortlist, context);
+        TopKSelector selector = new TopKSelector(limit);
+        for (int i = 0; i < shortlist.length; i++) {
+            double finalScore = calculateFinalScore(matrix, shortlist[i], similarities[i], context);
+            if (finalScore > 0.1) { // 过滤低分推荐
+                selector.offer(i, finalScore);
+            }
         }
 
-        int minLength = Math.min(vectorA.length, vectorB.length);
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
+        double[] scores = new double[selector.size()];
+        int[] top = selector.drainDescending(scores);
+        List<RoomRecommendationDTO> result = new ArrayList<>(top.length);
+        for (int i = 0; i < top.length; i++) {
+            result.add(new RoomRecommendationDTO(
+                    matrix.getRoomId(shortlist[top[i]]),
+                    scores[i],
+                    similarities[top[i]],
+                    "基于您的偏好推荐"
+            ));
+        }
 
-        for (int i = 0; i < minLength; i++) {
-            double a = vectorA[i] != null ? vectorA[i] : 0.0;
-            double b = vectorB[i] != null ? vectorB[i] : 0.0;
+        if (ThreadLocalRandom.current().nextInt(RECALL_SAMPLE_RATE) == 0) {
+            sampleQuantizationAccuracy(matrix, rows, approximate, context, result, limit);
+        }
+        return result;
+    }
 
-            dotProduct += a * b;
-            normA += a * a;
-            normB += b * b;
+    /**
+     * 抽样对比全精度Top-K，累计量化路径的recall@K与相似度平均绝对误差
+     */
+    private void sampleQuantizationAccuracy(RoomFeatureMatrix matrix, int[] rows, double[] approximate,
+                                            UserScoringContext context, List<RoomRecommendationDTO> result,
+                                            int limit) {
+        double[] exact = calculateCosineSimilarities(matrix, rows, context);
+        TopKSelector selector = new TopKSelector(limit);
+        double errorSum = 0.0;
+        for (int i = 0; i < rows.length; i++) {
+            errorSum += Math.abs(exact[i] - approximate[i]);
+            double finalScore = calculateFinalScore(matrix, rows[i], exact[i], context);
+            if (finalScore > 0.1) {
+                selector.offer(i, finalScore);
+            }
+        }
+        int[] expected = selector.drainDescending(null);
+        Set<String> returned = new HashSet<>(result.size() * 2);
+        for (RoomRecommendationDTO dto : result) {
+            returned.add(dto.getRoomId());
+        }
+        int hits = 0;
+        for (int position : expected) {
+            if (returned.contains(matrix.getRoomId(rows[position]))) {
+                hits++;
+            }
         }
+        quantizedSampleCount.increment();
+        quantizedSampleHits.add(hits);
+        quantizedSampleExpected.add(expected.length);
+        quantizedErrorSum.add(errorSum);
+        quantizedErrorCount.add(rows.length);
+    }
 
-        if (normA == 0.0 || normB == 0.0) {
-            return 0.0;
+    /**
+     * 全量排序：为每个候选创建DTO后整体排序再截断
+     */
+    private List<RoomRecommendationDTO> rankFullSort(RoomFeatureMatrix matrix, CompressedBitmap candidateRows,
+                                                     UserScoringContext context, int limit) {
+        int[] rows = candidateRows.toArray();
+        double[] similarities = calculateCosineSimilarities(matrix, rows, context);
+
+        List<RoomRecommendationDTO> scored = new ArrayList<>(rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            double finalScore = calculateFinalScore(matrix, rows[i], similarities[i], context);
+
+            scored.add(new RoomRecommendationDTO(
+                    matrix.getRoomId(rows[i]),
+                    finalScore,
+                    similarities[i],
+                    "基于您的偏好推荐"
+            ));
         }
 
-        return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
+        return scored.stream()
+                .filter(dto -> dto.getScore() > 0.1) // 过滤低分推荐
+                .sorted(Comparator.comparingDouble(RoomRecommendationDTO::getScore).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
     }
 
     /**
-     * 业务规则评分
+     * 综合评分：向量相似度与业务规则加权
      */
-    private double calculateBusinessScore(RoomFeatures room, UserProfile userProfile) {
-        double score = 0.0;
+    private double calculateFinalScore(RoomFeatureMatrix matrix, int row, double similarity,
+                                       UserScoringContext context) {
+        // 添加业务规则加权（查表，不解析画像）
+        double businessScore = context.businessScore(matrix.getPriceLevel(row), matrix.getStarLevel(row));
+        return similarity * 0.7 + businessScore * 0.3;
+    }
 
+    /**
+     * 解析用户画像向量字符串为Double数组
+     */
+    private Double[] parseProfileVector(String vectorJson) {
         try {
-            // 星级匹配度
-            if (userProfile.getStarPreference() != null) {
-                int starDiff = Math.abs(room.getStarLevel() - userProfile.getStarPreference());
-                score += Math.max(0, 1.0 - starDiff * 0.2);
+            if (vectorJson == null || vectorJson.trim().isEmpty()) {
+                // 返回默认10维零向量
+                Double[] defaultVector = new Double[10];
+                Arrays.fill(defaultVector, 0.0);
+                return defaultVector;
             }
 
-            // 价格匹配度
-            if (userProfile.getPriceRange() != null) {
-                String[] range = userProfile.getPriceRange().split(",");
-                int minLevel = Integer.parseInt(range[0]);
-                int maxLevel = Integer.parseInt(range[1]);
-
-                if (room.getPriceLevel() >= minLevel && room.getPriceLevel() <= maxLevel) {
-                    score += 0.5;
-                }
-            }
+            // 专用编解码直接解析数值数组
+            return VectorCodec.parseJsonBoxed(vectorJson);
 
         } catch (Exception e) {
-            logger.warn("计算业务规则评分失败", e);
+            logger.warn("解析用户画像向量失败，使用默认向量: {}", e.getMessage());
+            // 返回默认10维零向量
+            Double[] defaultVector = new Double[10];
+            Arrays.fill(defaultVector, 0.0);
+            return defaultVector;
         }
+    }
 
-        return Math.min(1.0, score);
+    /**
+     * 余弦相似度批量计算（用户向量 vs 特征矩阵中的一批行）
+     * 房间模长已在矩阵中预先算好，用户向量在打分上下文中已归一化，内核只做点积
+     */
+    private double[] calculateCosineSimilarities(RoomFeatureMatrix matrix, int[] rows, UserScoringContext context) {
+        double[] similarities = new double[rows.length];
+        similarityKernel.cosineBatch(context.getVector(), context.getInverseNorm(), matrix.getVectors(),
+                matrix.getInverseNorms(), matrix.getDimension(), rows, rows.length, similarities);
+        return similarities;
     }
 
     /**
@@ -469,34 +1115,37 @@ public class RoomRecommendationEngineService {
         intent.setOriginalQuery(keyword);
 
         try {
-            String lowerKeyword = keyword.toLowerCase();
-
-            // 价格意图识别
-            Pattern pricePattern = Pattern.compile("([0-9]+)");
-            Matcher matcher = pricePattern.matcher(keyword);
-            if (matcher.find()) {
-                int price = Integer.parseInt(matcher.group(1));
-                intent.setPriceHint(price);
-            }
-
-            // 设施意图识别
-            String[] facilityKeywords = {"wifi", "早餐", "健身", "游泳", "停车", "海景", "市景", "空调"};
-            List<String> detectedFacilities = new ArrayList<>();
-            for (String facility : facilityKeywords) {
-                if (lowerKeyword.contains(facility)) {
-                    detectedFacilities.add(facility);
-                }
-            }
-            intent.setFacilities(detectedFacilities);
-
-            // 房型意图识别
-            String[] roomTypeKeywords = {"标准", "豪华", "套房", "单人", "双人", "亲子", "商务", "电竞"};
-            for (String roomType : roomTypeKeywords) {
-                if (lowerKeyword.contains(roomType)) {
-                    intent.setRoomType(roomType);
-                    break;
+            // 一遍扫描取出数字、价格意图、设施与景观、房型
+            Integer explicitPrice = null;
+            Integer impliedPrice = null;
+            Set<String> detectedFacilities = new LinkedHashSet<>();
+            for (KeywordAutomaton.Match match : keywordDictionaryService.match(keyword)) {
+                switch (match.getCategory()) {
+                    case KeywordAutomaton.NUMBER:
+                        if (explicitPrice == null && match.getTerm().length() <= 9) {
+                            explicitPrice = Integer.parseInt(match.getTerm());
+                        }
+                        break;
+                    case KeywordDictionaryService.PRICE:
+                        if (impliedPrice == null) {
+                            impliedPrice = Integer.parseInt(match.getTerm());
+                        }
+                        break;
+                    case KeywordDictionaryService.FACILITY:
+                    case KeywordDictionaryService.VIEW:
+                        detectedFacilities.add(match.getTerm());
+                        break;
+                    case KeywordDictionaryService.ROOM_TYPE:
+                        if (intent.getRoomType() == null) {
+                            intent.setRoomType(match.getTerm());
+                        }
+                        break;
+                    default:
+                        break;
                 }
             }
+            intent.setPriceHint(explicitPrice != null ? explicitPrice : impliedPrice);
+            intent.setFacilities(new ArrayList<>(detectedFacilities));
 
         } catch (Exception e) {
             logger.warn("解析搜索意图失败，关键词: {}", keyword, e);
@@ -510,27 +1159,32 @@ public class RoomRecommendationEngineService {
      */
     private Set<String> getPopularRooms(int limit) {
         try {
-            @SuppressWarnings("unchecked")
-            Set<String> popularRooms = (Set<String>) redisTemplate.opsForValue()
-                    .get(POPULAR_ROOMS_KEY);
-
-            if (popularRooms == null || popularRooms.isEmpty()) {
-                // 从数据库获取活跃房间作为备选
-                List<Room> activeRooms = roomMapper.selectList(null);
-                popularRooms = activeRooms.stream()
-                        .filter(room -> room.getRoomStatus() != null && room.getRoomStatus() == 1)
-                        .map(Room::getRoomId)
-                        .limit(limit)
-                        .collect(Collectors.toSet());
-
-                // 存入缓存
-                if (!popularRooms.isEmpty()) {
-                    redisTemplate.opsForValue().set(POPULAR_ROOMS_KEY, popularRooms,
-                            3600, TimeUnit.SECONDS);
+            // 优先使用按点击热度统计的滑动窗口结果，过滤已下线房间
+            RoomFeatureMatrix matrix = indexService.current().getMatrix();
+            Set<String> trending = new LinkedHashSet<>();
+            for (String roomId : trendingRoomService.getTrendingRooms(limit * 2)) {
+                if (matrix.isEmpty() || matrix.rowOf(roomId) >= 0) {
+                    trending.add(roomId);
+                    if (trending.size() >= limit) {
+                        break;
+                    }
                 }
             }
+            if (trending.size() >= limit) {
+                return trending;
+            }
+
+            // 热度数据不足时（冷启动），用活跃房间补齐；未命中时并发请求只查询一次数据库
+            Set<String> popularRooms = recommendationCache.getOrComputeShared(POPULAR_ROOMS_KEY, 3600,
+                    () -> loadPopularRooms(limit));
 
-            return popularRooms.stream().limit(limit).collect(Collectors.toSet());
+            for (String roomId : popularRooms) {
+                if (trending.size() >= limit) {
+                    break;
+                }
+                trending.add(roomId);
+            }
+            return trending;
 
         } catch (Exception e) {
             logger.error("获取热门房间失败", e);
@@ -538,6 +1192,18 @@ public class RoomRecommendationEngineService {
         }
     }
 
+    /**
+     * 从数据库获取活跃房间作为备选
+     */
+    private Set<String> loadPopularRooms(int limit) {
+        List<Room> activeRooms = roomMapper.selectList(null);
+        return activeRooms.stream()
+                .filter(room -> room.getRoomStatus() != null && room.getRoomStatus() == 1)
+                .map(Room::getRoomId)
+                .limit(limit)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
     /**
      * 创建默认用户画像
      */
@@ -556,6 +1222,7 @@ public class RoomRecommendationEngineService {
             profile.setLastUpdated(new Timestamp(System.currentTimeMillis()));
 
             userProfileMapper.insert(profile);
+            userVectorIndexService.onProfileUpdated(profile);
             logger.info("为用户 {} 创建默认画像", userId);
 
             return profile;
@@ -574,6 +1241,22 @@ public class RoomRecommendationEngineService {
         }
     }
 
+    /**
+     * 预热期间的降级推荐：优先返回离线预计算写入缓存的结果，没有时返回热门房间，不触发在线计算，
+     * 避免用尚未加载的空索引算出结果并写入缓存
+     */
+    private List<RoomRecommendationDTO> getWarmupRecommendations(Long userId, int limit) {
+        CacheEnvelope<List<RoomRecommendationDTO>> cached = userId != null ? recommendationCache.get(userId) : null;
+        if (cached != null) {
+            metricsService.recordWarmupFallback("cache");
+            metricsService.recordTraceCacheHit(true);
+            return cached.getValue().stream().limit(limit).collect(Collectors.toList());
+        }
+        metricsService.recordWarmupFallback("popular");
+        metricsService.recordTraceCacheHit(false);
+        return getFallbackRecommendations(limit);
+    }
+
     /**
      * 备用推荐策略
      */
@@ -639,8 +1322,7 @@ public class RoomRecommendationEngineService {
      */
     public void refreshRecommendationCache(Long userId) {
         try {
-            String cacheKey = RECOMMENDATION_CACHE_KEY + userId;
-            redisTemplate.delete(cacheKey);
+            recommendationCache.evict(userId);
             logger.debug("清除用户 {} 的推荐缓存", userId);
         } catch (Exception e) {
             logger.warn("清除推荐缓存失败，用户ID: {}", userId, e);
@@ -654,21 +1336,62 @@ public class RoomRecommendationEngineService {
         Map<String, Object> status = new HashMap<>();
 
         try {
-            status.put("indexSize", invertedIndex.size());
-            status.put("indexKeys", invertedIndex.keySet().size());
+            RecommendationIndexSnapshot snapshot = indexService.current();
+            status.put("indexSize", snapshot.getPostingCount());
+            status.put("indexKeys", snapshot.getPostingCount());
+            status.put("indexMemoryBytes", snapshot.getPostingsSizeInBytes());
+            status.put("indexVersion", snapshot.getVersion());
+            status.put("indexBuiltAt", snapshot.getBuiltAt());
+            status.put("indexBuildMillis", snapshot.getBuildMillis());
+            status.put("indexRebuilding", indexService.isRebuilding());
             status.put("status", "运行中");
+            status.put("localCache", recommendationCache.getLocalCacheStats());
+            status.put("trending", trendingRoomService.getStatus());
+            status.put("coOccurrence", coOccurrenceService.getStatus());
+            status.put("userVectorIndex", userVectorIndexService.getStatus());
+            status.put("tagDictionary", tagDictionaryService.getStatus());
+            status.put("warmup", warmupService.getStatus());
+            status.put("similarityKernel", similarityKernel.name());
 
             // 统计各类标签数量
-            long priceTagCount = invertedIndex.keySet().stream()
-                    .filter(key -> key.startsWith("price_level_"))
-                    .count();
-            long starTagCount = invertedIndex.keySet().stream()
-                    .filter(key -> key.startsWith("star_"))
-                    .count();
+            TagDictionary dictionary = snapshot.getTagDictionary();
+            CompressedBitmap[] postings = snapshot.getPostings();
+            long priceTagCount = 0;
+            long starTagCount = 0;
+            for (int tagId = 0; tagId < postings.length; tagId++) {
+                if (postings[tagId] == null) {
+                    continue;
+                }
+                String name = dictionary.nameOf(tagId);
+                if (name.startsWith(TagDictionary.PRICE_LEVEL_PREFIX)) {
+                    priceTagCount++;
+                } else if (name.startsWith(TagDictionary.STAR_PREFIX)) {
+                    starTagCount++;
+                }
+            }
 
             status.put("priceTagCount", priceTagCount);
             status.put("starTagCount", starTagCount);
 
+            // 向量召回指标
+            HnswIndex index = snapshot.getAnnIndex();
+            status.put("vectorIndexSize", index != null ? index.size() : 0);
+            long recallCalls = vectorRecallCount.sum();
+            status.put("vectorRecallCount", recallCalls);
+            status.put("vectorRecallAvgMicros",
+                    recallCalls > 0 ? vectorRecallNanos.sum() / 1000.0 / recallCalls : 0.0);
+            long expected = recallSampleExpected.sum();
+            status.put("vectorRecallAtK", expected > 0 ? (double) recallSampleHits.sum() / expected : null);
+            status.put("vectorRecallSamples", recallSampleCount.sum());
+
+            long quantizedExpected = quantizedSampleExpected.sum();
+            long quantizedErrors = quantizedErrorCount.sum();
+            status.put("quantizedRecallAtK",
+                    quantizedExpected > 0 ? (double) quantizedSampleHits.sum() / quantizedExpected : null);
+            status.put("quantizedSimilarityMeanError",
+                    quantizedErrors > 0 ? quantizedErrorSum.sum() / quantizedErrors : null);
+            status.put("quantizedSamples", quantizedSampleCount.sum());
+
         } catch (Exception e) {
             status.put("status", "异常");
             status.put("error", e.getMessage());
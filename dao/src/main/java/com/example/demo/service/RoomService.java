@@ -3,11 +3,18 @@ package com.example.demo.service;
 import com.example.demo.dao.RoomDao;
 import com.example.demo.dao.EquipmentDao;
 import com.example.demo.dao.EquipmentDao.RoomEquipmentDetail;
+import com.example.demo.config.RabbitMQConfig;
+import com.example.demo.dto.RoomChangeMessage;
 import com.example.demo.model.Room;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -28,6 +35,14 @@ public class RoomService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private FeatureInitializationService featureInitializationService;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomService.class);
+
     private static final String ROOM_LIST_KEY = "room:list:status:";
     private static final String ROOM_DETAIL_KEY = "room:detail:";
     private static final long CACHE_EXPIRATION = 30; // 缓存过期时间（分钟）
@@ -192,6 +207,8 @@ public class RoomService {
 
             // 清除详情缓存
             redisTemplate.delete(ROOM_DETAIL_KEY + roomId);
+
+            publishRoomChange(roomId, RoomChangeMessage.OFFLINE);
         }
 
         return result;
@@ -209,6 +226,9 @@ public class RoomService {
 
                 String detailCacheKey = ROOM_DETAIL_KEY + roomId;
                 redisTemplate.delete(detailCacheKey);
+
+                featureInitializationService.deleteRoomFeatures(roomId);
+                publishRoomChange(roomId, RoomChangeMessage.DELETED);
             }
 
             return result;
@@ -226,6 +246,9 @@ public class RoomService {
 
         redisTemplate.delete(detailCacheKey);
         redisTemplate.delete(listCacheKey);
+
+        featureInitializationService.updateSingleRoomFeatures(room.getRoomId());
+        publishRoomChange(room.getRoomId(), RoomChangeMessage.UPDATED);
     }
 
     @Transactional
@@ -234,6 +257,9 @@ public class RoomService {
 
         String listCacheKey = ROOM_LIST_KEY + room.getRoomStatus();
         redisTemplate.delete(listCacheKey);
+
+        featureInitializationService.updateSingleRoomFeatures(room.getRoomId());
+        publishRoomChange(room.getRoomId(), RoomChangeMessage.ADDED);
     }
 
     public void refreshRoomCache(Integer status) {
@@ -242,4 +268,31 @@ public class RoomService {
         String cacheKey = ROOM_LIST_KEY + status;
         redisTemplate.opsForValue().set(cacheKey, rooms, CACHE_EXPIRATION, TimeUnit.MINUTES);
     }
-}
\ No newline at end of file
+
+    /**
+     * 广播房间变更，各实例据此增量更新推荐索引
+     * 在事务内调用时延迟到提交之后发送，避免消费者读到未提交的数据
+     */
+    private void publishRoomChange(String roomId, String changeType) {
+        RoomChangeMessage message = new RoomChangeMessage(roomId, changeType);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sendRoomChange(message);
+                }
+            });
+        } else {
+            sendRoomChange(message);
+        }
+    }
+
+    private void sendRoomChange(RoomChangeMessage message) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.ROOM_CHANGE_EXCHANGE, "", message);
+        } catch (Exception e) {
+            // 消息丢失时由RecommendationIndexService的定时全量重建兜底
+            logger.error("发送房间变更消息失败：{}", message, e);
+        }
+    }
+}
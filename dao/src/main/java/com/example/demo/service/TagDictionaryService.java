@@ -0,0 +1,106 @@
+package com.example.demo.service;
+
+import com.example.demo.index.TagDictionary;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全局标签字典服务
+ * 启动时从文本文件恢复字典（每行一个标签，行号即ID），保证重启前后同一标签的ID不变；
+ * 运行中新出现的标签由索引构建、增量更新时分配ID，定期及构建完成后追加落盘。
+ */
+@Service
+public class TagDictionaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TagDictionaryService.class);
+
+    @Value("${recommendation.tags.dictionary-path:data/tag-dictionary.txt}")
+    private String dictionaryPath;
+
+    private TagDictionary dictionary;
+
+    // 最近一次落盘时的字典大小，字典只增不删，大小不变即无变更
+    private volatile int savedSize;
+
+    @PostConstruct
+    public void initialize() {
+        Path path = Paths.get(dictionaryPath);
+        if (Files.exists(path)) {
+            try {
+                List<String> names = Files.readAllLines(path, StandardCharsets.UTF_8);
+                dictionary = new TagDictionary(names);
+                savedSize = names.size();
+                logger.info("从文件恢复标签字典，标签数: {}, 路径: {}", dictionary.size(), path.toAbsolutePath());
+                return;
+            } catch (Exception e) {
+                logger.error("读取标签字典失败，从空字典开始: {}", path.toAbsolutePath(), e);
+            }
+        }
+        dictionary = new TagDictionary();
+    }
+
+    public TagDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * 字典有新增标签时落盘，先写临时文件再原子替换
+     */
+    public synchronized void saveIfChanged() {
+        int size = dictionary.size();
+        if (size == savedSize) {
+            return;
+        }
+        Path path = Paths.get(dictionaryPath);
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(tmp, dictionary.names(), StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedSize = size;
+            logger.info("标签字典已落盘，标签数: {}, 路径: {}", size, path.toAbsolutePath());
+        } catch (IOException e) {
+            logger.warn("标签字典落盘失败: {}", path.toAbsolutePath(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${recommendation.tags.flush-interval-millis:300000}",
+            initialDelayString = "${recommendation.tags.flush-interval-millis:300000}")
+    public void scheduledFlush() {
+        saveIfChanged();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        saveIfChanged();
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("tags", dictionary.size());
+        status.put("savedTags", savedSize);
+        status.put("path", dictionaryPath);
+        return status;
+    }
+}
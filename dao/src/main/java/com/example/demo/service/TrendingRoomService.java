@@ -0,0 +1,291 @@
+package com.example.demo.service;
+
+import com.example.demo.index.TopKSelector;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热门房间滑动窗口统计
+ * 由用户行为上报驱动，每个房间按时间分桶计数（LongAdder环形桶，写入无锁），
+ * 查询时按桶的年龄做指数衰减加权，Top-N通过固定容量小顶堆在O(N log K)内选出。
+ * 各实例定期把本地热度写入Redis有序集合，再合并为全局热门集合，所有实例读取同一份结果。
+ */
+@Service
+public class TrendingRoomService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrendingRoomService.class);
+
+    private static final String NODE_KEY_PREFIX = "trending:rooms:node:";
+    private static final String NODES_KEY = "trending:rooms:nodes";
+    private static final String GLOBAL_KEY = "trending:rooms";
+    private static final String STAGING_SUFFIX = ":staging";
+
+    // 窗口内的时间桶数量，窗口长度 = BUCKETS * bucketMillis
+    private static final int BUCKETS = 12;
+
+    // 环形槽数量，比窗口多一个槽留给提前准备的下一个时间桶，避免提前清空仍在窗口内的最老桶
+    private static final int SLOTS = BUCKETS + 1;
+
+    // 全局集合保留的房间数
+    private static final int GLOBAL_TOP_SIZE = 200;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Value("${recommendation.trending.bucket-millis:300000}")
+    private long bucketMillis;
+
+    @Value("${recommendation.trending.half-life-millis:1800000}")
+    private long halfLifeMillis;
+
+    @Value("${recommendation.trending.publish-interval-millis:60000}")
+    private long publishIntervalMillis;
+
+    private final Map<String, RoomCounter> counters = new ConcurrentHashMap<>();
+
+    // 每个槽当前承载的时间桶编号，与查询时期望的编号不一致的槽视为过期
+    private final AtomicLongArray slotEpochs = new AtomicLongArray(SLOTS);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private double[] decayByAge;
+
+    private volatile List<String> globalTrending = Collections.emptyList();
+
+    @PostConstruct
+    public void initialize() {
+        decayByAge = new double[BUCKETS];
+        for (int age = 0; age < BUCKETS; age++) {
+            decayByAge[age] = Math.pow(0.5, (double) age * bucketMillis / halfLifeMillis);
+        }
+        long epoch = currentEpoch();
+        for (int i = 0; i < SLOTS; i++) {
+            slotEpochs.set(i, -1L);
+        }
+        slotEpochs.set(slotOf(epoch), epoch);
+        logger.info("热门房间统计初始化完成，窗口: {} min, 半衰期: {} min, 实例: {}",
+                BUCKETS * bucketMillis / 60000, halfLifeMillis / 60000, nodeId);
+    }
+
+    /**
+     * 记录一次用户行为，点击、浏览、预订按不同权重计入当前时间桶
+     */
+    public void recordEvent(String roomId, String behaviorType) {
+        int weight = weightOf(behaviorType);
+        if (roomId == null || weight == 0) {
+            return;
+        }
+        long epoch = currentEpoch();
+        int slot = slotOf(epoch);
+        if (slotEpochs.get(slot) != epoch) {
+            advanceTo(epoch);
+        }
+        counters.computeIfAbsent(roomId, k -> new RoomCounter()).buckets[slot].add(weight);
+    }
+
+    /**
+     * 热门房间，优先使用全局集合，尚未发布时使用本地统计
+     */
+    public List<String> getTrendingRooms(int limit) {
+        List<String> global = globalTrending;
+        List<String> source = !global.isEmpty() ? global : getLocalTrendingRooms(limit);
+        return source.size() > limit ? source.subList(0, limit) : source;
+    }
+
+    /**
+     * 本实例统计的热门房间，按衰减后的热度降序
+     */
+    public List<String> getLocalTrendingRooms(int limit) {
+        Map<String, Double> scores = localScores();
+        if (scores.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        String[] roomIds = scores.keySet().toArray(new String[0]);
+        TopKSelector selector = new TopKSelector(limit);
+        for (int i = 0; i < roomIds.length; i++) {
+            selector.offer(i, scores.get(roomIds[i]));
+        }
+        int[] top = selector.drainDescending(null);
+        List<String> result = new ArrayList<>(top.length);
+        for (int index : top) {
+            result.add(roomIds[index]);
+        }
+        return result;
+    }
+
+    /**
+     * 提前准备下一个时间桶，写入路径无需等待清空
+     */
+    @Scheduled(fixedRateString = "${recommendation.trending.bucket-millis:300000}")
+    public void rotateBuckets() {
+        advanceTo(currentEpoch() + 1);
+    }
+
+    /**
+     * 发布本地热度并合并全局热门集合
+     */
+    @Scheduled(fixedDelayString = "${recommendation.trending.publish-interval-millis:60000}",
+            initialDelayString = "${recommendation.trending.publish-interval-millis:60000}")
+    public void publish() {
+        try {
+            Map<String, Double> scores = localScores();
+            long now = System.currentTimeMillis();
+            long ttlMillis = publishIntervalMillis * 3;
+            String nodeKey = NODE_KEY_PREFIX + nodeId;
+
+            // 先写入临时键再RENAME覆盖，其他实例合并时看到的要么是旧集合要么是新集合，不会是清空后的空集合
+            if (scores.isEmpty()) {
+                stringRedisTemplate.delete(nodeKey);
+            } else {
+                String stagingKey = nodeKey + STAGING_SUFFIX;
+                Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(scores.size() * 2);
+                for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                    tuples.add(new DefaultTypedTuple<>(entry.getKey(), entry.getValue()));
+                }
+                stringRedisTemplate.delete(stagingKey);
+                stringRedisTemplate.opsForZSet().add(stagingKey, tuples);
+                stringRedisTemplate.expire(stagingKey, ttlMillis, TimeUnit.MILLISECONDS);
+                stringRedisTemplate.rename(stagingKey, nodeKey);
+            }
+
+            // 实例心跳，清理长时间未发布的实例
+            stringRedisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+            stringRedisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - ttlMillis);
+            Set<String> nodes = stringRedisTemplate.opsForZSet().range(NODES_KEY, 0, -1);
+
+            if (nodes != null && !nodes.isEmpty()) {
+                List<String> nodeKeys = new ArrayList<>(nodes.size());
+                for (String node : nodes) {
+                    nodeKeys.add(NODE_KEY_PREFIX + node);
+                }
+                stringRedisTemplate.opsForZSet().unionAndStore(nodeKeys.get(0), nodeKeys.subList(1, nodeKeys.size()),
+                        GLOBAL_KEY);
+                stringRedisTemplate.expire(GLOBAL_KEY, ttlMillis, TimeUnit.MILLISECONDS);
+            }
+
+            Set<String> top = stringRedisTemplate.opsForZSet().reverseRange(GLOBAL_KEY, 0, GLOBAL_TOP_SIZE - 1);
+            globalTrending = top != null ? Collections.unmodifiableList(new ArrayList<>(top)) : Collections.emptyList();
+
+            logger.debug("热门房间已发布，本地房间数: {}, 实例数: {}, 全局热门数: {}",
+                    scores.size(), nodes != null ? nodes.size() : 0, globalTrending.size());
+
+        } catch (Exception e) {
+            logger.warn("发布热门房间失败，继续使用本地统计", e);
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("nodeId", nodeId);
+        status.put("trackedRooms", counters.size());
+        status.put("globalTrendingSize", globalTrending.size());
+        status.put("windowMinutes", BUCKETS * bucketMillis / 60000);
+        status.put("halfLifeMinutes", halfLifeMillis / 60000);
+        return status;
+    }
+
+    /**
+     * 计算本地所有房间衰减后的热度，同时移除窗口内已无计数的房间
+     */
+    private Map<String, Double> localScores() {
+        long epoch = currentEpoch();
+        int[] slots = new int[BUCKETS];
+        boolean[] valid = new boolean[BUCKETS];
+        for (int age = 0; age < BUCKETS; age++) {
+            slots[age] = slotOf(epoch - age);
+            valid[age] = slotEpochs.get(slots[age]) == epoch - age;
+        }
+
+        Map<String, Double> scores = new HashMap<>(counters.size() * 2);
+        for (Map.Entry<String, RoomCounter> entry : counters.entrySet()) {
+            LongAdder[] buckets = entry.getValue().buckets;
+            double score = 0.0;
+            for (int age = 0; age < BUCKETS; age++) {
+                if (valid[age]) {
+                    score += buckets[slots[age]].sum() * decayByAge[age];
+                }
+            }
+            if (score > 0.0) {
+                scores.put(entry.getKey(), score);
+            } else {
+                counters.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * 把槽切换到新的时间桶并清空所有房间在该槽上的旧计数
+     */
+    private synchronized void advanceTo(long epoch) {
+        int slot = slotOf(epoch);
+        if (slotEpochs.get(slot) >= epoch) {
+            return;
+        }
+        for (RoomCounter counter : counters.values()) {
+            counter.buckets[slot].reset();
+        }
+        slotEpochs.set(slot, epoch);
+    }
+
+    private long currentEpoch() {
+        return System.currentTimeMillis() / bucketMillis;
+    }
+
+    private static int slotOf(long epoch) {
+        return (int) (epoch % SLOTS);
+    }
+
+    private static int weightOf(String behaviorType) {
+        if (behaviorType == null) {
+            return 0;
+        }
+        switch (behaviorType) {
+            case "click":
+                return 2;
+            case "view":
+                return 1;
+            case "book":
+                return 5;
+            default:
+                return 0;
+        }
+    }
+
+    private static final class RoomCounter {
+        private final LongAdder[] buckets = new LongAdder[SLOTS];
+
+        private RoomCounter() {
+            for (int i = 0; i < SLOTS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.demo.service;// ==================== 用户行为服务 ====
 
 import com.alibaba.fastjson.JSON;
 import com.example.demo.dto.UserBehaviorDTO;
+import com.example.demo.index.TagDictionary;
 import com.example.demo.mapper.UserBehaviorMapper;
 import com.example.demo.mapper.UserProfileMapper;
 import com.example.demo.model.Room;
@@ -27,6 +28,16 @@ public class UserBehaviorService {
 //    private RoomRecommendationEngineService recommendationEngineService;
     @Autowired
     private RoomService roomService;
+
+    @Autowired
+    private TrendingRoomService trendingRoomService;
+
+    @Autowired
+    private RoomCoOccurrenceService coOccurrenceService;
+
+    @Autowired
+    private UserVectorIndexService userVectorIndexService;
+
     public void recordBehavior(UserBehaviorDTO behavior) {
         // 记录用户行为到数据库
         UserBehavior record = new UserBehavior();
@@ -40,6 +51,12 @@ public class UserBehaviorService {
 
         userBehaviorMapper.insert(record);
 
+        // 计入热门房间滑动窗口
+        trendingRoomService.recordEvent(behavior.getRoomId(), behavior.getBehaviorType());
+
+        // 计入会话共现矩阵
+        coOccurrenceService.recordEvent(behavior.getUserId(), behavior.getRoomId(), behavior.getBehaviorType());
+
         // 异步更新用户画像
         CompletableFuture.runAsync(() -> {
             updateUserProfileFromBehavior(behavior);
@@ -76,7 +93,7 @@ public class UserBehaviorService {
 
         // 基于价格等级更新偏好
         int priceLevel = calculatePriceLevel(room.getRoomPrice());
-        String priceTag = "price_level_" + priceLevel;
+        String priceTag = TagDictionary.priceLevelTag(priceLevel);
         currentTags.put(priceTag, currentTags.getOrDefault(priceTag, 0.0) + 0.03);
 
         // 基于房间类型更新偏好
@@ -90,6 +107,7 @@ public class UserBehaviorService {
         profile.setLastUpdated(new Timestamp(System.currentTimeMillis()));
 
         userProfileMapper.updateById(profile);
+        userVectorIndexService.onProfileUpdated(profile);
     }
 
     private int calculatePriceLevel(Double price) {
@@ -0,0 +1,204 @@
+package com.example.demo.service;
+
+import com.example.demo.index.RoomFeatureMatrix;
+import com.example.demo.index.UserVectorIndex;
+import com.example.demo.mapper.UserBehaviorMapper;
+import com.example.demo.mapper.UserProfileMapper;
+import com.example.demo.model.UserProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 相似用户检索服务
+ * 在内存中维护全部用户画像向量的量化索引（见{@link UserVectorIndex}），
+ * 定期通过分页查询全量重建，画像写入时增量更新，替代与向量无关的selectSimilarUsers SQL。
+ * 相似用户近期点击、预订过的房间作为基于用户的协同过滤召回源。
+ */
+@Service
+public class UserVectorIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserVectorIndexService.class);
+
+    // 协同召回只看相似用户最近一段时间的行为
+    private static final long COLLABORATIVE_WINDOW_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    @Autowired
+    private UserProfileMapper userProfileMapper;
+
+    @Autowired
+    private UserBehaviorMapper userBehaviorMapper;
+
+    // 索引容量上限，超出后新用户不再写入；每个用户约占40~70字节（编码、用户ID与映射表）
+    @Value("${recommendation.user-index.max-users:2000000}")
+    private int maxUsers;
+
+    @Value("${recommendation.user-index.page-size:1000}")
+    private int pageSize;
+
+    private volatile UserVectorIndex index;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    // 重建期间到达的画像更新，在新索引发布前重放
+    private final Map<Long, Double[]> pendingUpdates = new LinkedHashMap<>();
+
+    private volatile long lastBuildMillis;
+
+    private volatile long lastBuiltAt;
+
+    private volatile int rejected;
+
+    /**
+     * 定期全量重建，启动后稍作延迟执行第一次，不阻塞应用启动
+     */
+    @Scheduled(fixedDelayString = "${recommendation.user-index.refresh-interval-millis:3600000}",
+            initialDelayString = "${recommendation.user-index.initial-delay-millis:30000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * 按user_id游标分页读取全部用户画像构建新索引，完成后整体替换
+     * @return 是否重建成功（已有重建任务在执行或重建失败时返回false）
+     */
+    public boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            synchronized (pendingUpdates) {
+                pendingUpdates.clear();
+            }
+            UserVectorIndex built = new UserVectorIndex(RoomFeatureMatrix.DEFAULT_DIMENSION, maxUsers);
+            int loaded = 0;
+            int skipped = 0;
+            long lastUserId = Long.MIN_VALUE;
+            while (true) {
+                List<UserProfile> page = userProfileMapper.selectProfilesAfterUserId(lastUserId, pageSize);
+                for (UserProfile profile : page) {
+                    if (profile.getUserId() != null && built.upsert(profile.getUserId(), profile.getProfileVector())) {
+                        loaded++;
+                    } else {
+                        skipped++;
+                    }
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                lastUserId = page.get(page.size() - 1).getUserId();
+            }
+
+            synchronized (pendingUpdates) {
+                for (Map.Entry<Long, Double[]> update : pendingUpdates.entrySet()) {
+                    built.upsert(update.getKey(), update.getValue());
+                }
+                pendingUpdates.clear();
+                index = built;
+            }
+
+            lastBuildMillis = System.currentTimeMillis() - start;
+            lastBuiltAt = System.currentTimeMillis();
+            rejected = skipped;
+            logger.info("用户向量索引重建完成，用户数: {}, 跳过(零向量或超出容量): {}, 占用: {} KB, 耗时: {} ms",
+                    loaded, skipped, built.getSizeInBytes() / 1024, lastBuildMillis);
+            return true;
+
+        } catch (Exception e) {
+            logger.error("用户向量索引重建失败，继续使用旧索引", e);
+            return false;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 画像写入后调用，同步更新索引
+     */
+    public void onProfileUpdated(UserProfile profile) {
+        if (profile == null || profile.getUserId() == null) {
+            return;
+        }
+        try {
+            synchronized (pendingUpdates) {
+                if (rebuilding.get()) {
+                    pendingUpdates.put(profile.getUserId(), profile.getProfileVector());
+                }
+                UserVectorIndex current = index;
+                if (current != null) {
+                    current.upsert(profile.getUserId(), profile.getProfileVector());
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("更新用户向量索引失败，用户ID: {}", profile.getUserId(), e);
+        }
+    }
+
+    /**
+     * 画像向量余弦相似度最高的k个其他用户，索引尚未构建时返回空列表
+     */
+    public List<Long> findSimilarUsers(UserProfile profile, int k) {
+        UserVectorIndex current = index;
+        if (current == null || profile == null || k <= 0) {
+            return Collections.emptyList();
+        }
+        long[] userIds = new long[k];
+        long exclude = profile.getUserId() != null ? profile.getUserId() : Long.MIN_VALUE;
+        int found = current.search(profile.getProfileVector(), k, exclude, userIds, null);
+        List<Long> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(userIds[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 基于用户的协同召回：相似用户近期点击、预订次数最多的房间
+     */
+    public List<String> findRoomsOfSimilarUsers(UserProfile profile, int userLimit, int roomLimit) {
+        List<Long> similarUsers = findSimilarUsers(profile, userLimit);
+        if (similarUsers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Timestamp since = new Timestamp(System.currentTimeMillis() - COLLABORATIVE_WINDOW_MILLIS);
+        List<Map<String, Object>> rows = userBehaviorMapper.findRoomsInteractedByUsers(similarUsers, since, roomLimit);
+        List<String> roomIds = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Object roomId = row.get("room_id");
+            if (roomId != null) {
+                roomIds.add(roomId.toString());
+            }
+        }
+        return roomIds;
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> getStatus() {
+        UserVectorIndex current = index;
+        Map<String, Object> status = new HashMap<>();
+        status.put("ready", current != null);
+        status.put("users", current != null ? current.size() : 0);
+        status.put("sizeInBytes", current != null ? current.getSizeInBytes() : 0L);
+        status.put("maxUsers", maxUsers);
+        status.put("rebuilding", rebuilding.get());
+        status.put("lastBuildMillis", lastBuildMillis);
+        status.put("lastBuiltAt", lastBuiltAt);
+        status.put("rejected", rejected);
+        return status;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.handler;
+
+import org.apache.ibatis.type.JdbcType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DoubleArrayTypeHandlerTest {
+
+    private static final Double[] DEFAULT_VECTOR = {0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0};
+
+    private final DoubleArrayTypeHandler handler = new DoubleArrayTypeHandler();
+
+    @Test
+    void readsJsonColumn() throws SQLException {
+        assertArrayEquals(new Double[]{0.5, -1.0, 0.0}, read("[0.5,-1,null]".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void readsBinaryColumn() throws SQLException {
+        byte[] data = VectorCodec.toBinary(new Double[]{0.5, -1.0, 0.25});
+        assertArrayEquals(new Double[]{0.5, -1.0, 0.25}, read(data));
+    }
+
+    @Test
+    void jsonAndBinaryRowsCanShareAColumn() throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getBytes(1))
+                .thenReturn("[1.5,2]".getBytes(StandardCharsets.UTF_8))
+                .thenReturn(VectorCodec.toBinary(new Double[]{1.5, 2.0}));
+        assertArrayEquals(new Double[]{1.5, 2.0}, handler.getNullableResult(rs, 1));
+        assertArrayEquals(new Double[]{1.5, 2.0}, handler.getNullableResult(rs, 1));
+    }
+
+    @Test
+    void fallsBackToZeroVector() throws SQLException {
+        assertArrayEquals(DEFAULT_VECTOR, read(null));
+        assertArrayEquals(DEFAULT_VECTOR, read(new byte[0]));
+        assertArrayEquals(DEFAULT_VECTOR, read("[]".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(DEFAULT_VECTOR, read("not a vector".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void writesConfiguredFormat() throws SQLException {
+        Double[] vector = {0.5, -1.0};
+
+        PreparedStatement json = mock(PreparedStatement.class);
+        new DoubleArrayTypeHandler(false).setNonNullParameter(json, 1, vector, JdbcType.VARCHAR);
+        verify(json).setString(1, "[0.5,-1.0]");
+        verify(json, never()).setBytes(anyInt(), any());
+
+        PreparedStatement binary = mock(PreparedStatement.class);
+        new DoubleArrayTypeHandler(true).setNonNullParameter(binary, 2, vector, JdbcType.VARBINARY);
+        verify(binary).setBytes(2, VectorCodec.toBinary(vector));
+        verify(binary, never()).setString(anyInt(), anyString());
+    }
+
+    private Double[] read(byte[] column) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getBytes("vector")).thenReturn(column);
+        return handler.getNullableResult(rs, "vector");
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.demo.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VectorCodecTest {
+
+    @Test
+    void parsesLikeDoubleParseDouble() {
+        String[] numbers = {
+                "0", "-0", "0.0", "-0.0", "1", "-1", "0.1", "0.2", "0.3", "-0.75", "123.456",
+                "0.000001", "1e-7", "1E10", "-2.5e+3", "6.02214076e23", "4.9e-324", "1.7976931348623157e308",
+                "0.1234567890123456789", "12345678901234567890", "3.14159265358979323846",
+                "0.00000000000000000000000123", "999999999999999.9", "1000000000000000.1",
+                "00012.5", "0.30000000000000004"
+        };
+        for (String number : numbers) {
+            assertParsesExactly(number);
+        }
+
+        Random random = new Random(17);
+        for (int i = 0; i < 50_000; i++) {
+            double value = switch (i % 4) {
+                case 0 -> random.nextDouble();
+                case 1 -> (random.nextDouble() - 0.5) * 1000;
+                case 2 -> Math.round(random.nextDouble() * 1e6) / 1e6;
+                default -> random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+            };
+            assertParsesExactly(Double.toString(value));
+            assertParsesExactly(String.format(Locale.ROOT, "%.3f", value));
+        }
+    }
+
+    @Test
+    void negativeZeroKeepsSign() {
+        double[] out = new double[1];
+        VectorCodec.parseJson("[-0]", out, 0, 1);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(out[0]));
+        VectorCodec.parseJson("[-0.000]", out, 0, 1);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(out[0]));
+    }
+
+    @Test
+    void nullElementsAndEmptyInput() {
+        double[] out = new double[3];
+        assertEquals(3, VectorCodec.parseJson("[1.5, null ,2]", out, 0, 3));
+        assertArrayEquals(new double[]{1.5, 0.0, 2.0}, out);
+
+        assertEquals(0, VectorCodec.parseJson("", out, 0, 3));
+        assertEquals(0, VectorCodec.parseJson("  null ", out, 0, 3));
+        assertEquals(0, VectorCodec.parseJson("[ ]", out, 0, 3));
+        assertEquals(0, VectorCodec.parseJsonBoxed("null").length);
+        assertEquals(0, VectorCodec.jsonLength(null));
+        assertEquals(0, VectorCodec.jsonLength("[]"));
+        assertEquals(3, VectorCodec.jsonLength("[1, null, 2e3]"));
+    }
+
+    @Test
+    void writesOnlyRequestedRange() {
+        double[] out = {9, 9, 9, 9};
+        assertEquals(3, VectorCodec.parseJson("[1,2,3]", out, 1, 2));
+        assertArrayEquals(new double[]{9, 1, 2, 9}, out);
+
+        float[] floats = new float[2];
+        assertEquals(2, VectorCodec.parseJson("[0.5,-0.25]", floats, 0, 2));
+        assertArrayEquals(new float[]{0.5f, -0.25f}, floats);
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        String[] malformed = {"1,2", "[1,2", "[1 2]", "[1,,2]", "[,1]", "[1,]", "[.5]", "[1.]", "[1e]",
+                "[-]", "[abc]", "[1] x", "[\"1\"]", "[nul]", "{1}"};
+        double[] out = new double[8];
+        for (String json : malformed) {
+            assertThrows(IllegalArgumentException.class, () -> VectorCodec.parseJson(json, out, 0, out.length),
+                    json);
+        }
+    }
+
+    @Test
+    void jsonRoundTrip() {
+        Double[] vector = {0.1, -2.5, null, 1e-9, 123456.789};
+        Double[] decoded = VectorCodec.parseJsonBoxed(VectorCodec.toJson(vector));
+        assertArrayEquals(new Double[]{0.1, -2.5, 0.0, 1e-9, 123456.789}, decoded);
+
+        double[] raw = {3, 0.25, -1};
+        assertEquals("[0.25,-1.0]", VectorCodec.toJson(raw, 1, 2));
+    }
+
+    @Test
+    void binaryRoundTrip() {
+        Double[] vector = {0.1, -2.5, null, 1e-9, 123456.789, -0.0};
+        byte[] data = VectorCodec.toBinary(vector);
+        assertTrue(VectorCodec.isBinary(data));
+        assertEquals(1 + vector.length * Float.BYTES, data.length);
+        assertEquals(vector.length, VectorCodec.binaryLength(data));
+
+        Double[] decoded = VectorCodec.decodeBoxed(data);
+        assertEquals(vector.length, decoded.length);
+        for (int i = 0; i < vector.length; i++) {
+            double expected = vector[i] != null ? (double) vector[i].floatValue() : 0.0;
+            assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(decoded[i]));
+        }
+
+        double[] raw = {1.0, 2.0, 3.0, 4.0};
+        byte[] partial = VectorCodec.toBinary(raw, 1, 2);
+        float[] floats = new float[1];
+        assertEquals(2, VectorCodec.parseBinary(partial, floats, 0, 1));
+        assertEquals(2.0f, floats[0]);
+
+        // float32的每一个位模式都原样往返
+        Random random = new Random(5);
+        double[] out = new double[1];
+        for (int i = 0; i < 10_000; i++) {
+            float value = Float.intBitsToFloat(random.nextInt());
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            VectorCodec.parseBinary(VectorCodec.toBinary(new Double[]{(double) value}), out, 0, 1);
+            assertEquals(value, (float) out[0]);
+        }
+    }
+
+    @Test
+    void detectsFormatFromContent() {
+        byte[] json = "[1.5,2]".getBytes(StandardCharsets.US_ASCII);
+        assertFalse(VectorCodec.isBinary(json));
+        assertFalse(VectorCodec.isBinary(new byte[0]));
+        assertFalse(VectorCodec.isBinary(null));
+        assertArrayEquals(new Double[]{1.5, 2.0}, VectorCodec.decodeBoxed(json));
+        assertArrayEquals(new Double[]{1.5, 2.0},
+                VectorCodec.decodeBoxed(" [1.5, 2]\n".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(0, VectorCodec.decodeBoxed(null).length);
+        assertThrows(IllegalArgumentException.class,
+                () -> VectorCodec.decodeBoxed("[1,x]".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static void assertParsesExactly(String number) {
+        double[] out = new double[1];
+        VectorCodec.parseJson("[" + number + "]", out, 0, 1);
+        double expected = Double.parseDouble(number);
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(out[0]),
+                () -> number + " 解析为 " + out[0] + "，期望 " + expected);
+    }
+}
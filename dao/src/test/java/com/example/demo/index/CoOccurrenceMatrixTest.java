@@ -0,0 +1,231 @@
+package com.example.demo.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoOccurrenceMatrixTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void countsAreSymmetricAndMatchPairCounts() {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(1000);
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int session = 0; session < 300; session++) {
+            List<String> seen = new ArrayList<>();
+            for (int event = 0; event < 1 + random.nextInt(8); event++) {
+                String room = "room-" + random.nextInt(40);
+                if (seen.contains(room)) {
+                    continue;
+                }
+                matrix.addCoOccurrences(room, seen);
+                for (String other : seen) {
+                    expected.merge(pairKey(room, other), 1, Integer::sum);
+                }
+                seen.add(room);
+            }
+        }
+
+        long entries = 0;
+        for (int a = 0; a < matrix.size(); a++) {
+            for (int b = 0; b < matrix.size(); b++) {
+                int count = matrix.count(a, b);
+                assertEquals(matrix.count(b, a), count);
+                int want = a == b ? 0
+                        : expected.getOrDefault(pairKey(matrix.roomIdOf(a), matrix.roomIdOf(b)), 0);
+                assertEquals(want, count, matrix.roomIdOf(a) + "/" + matrix.roomIdOf(b));
+                if (count > 0) {
+                    entries++;
+                }
+            }
+        }
+        assertEquals(entries, matrix.entryCount());
+    }
+
+    @Test
+    void neighboursAreSortedAndUnique() {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(10);
+        matrix.addCoOccurrences("a", Arrays.asList("c", "b", "c", "a", null));
+        matrix.addCoOccurrences("b", Collections.singletonList("c"));
+
+        int a = matrix.ordinalOf("a");
+        int b = matrix.ordinalOf("b");
+        int c = matrix.ordinalOf("c");
+        assertEquals(1, matrix.count(a, b));
+        assertEquals(1, matrix.count(a, c));
+        assertEquals(1, matrix.count(b, c));
+        assertEquals(0, matrix.count(a, a));
+
+        int[] ordinals = new int[matrix.maxRowSize()];
+        int[] counts = new int[matrix.maxRowSize()];
+        assertEquals(2, matrix.neighbours(a, ordinals, counts));
+        int n = matrix.neighbours(c, ordinals, counts);
+        assertEquals(2, n);
+        assertTrue(ordinals[0] < ordinals[1]);
+        assertEquals(-1, matrix.ordinalOf("missing"));
+        assertEquals(0, matrix.neighbours(-1, ordinals, counts));
+    }
+
+    @Test
+    void rowIsCappedAtTwiceTheLimitAndPrunedToTopN() {
+        int limit = 5;
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(limit);
+        // hub与neighbour-i共现i+1次，邻居数逐渐超过上限
+        for (int i = 0; i < 2 * limit; i++) {
+            for (int repeat = 0; repeat <= i; repeat++) {
+                matrix.addCoOccurrences("hub", Collections.singletonList("neighbour-" + i));
+            }
+        }
+        int hub = matrix.ordinalOf("hub");
+        int[] ordinals = new int[matrix.maxRowSize()];
+        int[] counts = new int[matrix.maxRowSize()];
+        assertEquals(2 * limit, matrix.neighbours(hub, ordinals, counts));
+
+        // 再多一个邻居就超过maxRowSize，写入时立即裁剪到limit
+        matrix.addCoOccurrences("hub", Collections.singletonList("neighbour-new"));
+        int n = matrix.neighbours(hub, ordinals, counts);
+        assertEquals(limit, n);
+        for (int i = 0; i < n; i++) {
+            String room = matrix.roomIdOf(ordinals[i]);
+            int index = Integer.parseInt(room.substring("neighbour-".length()));
+            assertTrue(index >= limit, "保留的应是共现次数最高的邻居: " + room);
+            assertEquals(index + 1, counts[i]);
+        }
+
+        // prune把未触发写入裁剪的行裁到limit
+        CoOccurrenceMatrix other = new CoOccurrenceMatrix(limit);
+        for (int i = 0; i < 2 * limit; i++) {
+            for (int repeat = 0; repeat <= i; repeat++) {
+                other.addCoOccurrences("hub", Collections.singletonList("neighbour-" + i));
+            }
+        }
+        assertEquals(limit, other.prune());
+        assertEquals(limit, other.neighbours(other.ordinalOf("hub"), ordinals, counts));
+        assertEquals(0, other.prune());
+    }
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        CoOccurrenceMatrix matrix = randomMatrix(20);
+        assertTrue(matrix.isDirty());
+        Path path = tempDir.resolve("cooccurrence.snap");
+        matrix.write(path);
+        assertFalse(matrix.isDirty());
+
+        CoOccurrenceMatrix restored = CoOccurrenceMatrix.read(path, 20);
+        assertEquals(matrix.size(), restored.size());
+        assertEquals(matrix.entryCount(), restored.entryCount());
+        int[] expectedOrdinals = new int[matrix.maxRowSize()];
+        int[] expectedCounts = new int[matrix.maxRowSize()];
+        int[] actualOrdinals = new int[restored.maxRowSize()];
+        int[] actualCounts = new int[restored.maxRowSize()];
+        for (int ordinal = 0; ordinal < matrix.size(); ordinal++) {
+            assertEquals(matrix.roomIdOf(ordinal), restored.roomIdOf(ordinal));
+            assertEquals(ordinal, restored.ordinalOf(matrix.roomIdOf(ordinal)));
+            int n = matrix.neighbours(ordinal, expectedOrdinals, expectedCounts);
+            assertEquals(n, restored.neighbours(ordinal, actualOrdinals, actualCounts));
+            assertArrayEquals(Arrays.copyOf(expectedOrdinals, n), Arrays.copyOf(actualOrdinals, n));
+            assertArrayEquals(Arrays.copyOf(expectedCounts, n), Arrays.copyOf(actualCounts, n));
+        }
+
+        // 以更小的上限读取时按当前配置裁剪
+        CoOccurrenceMatrix smaller = CoOccurrenceMatrix.read(path, 2);
+        for (int ordinal = 0; ordinal < smaller.size(); ordinal++) {
+            assertTrue(smaller.neighbours(ordinal, actualOrdinals, actualCounts) <= smaller.maxRowSize());
+        }
+    }
+
+    @Test
+    void corruptedSnapshotIsRejected() throws IOException {
+        Path path = tempDir.resolve("cooccurrence.snap");
+        randomMatrix(20).write(path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        // 改动最后一个共现计数
+        byte[] corrupted = bytes.clone();
+        corrupted[corrupted.length - Long.BYTES - 1] ^= 0x01;
+        Files.write(path, corrupted);
+        IOException e = assertThrows(IOException.class, () -> CoOccurrenceMatrix.read(path, 20));
+        assertTrue(e.getMessage().contains("校验失败"), e.getMessage());
+
+        // 缺少末尾校验和
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThrows(IOException.class, () -> CoOccurrenceMatrix.read(path, 20));
+
+        // 文件头不对
+        corrupted = bytes.clone();
+        corrupted[0] = 0;
+        Files.write(path, corrupted);
+        assertThrows(IOException.class, () -> CoOccurrenceMatrix.read(path, 20));
+    }
+
+    @Test
+    void snapshotWrittenDuringConcurrentUpdatesIsConsistent() throws Exception {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(1000);
+        Path path = tempDir.resolve("cooccurrence.snap");
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            Random random = new Random(3);
+            while (running.get()) {
+                matrix.addCoOccurrences("room-" + random.nextInt(50),
+                        Arrays.asList("room-" + random.nextInt(50), "room-" + random.nextInt(50)));
+            }
+        });
+        writer.start();
+        try {
+            for (int round = 0; round < 20; round++) {
+                matrix.write(path);
+                // 行引用在同一把锁内取下，快照中的计数仍然两两对称
+                CoOccurrenceMatrix restored = CoOccurrenceMatrix.read(path, 1000);
+                for (int a = 0; a < restored.size(); a++) {
+                    for (int b = 0; b < restored.size(); b++) {
+                        assertEquals(restored.count(a, b), restored.count(b, a));
+                    }
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    private static CoOccurrenceMatrix randomMatrix(int maxNeighbours) {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(maxNeighbours);
+        Random random = new Random(7);
+        for (int session = 0; session < 500; session++) {
+            List<String> seen = new ArrayList<>();
+            for (int event = 0; event < 6; event++) {
+                String room = "房间-" + random.nextInt(100);
+                if (!seen.contains(room)) {
+                    matrix.addCoOccurrences(room, seen);
+                    seen.add(room);
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private static String pairKey(String a, String b) {
+        return a.compareTo(b) < 0 ? a + "|" + b : b + "|" + a;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.demo.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedBitmapTest {
+
+    // 每个桶覆盖65536个值，超过4096个元素时由数组桶转为位图桶
+    private static final int CHUNK = 1 << 16;
+
+    @Test
+    void addAndRemoveAcrossContainerConversion() {
+        BitSet expected = new BitSet();
+        CompressedBitmap bitmap = new CompressedBitmap();
+        // 同一个桶内连续写入超过数组桶上限，再删回上限以下
+        for (int value = CHUNK; value < CHUNK + 5000; value++) {
+            bitmap.add(value);
+            expected.set(value);
+        }
+        assertMatches(expected, bitmap);
+        for (int value = CHUNK; value < CHUNK + 2000; value++) {
+            bitmap.remove(value);
+            expected.clear(value);
+        }
+        assertMatches(expected, bitmap);
+        assertTrue(bitmap.contains(CHUNK + 4999));
+        assertFalse(bitmap.contains(CHUNK + 1999));
+    }
+
+    @Test
+    void orMatchesBitSet() {
+        Random random = new Random(3);
+        for (int round = 0; round < 20; round++) {
+            List<BitSet> sets = new ArrayList<>();
+            List<CompressedBitmap> bitmaps = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                BitSet set = randomSet(random);
+                sets.add(set);
+                bitmaps.add(toBitmap(set));
+            }
+            BitSet expected = new BitSet();
+            for (BitSet set : sets) {
+                expected.or(set);
+            }
+            assertMatches(expected, CompressedBitmap.or(bitmaps));
+            BitSet pair = (BitSet) sets.get(0).clone();
+            pair.or(sets.get(1));
+            assertMatches(pair, CompressedBitmap.or(bitmaps.get(0), bitmaps.get(1)));
+        }
+    }
+
+    @Test
+    void andMatchesBitSet() {
+        Random random = new Random(5);
+        for (int round = 0; round < 20; round++) {
+            BitSet a = randomSet(random);
+            BitSet b = randomSet(random);
+            BitSet expected = (BitSet) a.clone();
+            expected.and(b);
+            assertMatches(expected, CompressedBitmap.and(toBitmap(a), toBitmap(b)));
+        }
+    }
+
+    @Test
+    void thresholdUnionMatchesCounting() {
+        Random random = new Random(9);
+        for (int round = 0; round < 10; round++) {
+            int inputs = 2 + random.nextInt(6);
+            List<BitSet> sets = new ArrayList<>();
+            List<CompressedBitmap> bitmaps = new ArrayList<>();
+            for (int i = 0; i < inputs; i++) {
+                BitSet set = randomSet(random);
+                sets.add(set);
+                bitmaps.add(toBitmap(set));
+            }
+            for (int threshold = 1; threshold <= inputs + 1; threshold++) {
+                assertMatches(atLeast(sets, threshold), CompressedBitmap.thresholdUnion(bitmaps, threshold));
+            }
+        }
+    }
+
+    @Test
+    void chunkBoundaryValues() {
+        int[] values = {0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 2 * CHUNK - 1, 2 * CHUNK, 5 * CHUNK + 7};
+        CompressedBitmap bitmap = CompressedBitmap.of(values);
+        assertArrayEquals(values, bitmap.toArray());
+        assertEquals(values.length, bitmap.getCardinality());
+
+        CompressedBitmap other = CompressedBitmap.of(CHUNK - 1, CHUNK, 3 * CHUNK);
+        assertArrayEquals(new int[]{CHUNK - 1, CHUNK}, CompressedBitmap.and(bitmap, other).toArray());
+        assertArrayEquals(new int[]{0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 2 * CHUNK - 1, 2 * CHUNK, 3 * CHUNK,
+                5 * CHUNK + 7}, CompressedBitmap.or(bitmap, other).toArray());
+        assertTrue(CompressedBitmap.or(new ArrayList<>()).isEmpty());
+    }
+
+    /**
+     * 每个桶随机选择稀疏（数组桶）或稠密（位图桶），桶边界附近额外放一些值
+     */
+    private static BitSet randomSet(Random random) {
+        BitSet set = new BitSet();
+        for (int chunk = 0; chunk < 4; chunk++) {
+            int base = chunk * CHUNK;
+            int kind = random.nextInt(3);
+            if (kind == 0) {
+                continue;
+            }
+            int count = kind == 1 ? random.nextInt(200) : 4096 + random.nextInt(20000);
+            for (int i = 0; i < count; i++) {
+                set.set(base + random.nextInt(CHUNK));
+            }
+            if (random.nextBoolean()) {
+                set.set(base);
+                set.set(base + CHUNK - 1);
+            }
+        }
+        return set;
+    }
+
+    private static BitSet atLeast(List<BitSet> sets, int threshold) {
+        int[] counts = new int[4 * CHUNK];
+        for (BitSet set : sets) {
+            for (int value = set.nextSetBit(0); value >= 0; value = set.nextSetBit(value + 1)) {
+                counts[value]++;
+            }
+        }
+        BitSet result = new BitSet();
+        for (int value = 0; value < counts.length; value++) {
+            if (counts[value] >= threshold) {
+                result.set(value);
+            }
+        }
+        return result;
+    }
+
+    private static CompressedBitmap toBitmap(BitSet set) {
+        return CompressedBitmap.of(set.stream().toArray());
+    }
+
+    private static void assertMatches(BitSet expected, CompressedBitmap actual) {
+        int[] values = expected.stream().toArray();
+        assertEquals(values.length, actual.getCardinality());
+        assertArrayEquals(values, actual.toArray(), () -> "差异: " + diff(values, actual.toArray()));
+        for (int value : values) {
+            assertTrue(actual.contains(value));
+        }
+    }
+
+    private static String diff(int[] expected, int[] actual) {
+        BitSet missing = new BitSet();
+        Arrays.stream(expected).forEach(missing::set);
+        Arrays.stream(actual).forEach(missing::flip);
+        return missing.stream().limit(10).boxed().toList().toString();
+    }
+}
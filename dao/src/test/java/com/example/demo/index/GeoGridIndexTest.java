@@ -0,0 +1,158 @@
+package com.example.demo.index;
+
+import com.example.demo.model.RoomFeatures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoGridIndexTest {
+
+    @Test
+    void withinRadiusMatchesBruteForce() {
+        Random random = new Random(11);
+        List<RoomFeatures> rooms = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            rooms.add(room("room-" + i, 116.0 + random.nextDouble() * 0.8, 39.6 + random.nextDouble() * 0.6));
+        }
+        rooms.add(room("no-location", null, null));
+        RoomFeatureMatrix matrix = RoomFeatureMatrix.build(rooms, new TagDictionary());
+        GeoGridIndex index = GeoGridIndex.build(matrix);
+        assertEquals(2000, index.size());
+
+        int[] rows = new int[100];
+        double[] distances = new double[100];
+        for (int q = 0; q < 50; q++) {
+            double latitude = 39.6 + random.nextDouble() * 0.6;
+            double longitude = 116.0 + random.nextDouble() * 0.8;
+            double radiusKm = 0.5 + random.nextDouble() * 8;
+            int found = index.withinRadius(matrix, latitude, longitude, radiusKm, rows.length, rows, distances);
+
+            double[] expected = bruteForceDistances(matrix, latitude, longitude, radiusKm);
+            assertEquals(Math.min(expected.length, rows.length), found, "query " + q);
+            for (int i = 0; i < found; i++) {
+                assertEquals(expected[i], distances[i], 1e-9);
+                assertEquals(GeoGridIndex.distanceKm(latitude, longitude, matrix.getLatitude(rows[i]),
+                        matrix.getLongitude(rows[i])), distances[i], 1e-9);
+            }
+        }
+        assertEquals(0, index.withinRadius(matrix, 39.9, 116.4, 0, 10, rows, null));
+        assertEquals(0, index.withinRadius(matrix, 39.9, 116.4, 5, 0, rows, null));
+    }
+
+    @Test
+    void nearestDoublesRadiusUntilEnoughRooms() {
+        // 同一经线上向北依次约1、5、20、80公里
+        double[] offsetsKm = {1, 5, 20, 80};
+        List<RoomFeatures> rooms = new ArrayList<>();
+        for (int i = 0; i < offsetsKm.length; i++) {
+            rooms.add(room("room-" + i, 116.0, 30.0 + offsetsKm[i] / 111.2));
+        }
+        RoomFeatureMatrix matrix = RoomFeatureMatrix.build(rooms, new TagDictionary());
+        GeoGridIndex index = GeoGridIndex.build(matrix);
+
+        int[] rows = new int[4];
+        double[] distances = new double[4];
+        assertEquals(3, index.nearest(matrix, 30.0, 116.0, 3, 100, rows, distances));
+        assertArrayEquals(new int[]{0, 1, 2}, Arrays.copyOf(rows, 3));
+        assertEquals(20, distances[2], 0.1);
+
+        // 最大半径限制了扩展范围
+        assertEquals(2, index.nearest(matrix, 30.0, 116.0, 3, 10, rows, distances));
+        assertEquals(4, index.nearest(matrix, 30.0, 116.0, 10, 1000, rows, distances));
+        assertEquals(80, distances[3], 0.3);
+    }
+
+    @Test
+    void withRowIsCopyOnWrite() {
+        List<RoomFeatures> rooms = new ArrayList<>();
+        rooms.add(room("a", 116.40, 39.90));
+        rooms.add(room("b", 116.41, 39.90));
+        RoomFeatureMatrix matrix = RoomFeatureMatrix.build(rooms, new TagDictionary());
+        GeoGridIndex index = GeoGridIndex.build(matrix);
+        int[] rows = new int[4];
+
+        // 移动到约50公里外
+        RoomFeatureMatrix moved = matrix.withRow(room("b", 117.0, 39.90), new TagDictionary());
+        int row = moved.rowOf("b");
+        GeoGridIndex updated = index.withRow(matrix, moved, row);
+        assertEquals(2, updated.size());
+        assertEquals(1, updated.withinRadius(moved, 39.90, 116.40, 5, 4, rows, null));
+        assertEquals(0, rows[0]);
+        assertEquals(1, updated.withinRadius(moved, 39.90, 117.0, 5, 4, rows, null));
+        assertEquals(row, rows[0]);
+        // 旧实例不受影响
+        assertEquals(2, index.withinRadius(matrix, 39.90, 116.40, 5, 4, rows, null));
+
+        // 下线只做移除，新增房间追加
+        RoomFeatureMatrix removed = moved.withoutRow("a");
+        GeoGridIndex afterRemoval = updated.withRow(moved, removed, removed.findRow("a"));
+        assertEquals(1, afterRemoval.size());
+        assertEquals(0, afterRemoval.withinRadius(removed, 39.90, 116.40, 5, 4, rows, null));
+        RoomFeatureMatrix grown = removed.withRow(room("c", 116.40, 39.90), new TagDictionary());
+        GeoGridIndex afterAdd = afterRemoval.withRow(removed, grown, grown.rowOf("c"));
+        assertEquals(2, afterAdd.size());
+        assertEquals(1, afterAdd.withinRadius(grown, 39.90, 116.40, 5, 4, rows, null));
+        assertEquals(grown.rowOf("c"), rows[0]);
+        assertEquals(1, afterRemoval.size());
+        assertSame(afterAdd, afterAdd.withRow(grown, grown, -1));
+    }
+
+    @Test
+    void queriesWrapAroundAntimeridian() {
+        List<RoomFeatures> rooms = new ArrayList<>();
+        rooms.add(room("east", 179.995, 0.0));
+        rooms.add(room("west", -179.995, 0.0));
+        rooms.add(room("dateline", 180.0, 0.0));
+        rooms.add(room("far", 170.0, 0.0));
+        // 其他地区的房间占据足够多的网格，查询走按网格访问的路径而不是遍历全部网格
+        for (int i = 0; i < 500; i++) {
+            rooms.add(room("filler-" + i, 100.0 + i * 0.05, 30.0));
+        }
+        RoomFeatureMatrix matrix = RoomFeatureMatrix.build(rooms, new TagDictionary());
+        GeoGridIndex index = GeoGridIndex.build(matrix);
+        int[] rows = new int[4];
+        double[] distances = new double[4];
+
+        // 两侧各约0.56公里，与180°经线上的房间都应命中
+        assertEquals(3, index.withinRadius(matrix, 0.0, 179.999, 2, 4, rows, distances));
+        assertEquals(3, index.withinRadius(matrix, 0.0, -179.999, 2, 4, rows, distances));
+        assertTrue(distances[2] < 1.0);
+        assertEquals(3, index.nearest(matrix, 0.0, -179.9999, 3, 50, rows, distances));
+        assertEquals(1, index.withinRadius(matrix, 0.0, -180.0 + 0.001, 0.2, 4, rows, distances));
+        assertEquals(matrix.rowOf("dateline"), rows[0]);
+    }
+
+    private static double[] bruteForceDistances(RoomFeatureMatrix matrix, double latitude, double longitude,
+                                                double radiusKm) {
+        List<Double> distances = new ArrayList<>();
+        for (int row = 0; row < matrix.size(); row++) {
+            if (!matrix.hasLocation(row)) {
+                continue;
+            }
+            double distance = GeoGridIndex.distanceKm(latitude, longitude, matrix.getLatitude(row),
+                    matrix.getLongitude(row));
+            if (distance <= radiusKm) {
+                distances.add(distance);
+            }
+        }
+        return distances.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+    }
+
+    private static RoomFeatures room(String roomId, Double longitude, Double latitude) {
+        RoomFeatures room = new RoomFeatures();
+        room.setRoomId(roomId);
+        room.setFeatureVector("[1,0,0,0,0,0,0,0,0,0]");
+        room.setTags("[]");
+        room.setLongitude(longitude);
+        room.setLatitude(latitude);
+        return room;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.demo.index;
+
+import com.example.demo.model.RoomFeatures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = RoomFeatureMatrix.DEFAULT_DIMENSION;
+
+    @Test
+    void searchRecallMatchesBruteForce() {
+        Random random = new Random(7);
+        double[][] vectors = randomVectors(random, 2000);
+        RoomFeatureMatrix matrix = matrixOf(vectors);
+        HnswIndex index = HnswIndex.build(matrix);
+        assertEquals(vectors.length, index.size());
+
+        int k = 10;
+        int queries = 100;
+        int hits = 0;
+        int[] ids = new int[k];
+        double[] scores = new double[k];
+        for (int q = 0; q < queries; q++) {
+            double[] query = randomVector(random);
+            int count = index.search(query, k, HnswIndex.DEFAULT_EF_SEARCH, ids, scores);
+            assertEquals(k, count);
+            for (int i = 1; i < count; i++) {
+                assertTrue(scores[i - 1] >= scores[i], "结果应按相似度降序");
+            }
+
+            Set<Integer> expected = bruteForceTopK(vectors, query, k);
+            for (int i = 0; i < count; i++) {
+                if (expected.contains(ids[i])) {
+                    hits++;
+                }
+            }
+        }
+        double recall = hits / (double) (queries * k);
+        assertTrue(recall >= 0.9, "recall@10过低: " + recall);
+    }
+
+    @Test
+    void zeroVectorsAreNotIndexed() {
+        Random random = new Random(11);
+        double[][] vectors = randomVectors(random, 300);
+        Set<Integer> zeroRows = new HashSet<>();
+        for (int row = 0; row < vectors.length; row += 3) {
+            vectors[row] = new double[DIMENSION];
+            zeroRows.add(row);
+        }
+        HnswIndex index = HnswIndex.build(matrixOf(vectors));
+        assertEquals(vectors.length - zeroRows.size(), index.size());
+
+        int[] ids = new int[vectors.length];
+        int count = index.search(randomVector(random), vectors.length, vectors.length, ids, null);
+        assertEquals(index.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertFalse(zeroRows.contains(ids[i]), "零向量行不应出现在结果中: " + ids[i]);
+        }
+
+        // 零向量查询没有方向，不返回结果
+        assertEquals(0, index.search(new double[DIMENSION], 10, 64, new int[10], null));
+        assertEquals(0, index.exactSearch(new double[DIMENSION], 10, new int[10]));
+    }
+
+    @Test
+    void allZeroMatrixBuildsEmptyIndex() {
+        HnswIndex index = HnswIndex.build(matrixOf(new double[5][DIMENSION]));
+        assertEquals(0, index.size());
+        assertEquals(0, index.search(randomVector(new Random(1)), 3, 16, new int[3], null));
+    }
+
+    @Test
+    void sameSeedBuildsSameGraph() {
+        Random random = new Random(23);
+        RoomFeatureMatrix matrix = matrixOf(randomVectors(random, 800));
+        HnswIndex first = HnswIndex.build(matrix, 8, 50, 99L);
+        HnswIndex second = HnswIndex.build(matrix, 8, 50, 99L);
+        assertEquals(first.getMaxLevel(), second.getMaxLevel());
+
+        for (int q = 0; q < 20; q++) {
+            double[] query = randomVector(random);
+            int[] firstIds = new int[10];
+            int[] secondIds = new int[10];
+            double[] firstScores = new double[10];
+            double[] secondScores = new double[10];
+            assertEquals(first.search(query, 10, 32, firstIds, firstScores),
+                    second.search(query, 10, 32, secondIds, secondScores));
+            assertArrayEquals(firstIds, secondIds);
+            assertArrayEquals(firstScores, secondScores);
+        }
+    }
+
+    private static Set<Integer> bruteForceTopK(double[][] vectors, double[] query, int k) {
+        TopKSelector selector = new TopKSelector(k);
+        for (int row = 0; row < vectors.length; row++) {
+            selector.offer(row, cosine(vectors[row], query));
+        }
+        Set<Integer> result = new HashSet<>();
+        for (int id : selector.drainDescending(null)) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static double cosine(double[] a, double[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static double[][] randomVectors(Random random, int count) {
+        double[][] vectors = new double[count][];
+        for (int i = 0; i < count; i++) {
+            vectors[i] = randomVector(random);
+        }
+        return vectors;
+    }
+
+    private static double[] randomVector(Random random) {
+        double[] vector = new double[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static RoomFeatureMatrix matrixOf(double[][] vectors) {
+        List<RoomFeatures> features = new ArrayList<>(vectors.length);
+        for (int row = 0; row < vectors.length; row++) {
+            RoomFeatures room = new RoomFeatures();
+            room.setRoomId("room-" + row);
+            room.setFeatureVector(toJson(vectors[row]));
+            room.setTags("[]");
+            room.setPriceLevel(row % 10);
+            room.setStarLevel(row % 5);
+            features.add(room);
+        }
+        return RoomFeatureMatrix.build(features, new TagDictionary());
+    }
+
+    private static String toJson(double[] vector) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(vector[i]);
+        }
+        return json.append(']').toString();
+    }
+}
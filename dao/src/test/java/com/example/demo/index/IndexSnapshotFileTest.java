@@ -0,0 +1,175 @@
+package com.example.demo.index;
+
+import com.example.demo.model.RoomFeatures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexSnapshotFileTest {
+
+    private static final String[] TAGS = {"海景", "亲子", "商务", "民宿", "近地铁"};
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeThenReadRoundTrip() throws IOException {
+        RecommendationIndexSnapshot snapshot = buildSnapshot(new TagDictionary(), 200);
+        Path path = tempDir.resolve("index.snap");
+        IndexSnapshotFile.write(snapshot, 123456789L, path);
+
+        // 读取进程的字典里已有其他标签，文件中的标签ID需要按名称重新映射
+        TagDictionary target = new TagDictionary();
+        target.intern("无关标签");
+        target.intern("近地铁");
+        IndexSnapshotFile file = IndexSnapshotFile.read(path, target);
+        RecommendationIndexSnapshot restored = file.getSnapshot();
+
+        assertEquals(123456789L, file.getWatermark());
+        assertEquals(snapshot.getVersion(), restored.getVersion());
+        assertEquals(snapshot.getBuiltAt(), restored.getBuiltAt());
+
+        RoomFeatureMatrix expected = snapshot.getMatrix();
+        RoomFeatureMatrix actual = restored.getMatrix();
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getDimension(), actual.getDimension());
+        assertArrayEquals(expected.getVectors(), actual.getVectors());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getRoomId(row), actual.getRoomId(row));
+            assertEquals(expected.getPriceLevel(row), actual.getPriceLevel(row));
+            assertEquals(expected.getStarLevel(row), actual.getStarLevel(row));
+            assertEquals(expected.getLongitude(row), actual.getLongitude(row));
+            assertEquals(expected.getLatitude(row), actual.getLatitude(row));
+            assertEquals(expected.isLive(row), actual.isLive(row));
+            assertArrayEquals(tagNames(expected.getTagIds(row), snapshot.getTagDictionary()),
+                    tagNames(actual.getTagIds(row), target));
+        }
+
+        for (String tag : snapshot.getTagDictionary().names()) {
+            CompressedBitmap before = snapshot.posting(tag);
+            CompressedBitmap after = restored.posting(tag);
+            if (before == null) {
+                continue;
+            }
+            assertNotNull(after, tag);
+            assertArrayEquals(before.toArray(), after.toArray(), tag);
+        }
+
+        // 恢复的HNSW图与原图查询结果一致
+        assertNotNull(restored.getAnnIndex());
+        assertEquals(snapshot.getAnnIndex().size(), restored.getAnnIndex().size());
+        double[] query = Arrays.copyOfRange(expected.getVectors(), 0, expected.getDimension());
+        int[] expectedIds = new int[10];
+        int[] actualIds = new int[10];
+        assertEquals(snapshot.getAnnIndex().search(query, 10, 32, expectedIds, null),
+                restored.getAnnIndex().search(query, 10, 32, actualIds, null));
+        assertArrayEquals(expectedIds, actualIds);
+    }
+
+    @Test
+    void corruptedBodyIsRejected() throws IOException {
+        Path path = tempDir.resolve("index.snap");
+        IndexSnapshotFile.write(buildSnapshot(new TagDictionary(), 50), 1L, path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 0x40;
+        Files.write(path, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> IndexSnapshotFile.read(path, new TagDictionary()));
+        assertTrue(e.getMessage().contains("校验失败"), e.getMessage());
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        Path path = tempDir.resolve("index.snap");
+        IndexSnapshotFile.write(buildSnapshot(new TagDictionary(), 50), 1L, path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 100));
+        assertThrows(IOException.class, () -> IndexSnapshotFile.read(path, new TagDictionary()));
+
+        Files.write(path, new byte[4]);
+        assertThrows(IOException.class, () -> IndexSnapshotFile.read(path, new TagDictionary()));
+    }
+
+    @Test
+    void otherFormatVersionIsRejected() throws IOException {
+        Path path = tempDir.resolve("index.snap");
+        IndexSnapshotFile.write(buildSnapshot(new TagDictionary(), 50), 1L, path);
+
+        // 改写版本号并重新计算校验和，确保是版本检查而不是CRC拒绝了文件
+        byte[] bytes = Files.readAllBytes(path);
+        int bodyLength = bytes.length - Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(Integer.BYTES, buffer.getInt(Integer.BYTES) + 1);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bodyLength);
+        buffer.putLong(bodyLength, crc.getValue());
+        Files.write(path, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> IndexSnapshotFile.read(path, new TagDictionary()));
+        assertTrue(e.getMessage().contains("版本不兼容"), e.getMessage());
+    }
+
+    private static RecommendationIndexSnapshot buildSnapshot(TagDictionary dictionary, int rooms) {
+        Random random = new Random(rooms);
+        List<RoomFeatures> features = new ArrayList<>(rooms);
+        for (int i = 0; i < rooms; i++) {
+            RoomFeatures room = new RoomFeatures();
+            room.setRoomId("room-" + i);
+            StringBuilder vector = new StringBuilder("[");
+            for (int d = 0; d < RoomFeatureMatrix.DEFAULT_DIMENSION; d++) {
+                vector.append(d > 0 ? "," : "").append(random.nextDouble() - 0.5);
+            }
+            room.setFeatureVector(vector.append(']').toString());
+            room.setTags("[\"" + TAGS[i % TAGS.length] + "\",\"" + TAGS[(i * 3 + 1) % TAGS.length] + "\"]");
+            room.setPriceLevel(i % 10);
+            room.setStarLevel(i % 5 + 1);
+            if (i % 4 != 0) {
+                room.setLongitude(116.0 + random.nextDouble());
+                room.setLatitude(39.0 + random.nextDouble());
+            }
+            features.add(room);
+        }
+        RoomFeatureMatrix matrix = RoomFeatureMatrix.build(features, dictionary).withoutRow("room-3");
+
+        CompressedBitmap[] postings = new CompressedBitmap[dictionary.size()];
+        for (int row = 0; row < matrix.size(); row++) {
+            if (!matrix.isLive(row)) {
+                continue;
+            }
+            for (int tagId : matrix.getTagIds(row)) {
+                if (postings[tagId] == null) {
+                    postings[tagId] = new CompressedBitmap();
+                }
+                postings[tagId].add(row);
+            }
+        }
+        return new RecommendationIndexSnapshot(7L, matrix, dictionary, postings, HnswIndex.build(matrix),
+                1700000000000L, 42L);
+    }
+
+    private static String[] tagNames(int[] tagIds, TagDictionary dictionary) {
+        String[] names = new String[tagIds.length];
+        for (int i = 0; i < tagIds.length; i++) {
+            names[i] = dictionary.nameOf(tagIds[i]);
+        }
+        Arrays.sort(names);
+        return names;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.index;
+
+import com.example.demo.service.KeywordDictionaryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeywordAutomatonTest {
+
+    @Test
+    void overlappingPatternsAreAllReported() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("t", "he").add("t", "she").add("t", "his").add("t", "hers")
+                .build();
+        assertEquals(List.of("t:she[1,4)", "t:he[2,4)", "t:hers[2,6)"), describe(automaton.findAll("ushers")));
+
+        KeywordAutomaton chinese = KeywordAutomaton.builder()
+                .add("facility", "游泳池", "游泳", "泳池")
+                .build();
+        assertEquals(List.of("facility:游泳池[1,3)", "facility:游泳池[1,4)", "facility:游泳池[2,4)"),
+                describe(chinese.findAll("带游泳池")));
+    }
+
+    @Test
+    void outputsAreInheritedThroughFailureLinks() {
+        // 在abcd的分支上失配后经失败指针跳到bc，再沿bce继续，并输出失败链上的c
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("t", "abcd").add("t", "bce").add("t", "c")
+                .build();
+        assertEquals(List.of("t:c[2,3)", "t:bce[1,4)"), describe(automaton.findAll("abce")));
+        assertEquals(List.of("t:c[2,3)", "t:abcd[0,4)"), describe(automaton.findAll("abcd")));
+
+        // 反复失配回到根节点
+        KeywordAutomaton repeated = KeywordAutomaton.builder().add("t", "aab").build();
+        assertEquals(List.of("t:aab[3,6)"), describe(repeated.findAll("aaaaab")));
+        assertEquals(List.of("t:aab[0,3)", "t:aab[3,6)"), describe(repeated.findAll("aabaab")));
+    }
+
+    @Test
+    void digitRunsAreReportedAsNumbers() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder().add("price", "150", "便宜").build();
+        assertEquals(List.of("number:300[0,3)", "price:150[6,8)", "number:2[8,9)", "number:45[10,12)"),
+                describe(automaton.findAll("300元以内便宜2晚45")));
+
+        // 数字本身也可以是词条，两种输出同时出现
+        KeywordAutomaton withDigits = KeywordAutomaton.builder().add("network", "5g").build();
+        assertEquals(List.of("number:5[3,4)", "network:5g[3,5)", "number:2025[6,10)"),
+                describe(withDigits.findAll("支持 5G，2025")));
+        assertEquals(List.of("number:007[0,3)"), describe(withDigits.findAll("007")));
+    }
+
+    @Test
+    void matchesAreCaseInsensitiveAndMapSynonymsToTerm() {
+        KeywordAutomaton automaton = KeywordAutomaton.builder()
+                .add("facility", "wifi", "Wi-Fi", "无线网")
+                .add("facility", "空调", " ", null)
+                .build();
+        assertEquals(4, automaton.patternCount());
+        List<KeywordAutomaton.Match> matches = automaton.findAll("WIFI和wi-fi，无线网络，空调");
+        assertEquals(List.of("facility:wifi[0,4)", "facility:wifi[5,10)", "facility:wifi[11,14)",
+                "facility:空调[16,18)"), describe(matches));
+        assertEquals(0, automaton.findAll(null).size());
+        assertEquals(0, automaton.findAll("").size());
+        assertEquals(0, KeywordAutomaton.builder().build().findAll("任意文本").size());
+    }
+
+    @Test
+    void matchesBruteForceOnRandomText() {
+        Random random = new Random(23);
+        String alphabet = "ab双床c";
+        List<String> patterns = new ArrayList<>();
+        KeywordAutomaton.Builder builder = KeywordAutomaton.builder();
+        for (int i = 0; i < 40; i++) {
+            String pattern = randomString(random, alphabet, 1 + random.nextInt(4));
+            patterns.add(pattern);
+            builder.add("t", pattern);
+        }
+        KeywordAutomaton automaton = builder.build();
+
+        for (int round = 0; round < 500; round++) {
+            String text = randomString(random, alphabet, random.nextInt(30));
+            List<String> expected = new ArrayList<>();
+            for (int end = 1; end <= text.length(); end++) {
+                for (String pattern : patterns) {
+                    if (pattern.length() <= end && text.startsWith(pattern, end - pattern.length())) {
+                        expected.add(pattern + "[" + (end - pattern.length()) + "," + end + ")");
+                    }
+                }
+            }
+            List<String> actual = new ArrayList<>();
+            for (KeywordAutomaton.Match match : automaton.findAll(text)) {
+                actual.add(match.getTerm() + "[" + match.getStart() + "," + match.getEnd() + ")");
+            }
+            expected.sort(null);
+            actual.sort(null);
+            assertEquals(expected, actual, text);
+        }
+    }
+
+    @Test
+    void shippedDictionaryKeepsTwinAndDoubleRoomsApart() {
+        KeywordDictionaryService dictionary = new KeywordDictionaryService();
+        ReflectionTestUtils.setField(dictionary, "resourceLoader", new DefaultResourceLoader());
+        ReflectionTestUtils.setField(dictionary, "keywordsPath", "classpath:recommendation-keywords.txt");
+        dictionary.initialize();
+
+        assertEquals(List.of("双床"), dictionary.extractTerms("海景双床房", KeywordDictionaryService.ROOM_TYPE));
+        assertEquals(List.of("双人"), dictionary.extractTerms("双人大床房", KeywordDictionaryService.ROOM_TYPE));
+        List<String> terms = dictionary.extractTerms("标间含早，带泳池",
+                KeywordDictionaryService.ROOM_TYPE, KeywordDictionaryService.FACILITY);
+        assertEquals(List.of("标准", "早餐", "游泳池"), terms);
+        assertTrue((int) dictionary.getStatus().get("patternCount") > 0);
+    }
+
+    private static List<String> describe(List<KeywordAutomaton.Match> matches) {
+        List<String> described = new ArrayList<>(matches.size());
+        for (KeywordAutomaton.Match match : matches) {
+            described.add(match.toString());
+        }
+        return described;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.demo.index;
+
+import com.example.demo.model.RoomFeatures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantizedVectorsTest {
+
+    private static final int DIMENSION = RoomFeatureMatrix.DEFAULT_DIMENSION;
+
+    // 与推荐引擎一致：粗排保留limit的倍数再用原始向量精排
+    private static final int RESCORE_FACTOR = 4;
+
+    @Test
+    void parseMode() {
+        assertNull(QuantizedVectors.Mode.parse(null));
+        assertNull(QuantizedVectors.Mode.parse(" "));
+        assertNull(QuantizedVectors.Mode.parse("None"));
+        assertEquals(QuantizedVectors.Mode.INT8, QuantizedVectors.Mode.parse("int8"));
+        assertEquals(QuantizedVectors.Mode.FP16, QuantizedVectors.Mode.parse(" FP16 "));
+    }
+
+    @Test
+    void int8CosineWithinQuantizationBound() {
+        // INT8每维误差不超过半个量化步长 range/255/2
+        assertCosineWithinBound(QuantizedVectors.Mode.INT8, 0.5 / 255);
+    }
+
+    @Test
+    void fp16CosineWithinQuantizationBound() {
+        // 编码取值在[0,1]，半精度舍入的绝对误差不超过2^-11
+        assertCosineWithinBound(QuantizedVectors.Mode.FP16, Math.scalb(1.0, -11));
+    }
+
+    @Test
+    void halfPrecisionEdgeValues() {
+        assertEquals(0x0000, half(0.0f));
+        assertEquals(0x8000, half(-0.0f));
+        assertEquals(0x3C00, half(1.0f));
+        assertEquals(0xBC00, half(-1.0f));
+        assertEquals(0x7BFF, half(65504.0f));                     // 最大有限值
+        assertEquals(0x7C00, half(65520.0f));                     // 舍入后溢出为无穷
+        assertEquals(0x7C00, half(1e10f));
+        assertEquals(0x7C00, half(Float.POSITIVE_INFINITY));
+        assertEquals(0xFC00, half(Float.NEGATIVE_INFINITY));
+        assertEquals(0x0400, half((float) Math.scalb(1.0, -14))); // 最小规格化数
+        assertEquals(0x0001, half((float) Math.scalb(1.0, -24))); // 最小非规格化数
+        assertEquals(0x0000, half((float) Math.scalb(1.0, -30)));  // 下溢为零
+        assertTrue(Float.isNaN(QuantizedVectors.halfToFloat(QuantizedVectors.floatToHalf(Float.NaN))));
+
+        assertEquals(0.0f, QuantizedVectors.halfToFloat((short) 0x0000));
+        assertEquals(Float.floatToIntBits(-0.0f),
+                Float.floatToIntBits(QuantizedVectors.halfToFloat((short) 0x8000)));
+        assertEquals(65504.0f, QuantizedVectors.halfToFloat((short) 0x7BFF));
+        assertEquals((float) Math.scalb(1.0, -24), QuantizedVectors.halfToFloat((short) 0x0001));
+        assertEquals((float) Math.scalb(1.0, -14), QuantizedVectors.halfToFloat((short) 0x0400));
+        assertEquals(Float.POSITIVE_INFINITY, QuantizedVectors.halfToFloat((short) 0x7C00));
+    }
+
+    @Test
+    void halfPrecisionRoundTripOverAllCodes() {
+        // 每个有限半精度值转成单精度再转回都应得到同一个编码
+        for (int bits = 0; bits < 1 << 16; bits++) {
+            float value = QuantizedVectors.halfToFloat((short) bits);
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            assertEquals(bits, half(value), Integer.toHexString(bits));
+        }
+        // [0,1]内的值相对误差不超过2^-11
+        Random random = new Random(13);
+        for (int i = 0; i < 100_000; i++) {
+            float value = random.nextFloat();
+            float decoded = QuantizedVectors.halfToFloat(QuantizedVectors.floatToHalf(value));
+            assertTrue(Math.abs(decoded - value) <= Math.max(Math.abs(value) * Math.scalb(1.0, -11),
+                    Math.scalb(1.0, -25)), () -> value + " -> " + decoded);
+        }
+    }
+
+    @Test
+    void rescoredTopKMatchesExactTopK() {
+        Random random = new Random(31);
+        RoomFeatureMatrix matrix = matrixOf(random, 3000);
+        for (QuantizedVectors.Mode mode : QuantizedVectors.Mode.values()) {
+            QuantizedVectors quantized = QuantizedVectors.encode(matrix, mode);
+            int[] rows = allRows(matrix);
+            for (int q = 0; q < 50; q++) {
+                double[] query = randomVector(random);
+                int limit = 10;
+                assertArrayEquals(exactTopK(matrix, rows, query, limit),
+                        rescoredTopK(matrix, quantized, rows, query, limit), mode + " query " + q);
+            }
+        }
+    }
+
+    @Test
+    void withRowEncodesNewRowWithExistingParameters() {
+        Random random = new Random(41);
+        List<RoomFeatures> features = featuresOf(random, 200);
+        RoomFeatureMatrix matrix = RoomFeatureMatrix.build(features, new TagDictionary());
+        QuantizedVectors quantized = QuantizedVectors.encode(matrix, QuantizedVectors.Mode.INT8);
+
+        RoomFeatures added = room("room-new", randomVector(random));
+        RoomFeatureMatrix grown = matrix.withRow(added, new TagDictionary());
+        int row = grown.rowOf("room-new");
+        QuantizedVectors updated = quantized.withRow(grown, row);
+        assertEquals(grown.size(), updated.size());
+        assertEquals(matrix.size(), quantized.size());
+
+        double[] query = randomVector(random);
+        double[] approximate = new double[1];
+        updated.cosineBatch(query, inverseNorm(query), grown.getInverseNorms(), new int[]{row}, 1, approximate);
+        assertEquals(exactCosine(grown, row, query), approximate[0], 0.05);
+    }
+
+    private static void assertCosineWithinBound(QuantizedVectors.Mode mode, double codeError) {
+        Random random = new Random(mode.ordinal() + 17);
+        RoomFeatureMatrix matrix = matrixOf(random, 1000);
+        QuantizedVectors quantized = QuantizedVectors.encode(matrix, mode);
+        double[] range = ranges(matrix);
+        int[] rows = allRows(matrix);
+        double[] approximate = new double[rows.length];
+
+        for (int q = 0; q < 20; q++) {
+            double[] query = randomVector(random);
+            double queryInverseNorm = inverseNorm(query);
+            quantized.cosineBatch(query, queryInverseNorm, matrix.getInverseNorms(), rows, rows.length,
+                    approximate);
+
+            double dotBound = 0.0;
+            for (int d = 0; d < DIMENSION; d++) {
+                dotBound += Math.abs(query[d]) * range[d] * codeError;
+            }
+            for (int row : rows) {
+                double bound = dotBound * queryInverseNorm * matrix.getInverseNorms()[row] + 1e-9;
+                double error = Math.abs(approximate[row] - exactCosine(matrix, row, query));
+                assertTrue(error <= bound, mode + " row " + row + " error " + error + " > " + bound);
+            }
+        }
+    }
+
+    private static int[] rescoredTopK(RoomFeatureMatrix matrix, QuantizedVectors quantized, int[] rows,
+                                      double[] query, int limit) {
+        double[] approximate = new double[rows.length];
+        quantized.cosineBatch(query, inverseNorm(query), matrix.getInverseNorms(), rows, rows.length, approximate);
+        TopKSelector coarse = new TopKSelector(limit * RESCORE_FACTOR);
+        for (int i = 0; i < rows.length; i++) {
+            coarse.offer(rows[i], approximate[i]);
+        }
+        return exactTopK(matrix, coarse.drainDescending(null), query, limit);
+    }
+
+    private static int[] exactTopK(RoomFeatureMatrix matrix, int[] rows, double[] query, int limit) {
+        TopKSelector selector = new TopKSelector(limit);
+        for (int row : rows) {
+            selector.offer(row, exactCosine(matrix, row, query));
+        }
+        return selector.drainDescending(null);
+    }
+
+    private static double exactCosine(RoomFeatureMatrix matrix, int row, double[] query) {
+        double[] vectors = matrix.getVectors();
+        int offset = matrix.vectorOffset(row);
+        double dot = 0.0;
+        for (int d = 0; d < DIMENSION; d++) {
+            dot += vectors[offset + d] * query[d];
+        }
+        return dot * matrix.getInverseNorms()[row] * inverseNorm(query);
+    }
+
+    private static double inverseNorm(double[] vector) {
+        return SimilarityKernel.inverseNorm(vector, 0, vector.length);
+    }
+
+    private static double[] ranges(RoomFeatureMatrix matrix) {
+        double[] range = new double[DIMENSION];
+        double[] vectors = matrix.getVectors();
+        for (int d = 0; d < DIMENSION; d++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int row = 0; row < matrix.size(); row++) {
+                double v = vectors[matrix.vectorOffset(row) + d];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            range[d] = max - min;
+        }
+        return range;
+    }
+
+    private static int[] allRows(RoomFeatureMatrix matrix) {
+        int[] rows = new int[matrix.size()];
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = row;
+        }
+        return rows;
+    }
+
+    private static int half(float value) {
+        return QuantizedVectors.floatToHalf(value) & 0xFFFF;
+    }
+
+    private static RoomFeatureMatrix matrixOf(Random random, int rooms) {
+        return RoomFeatureMatrix.build(featuresOf(random, rooms), new TagDictionary());
+    }
+
+    private static List<RoomFeatures> featuresOf(Random random, int rooms) {
+        List<RoomFeatures> features = new ArrayList<>(rooms);
+        for (int i = 0; i < rooms; i++) {
+            features.add(room("room-" + i, randomVector(random)));
+        }
+        return features;
+    }
+
+    private static RoomFeatures room(String roomId, double[] vector) {
+        StringBuilder json = new StringBuilder("[");
+        for (int d = 0; d < vector.length; d++) {
+            json.append(d > 0 ? "," : "").append(vector[d]);
+        }
+        RoomFeatures room = new RoomFeatures();
+        room.setRoomId(roomId);
+        room.setFeatureVector(json.append(']').toString());
+        room.setTags("[]");
+        return room;
+    }
+
+    private static double[] randomVector(Random random) {
+        double[] vector = new double[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            // 各维取值范围不同，检验按维量化参数
+            vector[d] = random.nextDouble() * (d + 1) - d * 0.3;
+        }
+        return vector;
+    }
+}
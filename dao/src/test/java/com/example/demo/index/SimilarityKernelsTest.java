@@ -0,0 +1,102 @@
+package com.example.demo.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SimilarityKernelsTest {
+
+    @Test
+    void simdKernelIsSelectedWhenModuleIsLoaded() {
+        // surefire以--add-modules jdk.incubator.vector启动，模块缺失说明构建配置被改坏
+        assertTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "测试JVM未加载jdk.incubator.vector");
+        assumeTrue(VectorizedSimilarityKernel.lanes() >= 2, "平台不支持多通道double向量");
+
+        assertNull(SimilarityKernels.unavailableReason());
+        // 启动自检不通过时会静默回退到标量，这里要求auto确实选中SIMD内核
+        assertTrue(SimilarityKernels.select(SimilarityKernels.AUTO).name().startsWith("simd-"),
+                SimilarityKernels.select(SimilarityKernels.AUTO).name());
+        assertEquals(SimilarityKernels.scalar().name(), SimilarityKernels.select(SimilarityKernels.SCALAR).name());
+    }
+
+    @Test
+    void dotMatchesScalarForAllLengthsAndOffsets() {
+        SimilarityKernel simd = vectorized();
+        SimilarityKernel scalar = SimilarityKernels.scalar();
+        int lanes = VectorizedSimilarityKernel.lanes();
+        Random random = new Random(7);
+
+        // 覆盖0、奇数长度、不足一个向量宽度、恰好整数倍以及整数倍加尾部的长度
+        for (int length = 0; length <= 8 * lanes + 3; length++) {
+            for (int aOffset = 0; aOffset < 3; aOffset++) {
+                for (int bOffset = 0; bOffset < 3; bOffset++) {
+                    // 数组恰好结束在offset + length，尾部越界读取会直接抛异常
+                    double[] a = randomArray(random, aOffset + length);
+                    double[] b = randomArray(random, bOffset + length);
+                    double expected = scalar.dot(a, aOffset, b, bOffset, length);
+                    double actual = simd.dot(a, aOffset, b, bOffset, length);
+                    double magnitude = 0.0;
+                    for (int i = 0; i < length; i++) {
+                        magnitude += Math.abs(a[aOffset + i] * b[bOffset + i]);
+                    }
+                    assertEquals(expected, actual, 1e-12 * Math.max(1.0, magnitude),
+                            "length " + length + " offsets " + aOffset + "/" + bOffset);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cosineBatchMatchesScalar() {
+        SimilarityKernel simd = vectorized();
+        SimilarityKernel scalar = SimilarityKernels.scalar();
+        Random random = new Random(19);
+        for (int dimension : new int[]{1, 3, RoomFeatureMatrix.DEFAULT_DIMENSION, 17, 33}) {
+            int rowCount = 50;
+            double[] vectors = randomArray(random, rowCount * dimension);
+            // 第0行为零向量，相似度应为0
+            for (int d = 0; d < dimension; d++) {
+                vectors[d] = 0.0;
+            }
+            double[] inverseNorms = new double[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                inverseNorms[row] = SimilarityKernel.inverseNorm(vectors, row * dimension, dimension);
+            }
+            double[] query = randomArray(random, dimension);
+            double queryInverseNorm = SimilarityKernel.inverseNorm(query, 0, dimension);
+            int[] rows = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                rows[i] = rowCount - 1 - i;
+            }
+
+            double[] expected = new double[rowCount];
+            double[] actual = new double[rowCount];
+            scalar.cosineBatch(query, queryInverseNorm, vectors, inverseNorms, dimension, rows, rowCount, expected);
+            simd.cosineBatch(query, queryInverseNorm, vectors, inverseNorms, dimension, rows, rowCount, actual);
+            for (int i = 0; i < rowCount; i++) {
+                assertEquals(expected[i], actual[i], 1e-12, "dimension " + dimension + " row " + rows[i]);
+                assertTrue(Math.abs(actual[i]) <= 1.0 + 1e-12);
+            }
+            assertEquals(0.0, actual[rowCount - 1]);
+        }
+    }
+
+    private static SimilarityKernel vectorized() {
+        assumeTrue(SimilarityKernels.unavailableReason() == null, SimilarityKernels::unavailableReason);
+        return new VectorizedSimilarityKernel();
+    }
+
+    private static double[] randomArray(Random random, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(5) - 2);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopKSelectorTest {
+
+    @Test
+    void keepsEverythingWhenCapacityCoversInput() {
+        double[] scores = {0.3, -1.0, 2.5, 0.3, 7.0};
+        for (int capacity : new int[]{scores.length, scores.length + 10}) {
+            TopKSelector selector = new TopKSelector(capacity);
+            for (int id = 0; id < scores.length; id++) {
+                assertTrue(selector.offer(id, scores[id]));
+            }
+            assertEquals(scores.length, selector.size());
+
+            double[] drained = new double[selector.size()];
+            int[] ids = selector.drainDescending(drained);
+            assertArrayEquals(new double[]{7.0, 2.5, 0.3, 0.3, -1.0}, drained);
+            assertEquals(4, ids[0]);
+            assertEquals(2, ids[1]);
+            assertEquals(1, ids[4]);
+            assertTrue(selector.isEmpty());
+        }
+    }
+
+    @Test
+    void zeroCapacityKeepsNothing() {
+        TopKSelector selector = new TopKSelector(0);
+        assertFalse(selector.offer(1, 100.0));
+        assertEquals(0, selector.drainDescending(null).length);
+        assertEquals(0, new TopKSelector(-3).size());
+    }
+
+    @Test
+    void tiesAtThresholdKeepEarlierOffers() {
+        TopKSelector selector = new TopKSelector(3);
+        for (int id = 0; id < 10; id++) {
+            selector.offer(id, 1.0);
+        }
+        int[] ids = selector.drainDescending(null);
+        Arrays.sort(ids);
+        assertArrayEquals(new int[]{0, 1, 2}, ids);
+
+        // 与堆顶相等的分数不会替换已保留的结果，严格更高才会
+        selector.offer(0, 1.0);
+        selector.offer(1, 2.0);
+        assertEquals(Double.NEGATIVE_INFINITY, selector.threshold(), "未满时不设门槛");
+        selector.offer(2, 3.0);
+        assertEquals(1.0, selector.threshold(), 0.0);
+        assertFalse(selector.offer(3, 1.0));
+        assertTrue(selector.offer(4, 1.5));
+        assertEquals(1.5, selector.threshold(), 0.0);
+        double[] scores = new double[3];
+        assertArrayEquals(new int[]{2, 1, 4}, selector.drainDescending(scores));
+        assertArrayEquals(new double[]{3.0, 2.0, 1.5}, scores);
+    }
+
+    @Test
+    void drainMatchesSortedTopK() {
+        Random random = new Random(19);
+        TopKSelector selector = new TopKSelector(25);
+        for (int round = 0; round < 200; round++) {
+            int n = random.nextInt(200);
+            double[] scores = new double[n];
+            for (int id = 0; id < n; id++) {
+                // 少量取值，保证有大量并列分数
+                scores[id] = random.nextInt(round % 2 == 0 ? 10 : 1000) / 10.0;
+                selector.offer(id, scores[id]);
+            }
+            int k = Math.min(25, n);
+            assertEquals(k, selector.size());
+
+            double[] sorted = scores.clone();
+            Arrays.sort(sorted);
+            double[] expected = new double[k];
+            for (int i = 0; i < k; i++) {
+                expected[i] = sorted[n - 1 - i];
+            }
+            if (k == 25) {
+                assertEquals(expected[k - 1], selector.threshold(), 0.0);
+            }
+
+            double[] drained = new double[k];
+            int[] ids = selector.drainDescending(drained);
+            assertArrayEquals(expected, drained);
+            assertEquals(k, Arrays.stream(ids).distinct().count());
+            for (int i = 0; i < k; i++) {
+                assertEquals(scores[ids[i]], drained[i], 0.0);
+            }
+            // 取出后选择器清空，可以直接复用
+            assertTrue(selector.isEmpty());
+            assertEquals(Double.NEGATIVE_INFINITY, selector.threshold());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserVectorIndexTest {
+
+    @Test
+    void searchRanksByCosineAndExcludesQueryUser() {
+        UserVectorIndex index = new UserVectorIndex(3, 100);
+        assertTrue(index.upsert(1L, new Double[]{1.0, 0.0, 0.0}));
+        assertTrue(index.upsert(2L, new Double[]{1.0, 1.0, 0.0}));
+        assertTrue(index.upsert(3L, new Double[]{0.0, 0.0, 1.0}));
+        assertTrue(index.upsert(4L, new Double[]{-1.0, 0.0, 0.0}));
+
+        long[] userIds = new long[4];
+        double[] similarities = new double[4];
+        int found = index.search(new Double[]{2.0, 0.1, 0.0}, 4, 1L, userIds, similarities);
+        // 点积不大于0的用户不返回
+        assertEquals(1, found);
+        assertEquals(2L, userIds[0]);
+        assertEquals(2.1 / (Math.sqrt(4.01) * Math.sqrt(2.0)), similarities[0], 0.02);
+    }
+
+    @Test
+    void zeroVectorUpdateRemovesUserFromResults() {
+        UserVectorIndex index = new UserVectorIndex(3, 100);
+        index.upsert(1L, new Double[]{1.0, 0.0, 0.0});
+        index.upsert(2L, new Double[]{1.0, 0.2, 0.0});
+        long[] userIds = new long[2];
+        assertEquals(2, index.search(new Double[]{1.0, 0.0, 0.0}, 2, -1L, userIds, null));
+
+        assertFalse(index.upsert(2L, new Double[]{0.0, 0.0, null}));
+        assertEquals(1, index.search(new Double[]{1.0, 0.0, 0.0}, 2, -1L, userIds, null));
+        assertEquals(1L, userIds[0]);
+
+        // 重新有了画像后恢复
+        assertTrue(index.upsert(2L, new Double[]{1.0, 0.0, 0.0}));
+        assertEquals(2, index.search(new Double[]{1.0, 0.0, 0.0}, 2, -1L, userIds, null));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void growsUntilCapacityAndKeepsUpdatingExistingUsers() {
+        UserVectorIndex index = new UserVectorIndex(2, 3000);
+        for (long userId = 0; userId < 3000; userId++) {
+            assertTrue(index.upsert(userId, new Double[]{1.0, (double) userId}));
+        }
+        assertFalse(index.upsert(5000L, new Double[]{1.0, 0.0}), "超出容量上限的新用户不写入");
+        assertTrue(index.upsert(10L, new Double[]{0.0, -1.0}), "已有用户仍可更新");
+        assertEquals(3000, index.size());
+        assertTrue(index.contains(2999L));
+        assertFalse(index.contains(5000L));
+
+        long[] userIds = new long[1];
+        assertEquals(1, index.search(new Double[]{0.0, -1.0}, 1, -1L, userIds, null));
+        assertArrayEquals(new long[]{10L}, userIds);
+        assertEquals(0, index.search(null, 1, -1L, userIds, null));
+        assertEquals(0, index.search(new Double[]{1.0}, 1, -1L, userIds, null));
+    }
+}
@@ -1,5 +1,9 @@
 package org.example.web.controller;
 
+import com.alibaba.fastjson2.JSON;
+import com.example.demo.dto.BatchRecommendationRequestDTO;
+import com.example.demo.dto.BatchRecommendationResultDTO;
+import com.example.demo.dto.NearbyRoomDTO;
 import com.example.demo.dto.RoomRecommendationDTO;
 import com.example.demo.dto.RoomSearchResultDTO;
 import com.example.demo.dto.SmartTagDTO;
@@ -15,8 +19,12 @@ import com.example.demo.service.UserBehaviorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -33,6 +41,8 @@ public class FrontRoomRecommendationController {
 
     private static final Logger logger = LoggerFactory.getLogger(FrontRoomRecommendationController.class);
 
+    private static final long BATCH_TIMEOUT_MILLIS = 5 * 60 * 1000L;
+
     @Autowired
     private RoomRecommendationEngineService recommendationEngine;
 
@@ -47,14 +57,24 @@ public class FrontRoomRecommendationController {
 
     /**
      * 智能搜索推荐接口
+     * explain=true时返回推荐结果及各阶段耗时、候选数量
      */
     @PostMapping("/search-with-recommendation")
-    public ApiResponse<List<RoomSearchResultDTO>> searchWithRecommendation(
-            @RequestBody SearchRequestDTO request) {
+    public ApiResponse<?> searchWithRecommendation(
+            @RequestBody SearchRequestDTO request,
+            @RequestParam(defaultValue = "false") boolean explain) {
 
         try {
+            if (explain) {
+                return ApiResponse.success(recommendationEngine.searchWithRecommendationExplained(
+                        request.getUserId(), request.getKeyword(), request.getLimit(),
+                        !Boolean.FALSE.equals(request.getUseTopK()), request.getLongitude(), request.getLatitude()));
+            }
+
             List<RoomRecommendationDTO> recommendations = recommendationEngine
-                    .searchWithRecommendation(request.getUserId(), request.getKeyword(), request.getLimit());
+                    .searchWithRecommendation(request.getUserId(), request.getKeyword(), request.getLimit(),
+                            !Boolean.FALSE.equals(request.getUseTopK()), request.getLongitude(),
+                            request.getLatitude());
 
             // 转换为前端需要的格式
             List<RoomSearchResultDTO> results = new ArrayList<>();
@@ -76,15 +96,22 @@ public class FrontRoomRecommendationController {
 
     /**
      * 个性化推荐接口
+     * useTopK与搜索接口请求体中的同名字段含义一致；explain=true时返回推荐结果及各阶段耗时、候选数量
      */
     @GetMapping("/personal-recommendations")
-    public ApiResponse<List<RoomRecommendationDTO>> getPersonalRecommendations(
+    public ApiResponse<?> getPersonalRecommendations(
             @RequestParam Long userId,
-            @RequestParam(defaultValue = "10") int limit) {
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "true") boolean useTopK,
+            @RequestParam(defaultValue = "false") boolean explain) {
 
         try {
+            if (explain) {
+                return ApiResponse.success(recommendationEngine.recommendRoomsExplained(userId, limit, useTopK));
+            }
+
             List<RoomRecommendationDTO> recommendations =
-                    recommendationEngine.recommendRooms(userId, limit);
+                    recommendationEngine.recommendRooms(userId, limit, useTopK);
 
             return ApiResponse.success(recommendations);
 
@@ -94,6 +121,73 @@ public class FrontRoomRecommendationController {
         }
     }
 
+    /**
+     * 附近房间接口
+     */
+    @GetMapping("/nearby")
+    public ApiResponse<List<NearbyRoomDTO>> getNearbyRooms(
+            @RequestParam double longitude,
+            @RequestParam double latitude,
+            @RequestParam(defaultValue = "3") double radiusKm,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        if (longitude < -180 || longitude > 180 || latitude < -90 || latitude > 90) {
+            return ApiResponse.badRequest("经纬度超出范围");
+        }
+        try {
+            double radius = Math.max(0.1, Math.min(radiusKm, 50));
+            int size = Math.max(1, Math.min(limit, 100));
+            return ApiResponse.success(recommendationEngine.findNearbyRooms(longitude, latitude, radius, size));
+
+        } catch (Exception e) {
+            logger.error("查询附近房间失败", e);
+            return ApiResponse.error("附近房间服务暂不可用");
+        }
+    }
+
+    /**
+     * 批量个性化推荐接口（营销推送任务使用）
+     * 以NDJSON流式返回，每行一个用户的推荐结果，按完成顺序输出
+     */
+    @PostMapping(value = "/batch-recommendations", produces = "application/x-ndjson")
+    public ResponseEntity<ResponseBodyEmitter> getBatchRecommendations(
+            @RequestBody BatchRecommendationRequestDTO request) {
+
+        if (request.getUserIds() == null || request.getUserIds().isEmpty() || request.getUserIds().size() > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
+        int limit = request.getLimit() != null ? Math.max(1, Math.min(request.getLimit(), 100)) : 10;
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(BATCH_TIMEOUT_MILLIS);
+        try {
+            recommendationEngine.recommendRoomsBatch(request.getUserIds(), limit, (userId, recommendations) -> {
+                String line = JSON.toJSONString(new BatchRecommendationResultDTO(userId, recommendations)) + "\n";
+                try {
+                    synchronized (emitter) {
+                        emitter.send(line, MediaType.TEXT_PLAIN);
+                    }
+                } catch (IOException e) {
+                    // 客户端断开，后续结果丢弃
+                    logger.debug("批量推荐结果发送失败，用户ID: {}", userId);
+                }
+            }).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    logger.error("批量推荐失败", e);
+                    emitter.completeWithError(e);
+                } else {
+                    emitter.complete();
+                }
+            });
+        } catch (Exception e) {
+            logger.error("批量推荐失败", e);
+            emitter.completeWithError(e);
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(emitter);
+    }
+
     /**
      * 搜索建议接口
      */
@@ -0,0 +1,93 @@
+package org.example.web.controller;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.service.RecommendationIndexService;
+import com.example.demo.service.RecommendationPrecomputeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 推荐系统管理API控制器
+ */
+@RestController
+@RequestMapping("/api/admin/recommendation")
+public class RecommendationAdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationAdminController.class);
+
+    @Autowired
+    private RecommendationIndexService indexService;
+
+    @Autowired
+    private RecommendationPrecomputeService precomputeService;
+
+    /**
+     * 触发推荐索引重建
+     * 重建在后台线程执行，完成后原子替换快照，不影响在线召回
+     */
+    @PostMapping("/index/rebuild")
+    public ApiResponse<Map<String, Object>> rebuildIndex() {
+        try {
+            boolean accepted = indexService.triggerRebuild();
+            Map<String, Object> status = indexService.getIndexStatus();
+            return accepted
+                    ? ApiResponse.success(status, "索引重建任务已提交")
+                    : ApiResponse.success(status, "已有索引重建任务在执行");
+
+        } catch (Exception e) {
+            logger.error("触发索引重建失败", e);
+            return ApiResponse.error("触发索引重建失败");
+        }
+    }
+
+    /**
+     * 查询推荐索引状态
+     */
+    @GetMapping("/index/status")
+    public ApiResponse<Map<String, Object>> getIndexStatus() {
+        try {
+            return ApiResponse.success(indexService.getIndexStatus());
+
+        } catch (Exception e) {
+            logger.error("获取索引状态失败", e);
+            return ApiResponse.error("获取索引状态失败");
+        }
+    }
+
+    /**
+     * 触发一轮推荐结果预计算
+     * @param full 是否忽略水位全量重算
+     */
+    @PostMapping("/precompute/run")
+    public ApiResponse<Map<String, Object>> runPrecompute(@RequestParam(defaultValue = "false") boolean full) {
+        try {
+            boolean accepted = precomputeService.triggerPrecompute(full);
+            Map<String, Object> status = precomputeService.getStatus();
+            return accepted
+                    ? ApiResponse.success(status, "预计算任务已提交")
+                    : ApiResponse.success(status, "已有预计算任务在执行");
+
+        } catch (Exception e) {
+            logger.error("触发预计算失败", e);
+            return ApiResponse.error("触发预计算失败");
+        }
+    }
+
+    /**
+     * 查询预计算进度与水位
+     */
+    @GetMapping("/precompute/status")
+    public ApiResponse<Map<String, Object>> getPrecomputeStatus() {
+        try {
+            return ApiResponse.success(precomputeService.getStatus());
+
+        } catch (Exception e) {
+            logger.error("获取预计算状态失败", e);
+            return ApiResponse.error("获取预计算状态失败");
+        }
+    }
+}